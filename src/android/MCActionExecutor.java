@@ -0,0 +1,153 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs SDK actions on threads owned by the plugin instead of Cordova's shared thread pool.  Reads
+ * and writes have separate bounded lanes so a backlog of writes never delays reads.  Writes are
+ * ordered per sequence key by a {@link MCStripedLane}: writes to the same attribute, tag or
+ * contact key run in submission order while unrelated writes run concurrently.  When a lane is
+ * full the task is rejected rather than queued without bound.
+ */
+class MCActionExecutor {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ExecutorService readLane;
+    private final ExecutorService writePool;
+    private final MCStripedLane writeLane;
+    private final AtomicLong readRejections = new AtomicLong();
+    private final AtomicLong writeRejections = new AtomicLong();
+
+    MCActionExecutor(@NonNull ExecutorService readLane, @NonNull ExecutorService writePool) {
+        this(readLane, writePool, Integer.MAX_VALUE);
+    }
+
+    MCActionExecutor(@NonNull ExecutorService readLane, @NonNull ExecutorService writePool,
+        int maxPendingWrites) {
+        this.readLane = readLane;
+        this.writePool = writePool;
+        this.writeLane =
+            new MCStripedLane(writePool, MCStripedLane.DEFAULT_STRIPES, maxPendingWrites);
+    }
+
+    static MCActionExecutor create(MCPluginConfig config) {
+        // Each stripe has at most one task on the write pool so its queue never exceeds the
+        // stripe count; the write queue size is enforced by the striped lane instead.
+        return new MCActionExecutor(
+            newLane("MCCordovaRead", config.readThreads,
+                new ArrayBlockingQueue<Runnable>(config.readQueueSize)),
+            newLane("MCCordovaWrite", config.writeThreads, new LinkedBlockingQueue<Runnable>()),
+            config.writeQueueSize);
+    }
+
+    private static ExecutorService newLane(
+        final String name, int threads, BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, queue, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @throws RejectedExecutionException if the read lane's queue is full.
+     */
+    void executeRead(@NonNull Runnable task) {
+        try {
+            readLane.execute(task);
+        } catch (RejectedExecutionException e) {
+            readRejections.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @param sequenceKeys keys shared with writes this one must stay ordered with.
+     * @throws RejectedExecutionException if too many writes are pending.
+     */
+    void executeWrite(@NonNull String[] sequenceKeys, @NonNull Runnable task) {
+        try {
+            writeLane.execute(sequenceKeys, task);
+        } catch (RejectedExecutionException e) {
+            writeRejections.incrementAndGet();
+            throw e;
+        }
+    }
+
+    void shutdown() {
+        readLane.shutdown();
+        writePool.shutdown();
+    }
+
+    JSONObject stats() throws JSONException {
+        // Queued and completed counts come from the striped lane; the pool only sees stripes.
+        JSONObject write = laneStats(writePool, writeRejections)
+            .put("stripes", writeLane.stripeCount())
+            .put("queued", writeLane.pending())
+            .put("completed", writeLane.completed());
+        return new JSONObject()
+            .put("read", laneStats(readLane, readRejections))
+            .put("write", write);
+    }
+
+    private static JSONObject laneStats(ExecutorService lane, AtomicLong rejections)
+        throws JSONException {
+        JSONObject stats = new JSONObject().put("rejected", rejections.get());
+        if (lane instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) lane;
+            stats.put("threads", executor.getMaximumPoolSize())
+                .put("active", executor.getActiveCount())
+                .put("queued", executor.getQueue().size())
+                .put("completed", executor.getCompletedTaskCount());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms and outcome counters for one registered action.  Each call records how long
+ * it waited for the SDK to be ready, how long it waited in its executor lane and how long its
+ * handler ran.  Recording only updates atomics that were created with the action, so it does not
+ * allocate or lock on the dispatch path.
+ *
+ * <p>An action counts as an error when its handler throws, when it is rejected by an overloaded
+ * executor or when it fails waiting for the SDK.  Errors a handler reports through its
+ * {@link org.apache.cordova.CallbackContext} count as successes.
+ */
+final class MCActionMetrics {
+    static final String QUEUE_WAIT = "queueWait";
+    static final String GATE_WAIT = "gateWait";
+    static final String RUN = "run";
+
+    private static volatile long sinceMs = SystemClock.elapsedRealtime();
+
+    final Histogram queueWait = new Histogram();
+    final Histogram gateWait = new Histogram();
+    final Histogram run = new Histogram();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    void recordSuccess() {
+        successCount.incrementAndGet();
+    }
+
+    void recordError() {
+        errorCount.incrementAndGet();
+    }
+
+    long successCount() {
+        return successCount.get();
+    }
+
+    long errorCount() {
+        return errorCount.get();
+    }
+
+    boolean isEmpty() {
+        return successCount.get() == 0 && errorCount.get() == 0 && gateWait.count() == 0
+            && queueWait.count() == 0;
+    }
+
+    JSONObject toJson() throws JSONException {
+        return new JSONObject()
+            .put("success", successCount.get())
+            .put("error", errorCount.get())
+            .put(GATE_WAIT, gateWait.toJson())
+            .put(QUEUE_WAIT, queueWait.toJson())
+            .put(RUN, run.toJson());
+    }
+
+    private void clear() {
+        queueWait.clear();
+        gateWait.clear();
+        run.clear();
+        successCount.set(0);
+        errorCount.set(0);
+    }
+
+    /**
+     * @return the metrics of every action that has been called since the metrics were reset,
+     * keyed by action name.  The counters are read one at a time while calls may still be
+     * recording, so sections can be off by the calls in flight.
+     */
+    @NonNull
+    static JSONObject snapshot() throws JSONException {
+        JSONObject actions = new JSONObject();
+        for (MCActionRegistry.Action action : MCActionRegistry.all()) {
+            MCActionMetrics metrics = action.metrics();
+            if (!metrics.isEmpty()) {
+                actions.put(action.name(), metrics.toJson());
+            }
+        }
+        return new JSONObject()
+            .put("elapsedMs", SystemClock.elapsedRealtime() - sinceMs)
+            .put("actions", actions);
+    }
+
+    /** Clears the metrics of every registered action. */
+    static void reset() {
+        for (MCActionRegistry.Action action : MCActionRegistry.all()) {
+            action.metrics().clear();
+        }
+        sinceMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Counts durations in power-of-two microsecond buckets.  Bucket 0 holds durations under 1us
+     * and bucket {@code b} those from 2<sup>b-1</sup>us up to 2<sup>b</sup>us, so percentiles are
+     * reported as the upper bound of the bucket they fall in, capped at the maximum.
+     */
+    static final class Histogram {
+        static final int BUCKETS = 32;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(bucketOf(nanos));
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // Retry until the larger value is stored.
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * @return the upper bound in microseconds of the bucket holding the {@code percentile}
+         * (0 to 100) call, or 0 if nothing was recorded.
+         */
+        long percentileMicros(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long maxMicros = maxMicros();
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(1L << i, Math.max(maxMicros, 1));
+                }
+            }
+            return maxMicros;
+        }
+
+        long maxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+        }
+
+        long meanMicros() {
+            long count = count();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / count);
+        }
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                .put("count", count())
+                .put("meanUs", meanMicros())
+                .put("p50Us", percentileMicros(50))
+                .put("p90Us", percentileMicros(90))
+                .put("p99Us", percentileMicros(99))
+                .put("maxUs", maxMicros());
+        }
+
+        private void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            totalNanos.set(0);
+            maxNanos.set(0);
+        }
+
+        static int bucketOf(long nanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        }
+    }
+}
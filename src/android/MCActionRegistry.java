@@ -0,0 +1,182 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The actions served by {@link MCCordovaPlugin#execute}.  Built-in actions are registered once
+ * when the class is loaded.  Other plugins in the app may register additional actions with
+ * {@link #register(String, int, ActionHandler)}; those actions are dispatched with the same
+ * SDK-readiness handling as the built-in ones.
+ */
+public final class MCActionRegistry {
+    /** The action only reads state. */
+    public static final int READ = 1;
+    /** The action changes state. */
+    public static final int WRITE = 1 << 1;
+    /** The action needs an initialized {@link MarketingCloudSdk} and waits until it is ready. */
+    public static final int REQUIRES_SDK = 1 << 2;
+    /**
+     * The action is cheap enough to run on the thread that called
+     * {@link MCCordovaPlugin#execute} instead of being handed to a worker thread.
+     */
+    public static final int CALLER_THREAD = 1 << 3;
+
+    /**
+     * Sequence key shared with every other write.  A write that returns it runs after all writes
+     * submitted before it and before all writes submitted after it.
+     */
+    public static final String ALL_KEYS = "*";
+
+    private static final ConcurrentHashMap<String, Action> actions = new ConcurrentHashMap<>();
+
+    static {
+        MCBuiltInActions.registerAll();
+    }
+
+    private MCActionRegistry() {}
+
+    /**
+     * Registers an action that can be invoked from JavaScript through the MCCordovaPlugin
+     * service.
+     *
+     * @param name the action name passed to {@code cordova.exec}.
+     * @param flags a combination of {@link #READ}, {@link #WRITE}, {@link #REQUIRES_SDK} and
+     * {@link #CALLER_THREAD}.
+     * @param handler a stateless handler shared by every invocation of the action.
+     * @throws IllegalStateException if an action with the same name is already registered.
+     */
+    public static void register(
+        @NonNull String name, int flags, @NonNull ActionHandler handler) {
+        register(name, flags, handler, null);
+    }
+
+    /**
+     * Registers a write action whose calls are ordered by the keys they touch.  Writes that share
+     * a key run in the order they were submitted; writes with no key in common may run
+     * concurrently.  Without {@code sequenceKeys} the action name is used as the only key.
+     *
+     * @see #register(String, int, ActionHandler)
+     */
+    public static void register(@NonNull String name, int flags, @NonNull ActionHandler handler,
+        @Nullable SequenceKeys sequenceKeys) {
+        if (actions.putIfAbsent(name, new Action(name, flags, handler, sequenceKeys)) != null) {
+            throw new IllegalStateException("Action '" + name + "' is already registered.");
+        }
+    }
+
+    @Nullable
+    public static Action get(@NonNull String name) {
+        return actions.get(name);
+    }
+
+    @NonNull
+    static Collection<Action> all() {
+        return actions.values();
+    }
+
+    public interface ActionHandler {
+        /**
+         * @param sdk the ready SDK instance, or null if the action was not registered with
+         * {@link #REQUIRES_SDK} and was not held until the SDK was ready.
+         */
+        void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+            @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+            throws JSONException;
+    }
+
+    public interface SequenceKeys {
+        /**
+         * @return the keys written by a call with {@code args}, or {@link #ALL_KEYS}.
+         */
+        @NonNull
+        String[] of(@NonNull JSONArray args);
+    }
+
+    public static final class Action {
+        private final String name;
+        private final int flags;
+        final ActionHandler handler;
+        @Nullable private final SequenceKeys sequenceKeys;
+        private final String[] defaultKeys;
+        private final MCActionMetrics metrics = new MCActionMetrics();
+
+        Action(String name, int flags, ActionHandler handler, @Nullable SequenceKeys sequenceKeys) {
+            this.name = name;
+            this.flags = flags;
+            this.handler = handler;
+            this.sequenceKeys = sequenceKeys;
+            this.defaultKeys = new String[] {name};
+        }
+
+        @NonNull
+        public String name() {
+            return name;
+        }
+
+        public int flags() {
+            return flags;
+        }
+
+        public boolean isRead() {
+            return (flags & READ) != 0;
+        }
+
+        public boolean isWrite() {
+            return (flags & WRITE) != 0;
+        }
+
+        public boolean requiresSdk() {
+            return (flags & REQUIRES_SDK) != 0;
+        }
+
+        public boolean mayRunOnCallerThread() {
+            return (flags & CALLER_THREAD) != 0;
+        }
+
+        @NonNull
+        String[] sequenceKeys(@NonNull JSONArray args) {
+            return sequenceKeys != null ? sequenceKeys.of(args) : defaultKeys;
+        }
+
+        @NonNull
+        MCActionMetrics metrics() {
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,952 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.Manifest;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.salesforce.marketingcloud.MCLogListener;
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+import com.salesforce.marketingcloud.analytics.AnalyticsManager;
+import com.salesforce.marketingcloud.messages.inbox.InboxMessageManager;
+import com.salesforce.marketingcloud.registration.RegistrationManager;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.salesforce.marketingcloud.cordova.MCActionRegistry.CALLER_THREAD;
+import static com.salesforce.marketingcloud.cordova.MCActionRegistry.READ;
+import static com.salesforce.marketingcloud.cordova.MCActionRegistry.REQUIRES_SDK;
+import static com.salesforce.marketingcloud.cordova.MCActionRegistry.WRITE;
+
+/**
+ * The actions provided by the plugin.  Handlers are stateless; per-WebView state is reached
+ * through the {@link MCCordovaPlugin} passed to each invocation.
+ */
+final class MCBuiltInActions {
+    private static final int EDIT_NOT_APPLIED = -1;
+    private static final int MAX_LOG_LENGTH = 4000;
+
+    private MCBuiltInActions() {}
+
+    static void registerAll() {
+        // Actions that do not need the SDK.
+        MCActionRegistry.register("enableVerboseLogging", WRITE | CALLER_THREAD,
+            ENABLE_VERBOSE_LOGGING);
+        MCActionRegistry.register("disableVerboseLogging", WRITE | CALLER_THREAD,
+            DISABLE_VERBOSE_LOGGING);
+        MCActionRegistry.register("enableLogSink", WRITE | CALLER_THREAD, ENABLE_LOG_SINK);
+        MCActionRegistry.register("disableLogSink", WRITE | CALLER_THREAD, DISABLE_LOG_SINK);
+        MCActionRegistry.register("getLogFiles", READ | CALLER_THREAD, GET_LOG_FILES);
+        MCActionRegistry.register("registerEventsChannel", WRITE | CALLER_THREAD,
+            REGISTER_EVENTS_CHANNEL);
+        MCActionRegistry.register("subscribe", WRITE | CALLER_THREAD, SUBSCRIBE);
+        MCActionRegistry.register("ackEvents", WRITE | CALLER_THREAD, ACK_EVENTS);
+        MCActionRegistry.register("getPluginStats", READ | CALLER_THREAD, GET_PLUGIN_STATS);
+        MCActionRegistry.register("getStartupTimeline", READ | CALLER_THREAD, GET_STARTUP_TIMELINE);
+        MCActionRegistry.register("getBridgeMetrics", READ | CALLER_THREAD, GET_BRIDGE_METRICS);
+        // Gates on the SDK itself, and only when one of its steps needs it.
+        MCActionRegistry.register("pipeline", READ | CALLER_THREAD, PIPELINE);
+
+        // Reads served from the plugin's cache or the SDK's in-memory state.
+        MCActionRegistry.register("getSystemToken", READ | REQUIRES_SDK | CALLER_THREAD,
+            GET_SYSTEM_TOKEN);
+        MCActionRegistry.register("isPushEnabled", READ | REQUIRES_SDK | CALLER_THREAD,
+            IS_PUSH_ENABLED);
+        MCActionRegistry.register("getContactKey", READ | REQUIRES_SDK | CALLER_THREAD,
+            GET_CONTACT_KEY);
+        // May flush coalesced edits before reading.
+        MCActionRegistry.register("getAttributes", READ | REQUIRES_SDK, GET_ATTRIBUTES);
+        MCActionRegistry.register("getTags", READ | REQUIRES_SDK, GET_TAGS);
+        MCActionRegistry.register(
+            "getAttributesSince", READ | REQUIRES_SDK, GET_ATTRIBUTES_SINCE);
+        MCActionRegistry.register("getTagsSince", READ | REQUIRES_SDK, GET_TAGS_SINCE);
+        MCActionRegistry.register("getSDKState", READ | REQUIRES_SDK, GET_SDK_STATE);
+        MCActionRegistry.register(
+            "getSdkStateSnapshot", READ | REQUIRES_SDK, GET_SDK_STATE_SNAPSHOT);
+        MCActionRegistry.register("logSdkState", READ | REQUIRES_SDK, LOG_SDK_STATE);
+        MCActionRegistry.register("getInboxMessages", READ | REQUIRES_SDK, GET_INBOX_MESSAGES);
+
+        MCActionRegistry.register("enablePush", WRITE | REQUIRES_SDK, ENABLE_PUSH, PUSH_KEYS);
+        MCActionRegistry.register("disablePush", WRITE | REQUIRES_SDK, DISABLE_PUSH, PUSH_KEYS);
+        MCActionRegistry.register(
+            "setAttribute", WRITE | REQUIRES_SDK, SET_ATTRIBUTE, ATTRIBUTE_KEYS);
+        MCActionRegistry.register(
+            "clearAttribute", WRITE | REQUIRES_SDK, CLEAR_ATTRIBUTE, ATTRIBUTE_KEYS);
+        MCActionRegistry.register("addTag", WRITE | REQUIRES_SDK, ADD_TAG, TAG_KEYS);
+        MCActionRegistry.register("removeTag", WRITE | REQUIRES_SDK, REMOVE_TAG, TAG_KEYS);
+        // Changing the contact key affects the whole registration so it is ordered with
+        // every other write.
+        MCActionRegistry.register(
+            "setContactKey", WRITE | REQUIRES_SDK, SET_CONTACT_KEY, ALL_SEQUENCE_KEYS);
+        MCActionRegistry.register("batchEdit", WRITE | REQUIRES_SDK, BATCH_EDIT, BATCH_EDIT_KEYS);
+        MCActionRegistry.register(
+            "enableGeofence", WRITE | REQUIRES_SDK, ENABLE_GEOFENCE, GEOFENCE_KEYS);
+        MCActionRegistry.register(
+            "disableGeofence", WRITE | REQUIRES_SDK, DISABLE_GEOFENCE, GEOFENCE_KEYS);
+        MCActionRegistry.register("askForLocationPermissions", WRITE | REQUIRES_SDK,
+            ASK_FOR_LOCATION_PERMISSIONS, GEOFENCE_KEYS);
+        MCActionRegistry.register("markInboxMessagesRead", WRITE | REQUIRES_SDK,
+            MARK_INBOX_MESSAGES_READ, INBOX_KEYS);
+        MCActionRegistry.register(
+            "deleteInboxMessages", WRITE | REQUIRES_SDK, DELETE_INBOX_MESSAGES, INBOX_KEYS);
+        MCActionRegistry.register(
+            "trackPageViews", WRITE | REQUIRES_SDK, TRACK_PAGE_VIEWS, ANALYTICS_KEYS);
+        MCActionRegistry.register("enableRegionEvents", WRITE | REQUIRES_SDK | CALLER_THREAD,
+            ENABLE_REGION_EVENTS, GEOFENCE_KEYS);
+        MCActionRegistry.register("disableRegionEvents", WRITE | REQUIRES_SDK | CALLER_THREAD,
+            DISABLE_REGION_EVENTS, GEOFENCE_KEYS);
+    }
+
+    static JSONObject fromMap(Map<String, String> map) throws JSONException {
+        JSONObject data = new JSONObject();
+        if (map != null && !map.isEmpty()) {
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                data.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return data;
+    }
+
+    static JSONArray fromCollection(Collection<String> collection) {
+        JSONArray data = new JSONArray();
+        if (collection != null && !collection.isEmpty()) {
+            for (String s : collection) {
+                data.put(s);
+            }
+        }
+        return data;
+    }
+
+    static void log(String tag, String msg) {
+        println(Log.DEBUG, tag, msg);
+    }
+
+    /**
+     * Writes {@code msg} to logcat in chunks that fit logcat's line limit.
+     */
+    static void println(int priority, String tag, String msg) {
+        int length = msg.length();
+        if (length <= MAX_LOG_LENGTH) {
+            Log.println(priority, tag, msg);
+            return;
+        }
+        for (int i = 0; i < length; i += MAX_LOG_LENGTH) {
+            Log.println(priority, tag, msg.substring(i, Math.min(length, i + MAX_LOG_LENGTH)));
+        }
+    }
+
+    private static final MCActionRegistry.SequenceKeys ATTRIBUTE_KEYS =
+        new MCActionRegistry.SequenceKeys() {
+            @NonNull
+            @Override
+            public String[] of(@NonNull JSONArray args) {
+                return new String[] {"attribute:" + args.optString(0)};
+            }
+        };
+
+    private static final MCActionRegistry.SequenceKeys TAG_KEYS =
+        new MCActionRegistry.SequenceKeys() {
+            @NonNull
+            @Override
+            public String[] of(@NonNull JSONArray args) {
+                return new String[] {"tag:" + args.optString(0)};
+            }
+        };
+
+    private static final MCActionRegistry.SequenceKeys BATCH_EDIT_KEYS =
+        new MCActionRegistry.SequenceKeys() {
+            @NonNull
+            @Override
+            public String[] of(@NonNull JSONArray args) {
+                JSONArray operations = args.optJSONArray(0);
+                int length = operations != null ? operations.length() : 0;
+                String[] keys = new String[length];
+                for (int i = 0; i < length; i++) {
+                    JSONObject operation = operations.optJSONObject(i);
+                    String op = operation != null ? operation.optString("op") : "";
+                    switch (op) {
+                        case "setAttribute":
+                        case "clearAttribute":
+                            keys[i] = "attribute:" + operation.optString("key");
+                            break;
+                        case "addTag":
+                        case "removeTag":
+                            keys[i] = "tag:" + operation.optString("tag");
+                            break;
+                        case "setContactKey":
+                            return new String[] {MCActionRegistry.ALL_KEYS};
+                        default:
+                            keys[i] = "batchEdit";
+                            break;
+                    }
+                }
+                return length == 0 ? new String[] {"batchEdit"} : keys;
+            }
+        };
+
+    private static final MCActionRegistry.SequenceKeys ALL_SEQUENCE_KEYS =
+        constantKeys(MCActionRegistry.ALL_KEYS);
+    private static final MCActionRegistry.SequenceKeys PUSH_KEYS = constantKeys("push");
+    private static final MCActionRegistry.SequenceKeys GEOFENCE_KEYS = constantKeys("geofence");
+    private static final MCActionRegistry.SequenceKeys INBOX_KEYS = constantKeys("inbox");
+    private static final MCActionRegistry.SequenceKeys ANALYTICS_KEYS = constantKeys("analytics");
+
+    private static MCActionRegistry.SequenceKeys constantKeys(String key) {
+        final String[] keys = {key};
+        return new MCActionRegistry.SequenceKeys() {
+            @NonNull
+            @Override
+            public String[] of(@NonNull JSONArray args) {
+                return keys;
+            }
+        };
+    }
+
+    @Nullable
+    private static String optNullableString(JSONObject object, String name) {
+        return object.isNull(name) ? null : object.optString(name);
+    }
+
+    private static final MCActionRegistry.ActionHandler ENABLE_VERBOSE_LOGGING =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                MCLogSink.setAppLogListener(
+                    new MCLogListener.AndroidLogListener(), MCLogListener.VERBOSE);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler DISABLE_VERBOSE_LOGGING =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                MCLogSink.setAppLogListener(null, MCLogSink.OFF);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ENABLE_LOG_SINK =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                MCLogSink sink = plugin.getLogSink();
+                if (sink == null) {
+                    callbackContext.error("Log files are not available.");
+                    return;
+                }
+                JSONObject options = args.optJSONObject(0);
+                if (options == null) {
+                    options = new JSONObject();
+                }
+                int fileLevel =
+                    MCLogSink.parseLevel(options.optString("level"), MCLogListener.DEBUG);
+                int logcatLevel = MCLogSink.parseLevel(options.optString("logcat"), MCLogSink.OFF);
+                int streamLevel = MCLogSink.parseLevel(options.optString("stream"), MCLogSink.OFF);
+                plugin.setLogSinkEnabled(true);
+                if (streamLevel == MCLogSink.OFF) {
+                    sink.enable(fileLevel, logcatLevel, MCLogSink.OFF, null);
+                    callbackContext.success();
+                    return;
+                }
+                // Batches of records are sent to this callback until the sink is enabled again.
+                sink.enable(fileLevel, logcatLevel, streamLevel, callbackContext);
+                PluginResult result = new PluginResult(PluginResult.Status.NO_RESULT);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler DISABLE_LOG_SINK =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                MCLogSink sink = plugin.getLogSink();
+                if (sink != null) {
+                    sink.disable();
+                }
+                plugin.setLogSinkEnabled(false);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_LOG_FILES =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                MCLogSink sink = plugin.getLogSink();
+                if (sink == null) {
+                    callbackContext.success(new JSONArray());
+                    return;
+                }
+                sink.sendFiles(callbackContext);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler REGISTER_EVENTS_CHANNEL =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.registerEventsChannel(callbackContext);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler SUBSCRIBE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.subscribe(args, callbackContext);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ACK_EVENTS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.ackEvents(args);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_PLUGIN_STATS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                callbackContext.success(plugin.getPluginStats());
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_STARTUP_TIMELINE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                callbackContext.success(MCStartupTimeline.toJson());
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_BRIDGE_METRICS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                callbackContext.success(MCActionMetrics.snapshot());
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_CONTACT_KEY =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationCache cache = plugin.registrationCache;
+                int entry = MCRegistrationCache.CONTACT_KEY;
+                Object cached = cache.lookup(entry);
+                String contactKey;
+                if (cached != MCRegistrationCache.MISS) {
+                    contactKey = (String) cached;
+                } else {
+                    long generation = cache.generation(entry);
+                    contactKey = sdk.getRegistrationManager().getContactKey();
+                    cache.put(entry, generation, contactKey);
+                }
+                callbackContext.success(contactKey);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler SET_CONTACT_KEY =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                String contactKey = args.optString(0, null);
+                plugin.flushPendingEdits();
+                boolean success =
+                    sdk.getRegistrationManager().edit().setContactKey(contactKey).commit();
+                plugin.registrationCache.invalidate(MCRegistrationCache.CONTACT_KEY);
+                callbackContext.success(success ? 1 : 0);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_TAGS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.flushPendingEdits();
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationCache cache = plugin.registrationCache;
+                int entry = MCRegistrationCache.TAGS;
+                PluginResult result = cache.get(entry);
+                if (result == null) {
+                    long generation = cache.generation(entry);
+                    result = new PluginResult(PluginResult.Status.OK,
+                        fromCollection(sdk.getRegistrationManager().getTags()));
+                    cache.put(entry, generation, result);
+                }
+                callbackContext.sendPluginResult(result);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler REMOVE_TAG =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                String tag = args.optString(0, null);
+                MCRegistrationCoalescer coalescer = plugin.getRegistrationCoalescer();
+                if (coalescer != null) {
+                    coalescer.removeTag(sdk, tag, callbackContext);
+                    plugin.registrationCache.invalidate(MCRegistrationCache.TAGS);
+                    return;
+                }
+                boolean success = sdk.getRegistrationManager().edit().removeTag(tag).commit();
+                plugin.registrationCache.invalidate(MCRegistrationCache.TAGS);
+                callbackContext.success(success ? 1 : 0);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ADD_TAG =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                String tag = args.optString(0, null);
+                MCRegistrationCoalescer coalescer = plugin.getRegistrationCoalescer();
+                if (coalescer != null) {
+                    coalescer.addTag(sdk, tag, callbackContext);
+                    plugin.registrationCache.invalidate(MCRegistrationCache.TAGS);
+                    return;
+                }
+                boolean success = sdk.getRegistrationManager().edit().addTag(tag).commit();
+                plugin.registrationCache.invalidate(MCRegistrationCache.TAGS);
+                callbackContext.success(success ? 1 : 0);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler CLEAR_ATTRIBUTE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                String key = args.optString(0, null);
+                MCRegistrationCoalescer coalescer = plugin.getRegistrationCoalescer();
+                if (coalescer != null) {
+                    coalescer.clearAttribute(sdk, key, callbackContext);
+                    plugin.registrationCache.invalidate(MCRegistrationCache.ATTRIBUTES);
+                    return;
+                }
+                boolean success = sdk.getRegistrationManager().edit().clearAttribute(key).commit();
+                plugin.registrationCache.invalidate(MCRegistrationCache.ATTRIBUTES);
+                callbackContext.success(success ? 1 : 0);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler SET_ATTRIBUTE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                String key = args.optString(0, null);
+                String value = args.optString(1);
+                MCRegistrationCoalescer coalescer = plugin.getRegistrationCoalescer();
+                if (coalescer != null) {
+                    coalescer.setAttribute(sdk, key, value, callbackContext);
+                    plugin.registrationCache.invalidate(MCRegistrationCache.ATTRIBUTES);
+                    return;
+                }
+                boolean success =
+                    sdk.getRegistrationManager().edit().setAttribute(key, value).commit();
+                plugin.registrationCache.invalidate(MCRegistrationCache.ATTRIBUTES);
+                callbackContext.success(success ? 1 : 0);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler BATCH_EDIT =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                JSONArray operations = args.optJSONArray(0);
+                if (operations == null) {
+                    callbackContext.error("batchEdit requires an array of operations");
+                    return;
+                }
+
+                plugin.flushPendingEdits();
+                RegistrationManager.Editor editor = sdk.getRegistrationManager().edit();
+                int[] applied = new int[operations.length()];
+                for (int i = 0; i < applied.length; i++) {
+                    applied[i] = applyEdit(editor, operations.optJSONObject(i));
+                }
+                boolean success = editor.commit();
+
+                JSONArray results = new JSONArray();
+                for (int entry : applied) {
+                    if (entry != EDIT_NOT_APPLIED) {
+                        plugin.registrationCache.invalidate(entry);
+                    }
+                    results.put(success && entry != EDIT_NOT_APPLIED);
+                }
+                callbackContext.success(results);
+            }
+        };
+
+    /**
+     * Applies a single batchEdit operation to the editor.  Operations are objects of the form
+     * {@code {"op": "setAttribute", "key": "k", "value": "v"}}.
+     *
+     * @return the {@link MCRegistrationCache} entry changed by the operation, or
+     * {@link #EDIT_NOT_APPLIED} if the operation was malformed and was not applied to the editor.
+     */
+    static int applyEdit(RegistrationManager.Editor editor, @Nullable JSONObject operation) {
+        if (operation == null) {
+            return EDIT_NOT_APPLIED;
+        }
+        switch (operation.optString("op")) {
+            case "setAttribute":
+                String key = operation.optString("key", null);
+                if (key == null) {
+                    return EDIT_NOT_APPLIED;
+                }
+                editor.setAttribute(key, operation.optString("value"));
+                return MCRegistrationCache.ATTRIBUTES;
+            case "clearAttribute":
+                key = operation.optString("key", null);
+                if (key == null) {
+                    return EDIT_NOT_APPLIED;
+                }
+                editor.clearAttribute(key);
+                return MCRegistrationCache.ATTRIBUTES;
+            case "addTag":
+                String tag = operation.optString("tag", null);
+                if (tag == null) {
+                    return EDIT_NOT_APPLIED;
+                }
+                editor.addTag(tag);
+                return MCRegistrationCache.TAGS;
+            case "removeTag":
+                tag = operation.optString("tag", null);
+                if (tag == null) {
+                    return EDIT_NOT_APPLIED;
+                }
+                editor.removeTag(tag);
+                return MCRegistrationCache.TAGS;
+            case "setContactKey":
+                String contactKey = operation.optString("contactKey", null);
+                if (contactKey == null) {
+                    return EDIT_NOT_APPLIED;
+                }
+                editor.setContactKey(contactKey);
+                return MCRegistrationCache.CONTACT_KEY;
+            default:
+                return EDIT_NOT_APPLIED;
+        }
+    }
+
+    private static final MCActionRegistry.ActionHandler GET_ATTRIBUTES =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                plugin.flushPendingEdits();
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationCache cache = plugin.registrationCache;
+                int entry = MCRegistrationCache.ATTRIBUTES;
+                PluginResult result = cache.get(entry);
+                if (result == null) {
+                    long generation = cache.generation(entry);
+                    result = new PluginResult(PluginResult.Status.OK,
+                        fromMap(sdk.getRegistrationManager().getAttributes()));
+                    cache.put(entry, generation, result);
+                }
+                callbackContext.sendPluginResult(result);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_ATTRIBUTES_SINCE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                long since = args.optLong(0, 0);
+                plugin.flushPendingEdits();
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationHistory history = plugin.getRegistrationHistory();
+                // Unchanged since the last observation unless a write or registration event
+                // invalidated the cached attributes.
+                long generation =
+                    plugin.registrationCache.generation(MCRegistrationCache.ATTRIBUTES);
+                if (!history.hasAttributes(generation)) {
+                    history.observeAttributes(
+                        sdk.getRegistrationManager().getAttributes(), generation);
+                }
+                callbackContext.sendPluginResult(
+                    new PluginResult(PluginResult.Status.OK, history.attributesSince(since)));
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_TAGS_SINCE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                long since = args.optLong(0, 0);
+                plugin.flushPendingEdits();
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationHistory history = plugin.getRegistrationHistory();
+                long generation = plugin.registrationCache.generation(MCRegistrationCache.TAGS);
+                if (!history.hasTags(generation)) {
+                    history.observeTags(sdk.getRegistrationManager().getTags(), generation);
+                }
+                callbackContext.sendPluginResult(
+                    new PluginResult(PluginResult.Status.OK, history.tagsSince(since)));
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler DISABLE_PUSH =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                sdk.getPushMessageManager().disablePush();
+                plugin.registrationCache.invalidate(MCRegistrationCache.PUSH_ENABLED);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ENABLE_PUSH =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                sdk.getPushMessageManager().enablePush();
+                plugin.registrationCache.invalidate(MCRegistrationCache.PUSH_ENABLED);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler IS_PUSH_ENABLED =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationCache cache = plugin.registrationCache;
+                int entry = MCRegistrationCache.PUSH_ENABLED;
+                Boolean enabled = cache.get(entry);
+                if (enabled == null) {
+                    long generation = cache.generation(entry);
+                    enabled = sdk.getPushMessageManager().isPushEnabled();
+                    cache.put(entry, generation, enabled);
+                }
+                callbackContext.success(enabled ? 1 : 0);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_SYSTEM_TOKEN =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.ensureCacheListeners(sdk);
+                MCRegistrationCache cache = plugin.registrationCache;
+                int entry = MCRegistrationCache.SYSTEM_TOKEN;
+                Object cached = cache.lookup(entry);
+                String token;
+                if (cached != MCRegistrationCache.MISS) {
+                    token = (String) cached;
+                } else {
+                    long generation = cache.generation(entry);
+                    token = sdk.getPushMessageManager().getPushToken();
+                    cache.put(entry, generation, token);
+                }
+                callbackContext.success(token);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler LOG_SDK_STATE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                // Always live; only getSdkStateSnapshot callers opt in to cached sections.
+                log("MCSDK STATE", plugin.getSdkStateSnapshot().section(plugin, sdk,
+                    MCSdkStateSnapshot.SDK, 0));
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ENABLE_GEOFENCE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                sdk.getRegionMessageManager().enableGeofenceMessaging();
+                /*
+                 * if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.M
+                 * ||cordova.hasPermission(Manifest.permission.ACCESS_FINE_LOCATION)) {
+                 * sdk.getRegionMessageManager().enableGeofenceMessaging(); } else {
+                 * cordova.requestPermission(thisObject, PERMISSIONS_REQUEST_FINE_LOCATION,
+                 * Manifest.permission.ACCESS_FINE_LOCATION); }
+                 */
+                plugin.getSdkStateSnapshot().invalidate(MCSdkStateSnapshot.LOCATION);
+
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler DISABLE_GEOFENCE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                sdk.getRegionMessageManager().disableGeofenceMessaging();
+                plugin.getSdkStateSnapshot().invalidate(MCSdkStateSnapshot.LOCATION);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_SDK_STATE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                // Always live; only getSdkStateSnapshot callers opt in to cached sections.
+                callbackContext.success(plugin.getSdkStateSnapshot().section(plugin, sdk,
+                    MCSdkStateSnapshot.SDK, 0));
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_SDK_STATE_SNAPSHOT =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                JSONObject options = args.optJSONObject(0);
+                if (options == null) {
+                    options = new JSONObject();
+                }
+                Collection<String> sections = MCSdkStateSnapshot.sectionNames();
+                JSONArray names = options.optJSONArray("sections");
+                if (names != null) {
+                    sections = new ArrayList<>();
+                    for (int i = 0; i < names.length(); i++) {
+                        sections.add(names.getString(i));
+                    }
+                }
+                long maxAgeMs =
+                    options.optLong("maxAgeMs", MCPluginConfig.get().sdkStateMaxAgeMs);
+                // Registration events must reach the cache for its generations to be current.
+                plugin.ensureCacheListeners(sdk);
+                // Sent as JSON text and decoded by the JavaScript plugin.
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK,
+                    plugin.getSdkStateSnapshot().snapshot(plugin, sdk, sections, maxAgeMs)));
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler PIPELINE =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                List<MCPipeline.Step> steps =
+                    MCPipeline.parse(args.getJSONArray(0), callbackContext);
+                if (steps == null) {
+                    return;
+                }
+                // The SDK is passed in when the gate released a held pipeline.
+                if (sdk == null && MCPipeline.requiresSdk(steps)) {
+                    if (plugin.getSdkGate().hold(
+                        MCActionRegistry.get("pipeline"), args, callbackContext)) {
+                        // Runs again once the SDK is ready.
+                        return;
+                    }
+                    sdk = MarketingCloudSdk.getInstance();
+                }
+                MCPipeline.run(plugin, sdk, steps, callbackContext);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler GET_INBOX_MESSAGES =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext)
+                throws JSONException {
+                JSONObject options = args.optJSONObject(0);
+                if (options == null) {
+                    options = new JSONObject();
+                }
+                String filter = options.optString("filter", MCInboxCache.ALL);
+                String cursor = options.isNull("cursor") ? null : options.getString("cursor");
+                int limit = options.optInt("limit", MCPluginConfig.get().inboxPageSize);
+                // Inbox changes must reach the cache for its pages to be current.
+                plugin.ensureInboxListener(sdk);
+                // Sent as JSON text and decoded by the JavaScript plugin.
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK,
+                    plugin.inboxCache.page(
+                        sdk.getInboxMessageManager(), filter, cursor, limit)));
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler MARK_INBOX_MESSAGES_READ =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                JSONArray ids = args.optJSONArray(0);
+                if (ids == null) {
+                    callbackContext.error("markInboxMessagesRead requires an array of message ids");
+                    return;
+                }
+                InboxMessageManager manager = sdk.getInboxMessageManager();
+                int applied = 0;
+                for (int i = 0; i < ids.length(); i++) {
+                    if (!ids.isNull(i)) {
+                        manager.setMessageRead(ids.optString(i));
+                        applied++;
+                    }
+                }
+                // Once for the whole batch rather than once per message.
+                plugin.inboxCache.invalidate();
+                callbackContext.success(applied);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler DELETE_INBOX_MESSAGES =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                JSONArray ids = args.optJSONArray(0);
+                if (ids == null) {
+                    callbackContext.error("deleteInboxMessages requires an array of message ids");
+                    return;
+                }
+                InboxMessageManager manager = sdk.getInboxMessageManager();
+                int applied = 0;
+                for (int i = 0; i < ids.length(); i++) {
+                    if (!ids.isNull(i)) {
+                        manager.deleteMessage(ids.optString(i));
+                        applied++;
+                    }
+                }
+                plugin.inboxCache.invalidate();
+                callbackContext.success(applied);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler TRACK_PAGE_VIEWS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                JSONArray views = args.optJSONArray(0);
+                if (views == null) {
+                    callbackContext.error("trackPageViews requires an array of page views");
+                    return;
+                }
+                AnalyticsManager analytics = sdk.getAnalyticsManager();
+                int tracked = 0;
+                for (int i = 0; i < views.length(); i++) {
+                    JSONObject view = views.optJSONObject(i);
+                    String url = view != null ? optNullableString(view, "url") : null;
+                    if (url == null) {
+                        // The SDK requires a url; the rest of the batch is still tracked.
+                        continue;
+                    }
+                    analytics.trackPageView(url, optNullableString(view, "title"),
+                        optNullableString(view, "item"), optNullableString(view, "search"));
+                    tracked++;
+                }
+                callbackContext.success(tracked);
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ENABLE_REGION_EVENTS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.enableRegionEvents(sdk);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler DISABLE_REGION_EVENTS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                plugin.disableRegionEvents(sdk);
+                callbackContext.success();
+            }
+        };
+
+    private static final MCActionRegistry.ActionHandler ASK_FOR_LOCATION_PERMISSIONS =
+        new MCActionRegistry.ActionHandler() {
+            @Override
+            public void execute(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+                @NonNull JSONArray args, @NonNull CallbackContext callbackContext) {
+                if (android.os.Build.VERSION.SDK_INT > android.os.Build.VERSION_CODES.M) {
+                    plugin.cordova.requestPermission(plugin,
+                        MCCordovaPlugin.PERMISSIONS_REQUEST_FINE_LOCATION,
+                        Manifest.permission.ACCESS_FINE_LOCATION);
+                }
+                callbackContext.success();
+            }
+        };
+}
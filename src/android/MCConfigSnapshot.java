@@ -0,0 +1,141 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.salesforce.marketingcloud.cordova.MCCordovaPlugin.TAG;
+
+/**
+ * The {@code com.salesforce.marketingcloud.} preferences from config.xml with the notification
+ * icon already resolved to a resource id.  It is written to a small binary file after config.xml
+ * is first parsed and read back on later starts, so they neither parse the XML nor look up the
+ * icon by name.  The file is keyed by the APK's path and modification time since both the
+ * preferences and resource ids can only change with a new APK, and unlike the package's version
+ * they are known without a call to the package manager.
+ */
+final class MCConfigSnapshot {
+    private static final int MAGIC = 0x4d43534e;
+    private static final int FORMAT_VERSION = 2;
+
+    /** Preference names, lowercased, mapped to their values in document order. */
+    final Map<String, String> preferences;
+    /** Resource id of the notification small icon, or 0. */
+    final int notificationIconId;
+    /** False if config.xml could not be read to the end, in which case it is not saved. */
+    final boolean complete;
+
+    MCConfigSnapshot(
+        @NonNull Map<String, String> preferences, int notificationIconId, boolean complete) {
+        this.preferences = Collections.unmodifiableMap(preferences);
+        this.notificationIconId = notificationIconId;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the snapshot in {@code file}, or null if there is none for this APK.
+     */
+    @Nullable
+    static MCConfigSnapshot read(@NonNull File file, @NonNull String apkPath, long apkModified) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                || !apkPath.equals(in.readUTF()) || in.readLong() != apkModified) {
+                return null;
+            }
+            int notificationIconId = in.readInt();
+            int count = in.readInt();
+            Map<String, String> preferences = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                preferences.put(in.readUTF(), in.readUTF());
+            }
+            return new MCConfigSnapshot(preferences, notificationIconId, true);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read config snapshot. Parsing config.xml.", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // NO_OP
+                }
+            }
+        }
+    }
+
+    void write(@NonNull File file, @NonNull String apkPath, long apkModified) {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(apkPath);
+            out.writeLong(apkModified);
+            out.writeInt(notificationIconId);
+            out.writeInt(preferences.size());
+            for (Map.Entry<String, String> entry : preferences.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Unable to save config snapshot.");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save config snapshot.", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // NO_OP
+                }
+            }
+        }
+    }
+}
@@ -32,16 +32,18 @@ import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
-import android.util.Log;
-import android.Manifest;
 import android.content.pm.PackageManager;
-import android.os.Bundle;
 
-import com.salesforce.marketingcloud.MCLogListener;
 import com.salesforce.marketingcloud.MarketingCloudSdk;
 import com.salesforce.marketingcloud.UrlHandler;
+import com.salesforce.marketingcloud.messages.RegionMessageManager;
+import com.salesforce.marketingcloud.messages.inbox.InboxMessage;
+import com.salesforce.marketingcloud.messages.inbox.InboxMessageManager;
+import com.salesforce.marketingcloud.messages.push.PushMessageManager;
 import com.salesforce.marketingcloud.notifications.NotificationManager;
 import com.salesforce.marketingcloud.notifications.NotificationMessage;
+import com.salesforce.marketingcloud.registration.Registration;
+import com.salesforce.marketingcloud.registration.RegistrationManager;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
@@ -52,61 +54,131 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.Collection;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MCCordovaPlugin extends CordovaPlugin implements UrlHandler, ActivityCompat.OnRequestPermissionsResultCallback {
-    private static final int PERMISSIONS_REQUEST_FINE_LOCATION = 1;
+    static final int PERMISSIONS_REQUEST_FINE_LOCATION = 1;
 
     static final String TAG = "~!MCCordova";
 
+    static final String EVENT_NOTIFICATION_OPENED = "notificationOpened";
+    static final String EVENT_URL_ACTION = "urlAction";
+    static final String EVENT_REGION_TRANSITION = "regionTransition";
+    static final String EVENT_GEOFENCE_MESSAGE_RESPONSE = "geofenceMessageResponse";
+    private static final String EVENT_JOURNAL_FILE = "mccordova_events.journal";
+    private static final int MAX_RECENT_EVENT_IDS = 256;
+    // Opens share one sequence key so they are converted and sent in the order received.
+    private static final String[] NOTIFICATION_OPENED_KEYS = {"event:" + EVENT_NOTIFICATION_OPENED};
+
+    private final Object eventLock = new Object();
     private CallbackContext eventsChannel = null;
-    private PluginResult cachedNotificationOpenedResult = null;
     private boolean notificationOpenedSubscribed = false;
+    private boolean regionEventsSubscribed = false;
+    private MCEventBuffer eventBuffer = null;
+    MCEventBatcher eventBatcher = null;
+    MCEventJournal eventJournal = null;
+    // Journal ids of the events in each unacknowledged batch.
+    private final Map<Long, List<JSONObject>> batchEvents = new HashMap<>();
+    // Ids of recent events, so an event restored from the journal or an intent that is handled
+    // again is not delivered twice.
+    private final Map<String, Boolean> recentEventIds =
+        new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_RECENT_EVENT_IDS;
+            }
+        };
+    MCRegistrationCoalescer registrationCoalescer = null;
+    MCActionExecutor actionExecutor = null;
+    MCSdkGate sdkGate = null;
+    MCRegistrationHistory registrationHistory = null;
+    MCLogSink logSink = null;
+    boolean logSinkEnabled = false;
+    @Nullable private File filesDir = null;
+    MCRegionEventCoalescer regionEventCoalescer = null;
+    private boolean regionListenersRegistered = false;
+    private final MCSdkStateSnapshot sdkStateSnapshot = new MCSdkStateSnapshot();
+    final MCRegistrationCache registrationCache = new MCRegistrationCache();
+    private boolean cacheListenersRegistered = false;
+    final MCInboxCache inboxCache = new MCInboxCache();
+    // Time notification opens wait for and spend being converted into events.
+    final MCActionMetrics notificationOpenMetrics = new MCActionMetrics();
+    private boolean inboxListenerRegistered = false;
+
+    private final RegistrationManager.RegistrationEventListener registrationEventListener =
+        new RegistrationManager.RegistrationEventListener() {
+            @Override
+            public void onRegistrationReceived(@NonNull Registration registration) {
+                // The registration may have been changed outside of the plugin.
+                registrationCache.invalidateAll();
+            }
+        };
 
-    private static JSONObject fromMap(Map<String, String> map) throws JSONException {
-        JSONObject data = new JSONObject();
-        if (map != null && !map.isEmpty()) {
-            for (Map.Entry<String, String> entry : map.entrySet()) {
-                data.put(entry.getKey(), entry.getValue());
+    private final InboxMessageManager.InboxResponseListener inboxResponseListener =
+        new InboxMessageManager.InboxResponseListener() {
+            @Override
+            public void onInboxMessagesChanged(@NonNull List<InboxMessage> messages) {
+                inboxCache.invalidate();
             }
-        }
-        return data;
-    }
+        };
 
-    private static JSONArray fromCollection(Collection<String> collection) {
-        JSONArray data = new JSONArray();
-        if (collection != null && !collection.isEmpty()) {
-            for (String s : collection) {
-                data.put(s);
+    private final PushMessageManager.PushTokenRefreshListener tokenRefreshListener =
+        new PushMessageManager.PushTokenRefreshListener() {
+            @Override
+            public void onTokenRefreshed(@NonNull String token) {
+                registrationCache.invalidate(MCRegistrationCache.SYSTEM_TOKEN);
             }
-        }
-        return data;
-    }
+        };
 
     @Nullable
     @Override
     public PendingIntent handleUrl(
         @NonNull Context context, @NonNull String url, @NonNull String urlType) {
-        if (eventsChannel != null) {
-            try {
-                JSONObject eventArgs = new JSONObject();
-                eventArgs.put("type", "urlAction");
-                eventArgs.put("url", url);
-                PluginResult result = new PluginResult(PluginResult.Status.OK, eventArgs);
-                result.setKeepCallback(true);
-
-                eventsChannel.sendPluginResult(result);
-            } catch (Exception e) {
-                // NO_OP
-            }
+        try {
+            JSONObject eventArgs = new JSONObject();
+            eventArgs.put("type", EVENT_URL_ACTION);
+            eventArgs.put("url", url);
+            sendEvent(EVENT_URL_ACTION, EVENT_URL_ACTION + ":" + UUID.randomUUID(), eventArgs);
+        } catch (Exception e) {
+            // NO_OP
         }
         return null;
     }
 
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+        MCStartupTimeline.begin(MCStartupTimeline.PLUGIN_INITIALIZE);
+        try {
+            initializeInternal(cordova);
+        } finally {
+            MCStartupTimeline.end(MCStartupTimeline.PLUGIN_INITIALIZE);
+        }
+    }
+
+    private void initializeInternal(CordovaInterface cordova) {
         MCSdkListener.INSTANCE.urlHandler = this;
+        File filesDir = cordova.getActivity().getFilesDir();
+        synchronized (this) {
+            this.filesDir = filesDir;
+        }
+        if (eventJournal == null && filesDir != null) {
+            eventJournal = new MCEventJournal(new File(filesDir, EVENT_JOURNAL_FILE));
+        }
+        if (eventJournal != null) {
+            eventJournal.load(new MCEventJournal.LoadCallback() {
+                @Override
+                public void onLoaded(@NonNull List<MCEventJournal.Entry> entries) {
+                    restoreEvents(entries);
+                }
+            });
+        }
         handleNotificationMessage(
             NotificationManager.extractMessage(cordova.getActivity().getIntent()));
     }
@@ -117,377 +189,614 @@ public class MCCordovaPlugin extends CordovaPlugin implements UrlHandler, Activi
         handleNotificationMessage(NotificationManager.extractMessage(intent));
     }
 
-    private void handleNotificationMessage(@Nullable NotificationMessage message) {
-        if (message != null) {
-            // Open from push
-            PluginResult result;
-
-            try {
-                JSONObject eventArgs = new JSONObject();
-                eventArgs.put("timeStamp", System.currentTimeMillis());
-                JSONObject values = new JSONObject(message.payload());
-                if (message.url() != null) {
-                    values.put("url", message.url());
-                }
-                switch (message.type()) {
-                    case OTHER:
-                        values.put("type", "other");
-                        break;
-                    case CLOUD_PAGE:
-                        values.put("type", "cloudPage");
-                        break;
-                    case OPEN_DIRECT:
-                        values.put("type", "openDirect");
-                        break;
-                    default:
-                        break;
-                }
-                eventArgs.put("values", values);
-                eventArgs.put("type", "notificationOpened");
-
-                result = new PluginResult(PluginResult.Status.OK, eventArgs);
-                result.setKeepCallback(true);
+    @Override
+    public void onPause(boolean multitasking) {
+        super.onPause(multitasking);
+        MCRegistrationCoalescer coalescer = getRegistrationCoalescer();
+        if (coalescer != null) {
+            coalescer.flushAsync();
+        }
+    }
 
-                if (eventsChannel != null && notificationOpenedSubscribed) {
-                    eventsChannel.sendPluginResult(result);
-                } else {
-                    cachedNotificationOpenedResult = result;
+    @Override
+    public void onDestroy() {
+        synchronized (this) {
+            if (registrationCoalescer != null) {
+                registrationCoalescer.shutdown();
+            }
+            if (cacheListenersRegistered && MarketingCloudSdk.isReady()) {
+                MarketingCloudSdk sdk = MarketingCloudSdk.getInstance();
+                sdk.getRegistrationManager().unregisterForRegistrationEvents(
+                    registrationEventListener);
+                sdk.getPushMessageManager().unregisterTokenRefreshListener(tokenRefreshListener);
+            }
+            if (inboxListenerRegistered && MarketingCloudSdk.isReady()) {
+                MarketingCloudSdk.getInstance().getInboxMessageManager()
+                    .unregisterInboxResponseListener(inboxResponseListener);
+            }
+            if (regionListenersRegistered && MarketingCloudSdk.isReady()) {
+                unregisterRegionListeners(MarketingCloudSdk.getInstance());
+            }
+            if (regionEventCoalescer != null) {
+                regionEventCoalescer.shutdown();
+            }
+            if (actionExecutor != null) {
+                actionExecutor.shutdown();
+            }
+            if (eventBatcher != null) {
+                eventBatcher.shutdown();
+            }
+            if (eventJournal != null) {
+                eventJournal.shutdown();
+            }
+            // The sink is process-wide; capture started by the config outlives this WebView.
+            if (logSink != null && logSinkEnabled) {
+                MCLogSink.release(logSink);
+                if (filesDir != null) {
+                    MCLogSink.startFromConfig(filesDir);
                 }
-            } catch (Exception e) {
-                // NO_OP
             }
+            logSink = null;
+            logSinkEnabled = false;
         }
+        super.onDestroy();
     }
 
-    @Override
-    public boolean execute(final String action, final JSONArray args,
-        final CallbackContext callbackContext) throws JSONException {
-        if (handleStaticAction(action, args, callbackContext)) {
-            return true;
+    /**
+     * Registers for SDK changes made outside of the plugin so cached reads are invalidated.
+     */
+    synchronized void ensureCacheListeners(MarketingCloudSdk sdk) {
+        if (!cacheListenersRegistered) {
+            cacheListenersRegistered = true;
+            sdk.getRegistrationManager().registerForRegistrationEvents(registrationEventListener);
+            sdk.getPushMessageManager().registerTokenRefreshListener(tokenRefreshListener);
         }
+    }
 
-        final ActionHandler handler = getActionHandler(action);
+    /**
+     * Registers for inbox changes so cached inbox pages are invalidated.
+     */
+    synchronized void ensureInboxListener(MarketingCloudSdk sdk) {
+        if (!inboxListenerRegistered) {
+            inboxListenerRegistered = true;
+            sdk.getInboxMessageManager().registerInboxResponseListener(inboxResponseListener);
+        }
+    }
 
-        if (handler == null) {
-            return false;
+    /**
+     * Starts sending region transitions and geofence message responses on the events channel.
+     */
+    void enableRegionEvents(MarketingCloudSdk sdk) {
+        synchronized (this) {
+            if (!regionListenersRegistered) {
+                regionListenersRegistered = true;
+                MCRegionEventCoalescer coalescer = getRegionEventCoalescer();
+                RegionMessageManager regionMessageManager = sdk.getRegionMessageManager();
+                regionMessageManager.registerRegionTransitionEventListener(coalescer);
+                regionMessageManager.registerGeofenceMessageResponseListener(coalescer);
+            }
         }
+        synchronized (eventLock) {
+            regionEventsSubscribed = true;
+            if (eventsChannel != null) {
+                replayEvents();
+            }
+        }
+    }
 
-        cordova.getThreadPool().execute(new Runnable() {
-            @Override
-            public void run() {
-                if (MarketingCloudSdk.isReady()) {
-                    handler.execute(MarketingCloudSdk.getInstance(), args, callbackContext);
-                } else if (MarketingCloudSdk.isInitializing()) {
-                    MarketingCloudSdk.requestSdk(new MarketingCloudSdk.WhenReadyListener() {
-                        @Override
-                        public void ready(@NonNull MarketingCloudSdk sdk) {
-                            handler.execute(sdk, args, callbackContext);
-                        }
-                    });
-                } else {
-                    callbackContext.error("MarketingCloudSdk#init has not been called");
-                }
+    void disableRegionEvents(MarketingCloudSdk sdk) {
+        synchronized (this) {
+            if (regionListenersRegistered) {
+                unregisterRegionListeners(sdk);
             }
-        });
+        }
+        synchronized (eventLock) {
+            regionEventsSubscribed = false;
+        }
+    }
 
-        return true;
+    // Must be called while holding this plugin's lock.
+    private void unregisterRegionListeners(MarketingCloudSdk sdk) {
+        regionListenersRegistered = false;
+        RegionMessageManager regionMessageManager = sdk.getRegionMessageManager();
+        regionMessageManager.unregisterRegionTransitionEventListener(regionEventCoalescer);
+        regionMessageManager.unregisterGeofenceMessageResponseListener(regionEventCoalescer);
     }
 
-    private boolean handleStaticAction(
-        String action, JSONArray args, CallbackContext callbackContext) {
-        switch (action) {
-            case "enableVerboseLogging":
-                MarketingCloudSdk.setLogLevel(MCLogListener.VERBOSE);
-                MarketingCloudSdk.setLogListener(new MCLogListener.AndroidLogListener());
-                callbackContext.success();
-                return true;
-            case "disableVerboseLogging":
-                MarketingCloudSdk.setLogListener(null);
-                callbackContext.success();
-                return true;
-            case "registerEventsChannel":
-                registerEventsChannel(callbackContext);
-                return true;
-            case "subscribe":
-                subscribe(args, callbackContext);
-                return true;
-            default:
-                return false;
+    synchronized MCRegionEventCoalescer getRegionEventCoalescer() {
+        if (regionEventCoalescer == null) {
+            MCPluginConfig config = config();
+            regionEventCoalescer = new MCRegionEventCoalescer(
+                this, config.regionEventDebounceMs, config.regionEventMinIntervalMs);
         }
+        return regionEventCoalescer;
     }
 
-    private void registerEventsChannel(CallbackContext callbackContext) {
-        this.eventsChannel = callbackContext;
-        if (notificationOpenedSubscribed) {
-            sendCachedPushEvent(eventsChannel);
+    /**
+     * Sends a coalesced region event.  Called by {@link MCRegionEventCoalescer}.
+     */
+    void sendRegionEvent(String type, JSONObject eventArgs) {
+        try {
+            sendEvent(type, type + ":" + UUID.randomUUID(), eventArgs);
+        } catch (JSONException e) {
+            // NO_OP
         }
     }
 
-    private void subscribe(JSONArray args, CallbackContext context) {
-        switch (args.optString(0, null)) {
-            case "notificationOpened":
-                notificationOpenedSubscribed = true;
-                if (eventsChannel != null) {
-                    sendCachedPushEvent(eventsChannel);
-                }
-                break;
-            case "urlAction":
-                // NO_OP
-                // Always send urlAction events to the JS plugin.  It will manager the listener
-                // registration.
-                break;
-            default:
-                // NO_OP
+    @Nullable
+    synchronized MCRegistrationCoalescer getRegistrationCoalescer() {
+        MCPluginConfig config = config();
+        if (registrationCoalescer == null && config.isRegistrationCoalescingEnabled()) {
+            registrationCoalescer =
+                new MCRegistrationCoalescer(config.registrationFlushWindowMs, registrationCache);
         }
+        return registrationCoalescer;
     }
 
-    private void sendCachedPushEvent(CallbackContext callbackContext) {
-        if (cachedNotificationOpenedResult != null) {
-            callbackContext.sendPluginResult(cachedNotificationOpenedResult);
-            cachedNotificationOpenedResult = null;
-        }
-    }
-
-    private ActionHandler getActionHandler(String action) {
-        switch (action) {
-            case "getSystemToken":
-                return getSystemToken();
-            case "isPushEnabled":
-                return isPushEnabled();
-            case "enablePush":
-                return enabledPush();
-            case "disablePush":
-                return disablePush();
-            case "getAttributes":
-                return getAttributes();
-            case "setAttribute":
-                return setAttribute();
-            case "clearAttribute":
-                return clearAttribute();
-            case "addTag":
-                return addTag();
-            case "removeTag":
-                return removeTag();
-            case "getTags":
-                return getTags();
-            case "setContactKey":
-                return setContactKey();
-            case "getContactKey":
-                return getContactKey();
-            case "logSdkState":
-                return logSdkState();
-            case "enableGeofence":
-                return enableGeofence();
-            case "disableGeofence":
-                return disableGeofence();
-            case "getSDKState":
-                return getSDKState();
-            case "askForLocationPermissions":
-                return askForLocationPermissions();
-            default:
-                return null;
+    /**
+     * Commits coalesced registration edits so the caller observes them.
+     */
+    void flushPendingEdits() {
+        MCRegistrationCoalescer coalescer = getRegistrationCoalescer();
+        if (coalescer != null) {
+            coalescer.flush();
         }
     }
 
-    private ActionHandler getContactKey() {
-        return new ActionHandler() {
+    /**
+     * Converts a push open into a {@code notificationOpened} event on the write lane, so copying a
+     * large payload does not hold up the main thread while the activity starts.
+     */
+    private void handleNotificationMessage(@Nullable final NotificationMessage message) {
+        if (message == null) {
+            return;
+        }
+        final long timeStamp = System.currentTimeMillis();
+        final long queuedAtNanos = System.nanoTime();
+        Runnable task = new Runnable() {
             @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                callbackContext.success(sdk.getRegistrationManager().getContactKey());
+            public void run() {
+                notificationOpenMetrics.queueWait.record(System.nanoTime() - queuedAtNanos);
+                sendNotificationOpened(message, timeStamp);
             }
         };
+        try {
+            getActionExecutor().executeWrite(NOTIFICATION_OPENED_KEYS, task);
+        } catch (RejectedExecutionException e) {
+            // An open is never dropped; convert it here instead.
+            task.run();
+        }
     }
 
-    private ActionHandler setContactKey() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                String contactKey = args.optString(0, null);
-                boolean success =
-                    sdk.getRegistrationManager().edit().setContactKey(contactKey).commit();
-                callbackContext.success(success ? 1 : 0);
+    private void sendNotificationOpened(NotificationMessage message, long timeStamp) {
+        long startNanos = System.nanoTime();
+        try {
+            JSONObject eventArgs = new JSONObject();
+            eventArgs.put("timeStamp", timeStamp);
+            JSONObject values = new JSONObject(message.payload());
+            if (message.url() != null) {
+                values.put("url", message.url());
             }
-        };
+            switch (message.type()) {
+                case OTHER:
+                    values.put("type", "other");
+                    break;
+                case CLOUD_PAGE:
+                    values.put("type", "cloudPage");
+                    break;
+                case OPEN_DIRECT:
+                    values.put("type", "openDirect");
+                    break;
+                default:
+                    break;
+            }
+            eventArgs.put("values", values);
+            eventArgs.put("type", EVENT_NOTIFICATION_OPENED);
+            sendEvent(EVENT_NOTIFICATION_OPENED, EVENT_NOTIFICATION_OPENED + ":"
+                + (message.id() != null ? message.id() : UUID.randomUUID()), eventArgs);
+            notificationOpenMetrics.recordSuccess();
+        } catch (Exception e) {
+            notificationOpenMetrics.recordError();
+        } finally {
+            notificationOpenMetrics.run.record(System.nanoTime() - startNanos);
+        }
     }
 
-    private ActionHandler getTags() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                callbackContext.success(fromCollection(sdk.getRegistrationManager().getTags()));
-            }
-        };
+    @Override
+    public boolean execute(final String action, final JSONArray args,
+        final CallbackContext callbackContext) throws JSONException {
+        MCStartupTimeline.markFirstAction();
+        final MCActionRegistry.Action entry = MCActionRegistry.get(action);
+
+        if (entry == null) {
+            return false;
+        }
+
+        if (entry.requiresSdk() && getSdkGate().hold(entry, args, callbackContext)) {
+            // Runs once the SDK is ready.
+            return true;
+        }
+
+        dispatch(entry, args, callbackContext, true);
+        return true;
     }
 
-    private ActionHandler removeTag() {
-        return new ActionHandler() {
+    /**
+     * Runs the action inline if it allows it, otherwise on its executor lane.  Writes are ordered
+     * with earlier writes that share one of their sequence keys.
+     */
+    void dispatch(final MCActionRegistry.Action entry, final JSONArray args,
+        final CallbackContext callbackContext, boolean allowCallerThread) {
+        if (allowCallerThread && entry.mayRunOnCallerThread()) {
+            invoke(entry, entry.requiresSdk() ? MarketingCloudSdk.getInstance() : null, args,
+                callbackContext);
+            return;
+        }
+
+        final long queuedAtNanos = System.nanoTime();
+        Runnable task = new Runnable() {
             @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                String tag = args.optString(0, null);
-                boolean success = sdk.getRegistrationManager().edit().removeTag(tag).commit();
-                callbackContext.success(success ? 1 : 0);
+            public void run() {
+                entry.metrics().queueWait.record(System.nanoTime() - queuedAtNanos);
+                MCCordovaPlugin.this.invoke(entry,
+                    entry.requiresSdk() ? MarketingCloudSdk.getInstance() : null, args,
+                    callbackContext);
             }
         };
-    }
 
-    private ActionHandler addTag() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                String tag = args.optString(0, null);
-                boolean success = sdk.getRegistrationManager().edit().addTag(tag).commit();
-                callbackContext.success(success ? 1 : 0);
+        try {
+            if (entry.isWrite()) {
+                getActionExecutor().executeWrite(entry.sequenceKeys(args), task);
+            } else {
+                getActionExecutor().executeRead(task);
             }
-        };
+        } catch (RejectedExecutionException e) {
+            entry.metrics().recordError();
+            callbackContext.error("MCCordovaPlugin is overloaded. Too many " + (entry.isWrite()
+                ? "write" : "read") + " actions are queued; '" + entry.name() + "' was rejected.");
+        }
     }
 
-    private ActionHandler clearAttribute() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                String key = args.optString(0, null);
-                boolean success = sdk.getRegistrationManager().edit().clearAttribute(key).commit();
-                callbackContext.success(success ? 1 : 0);
-            }
-        };
+    /**
+     * Runs an action the gate held until the SDK was ready.  An action that held itself, which
+     * only a pipeline needing the SDK does, runs on the draining thread with the SDK so it is not
+     * held again and its writes are queued ahead of calls that arrived after it.
+     */
+    void dispatchHeld(MCActionRegistry.Action entry, JSONArray args,
+        CallbackContext callbackContext) {
+        if (entry.requiresSdk()) {
+            dispatch(entry, args, callbackContext, false);
+        } else {
+            invoke(entry, MarketingCloudSdk.getInstance(), args, callbackContext);
+        }
     }
 
-    private ActionHandler setAttribute() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                String key = args.optString(0, null);
-                String value = args.optString(1);
-                boolean success =
-                    sdk.getRegistrationManager().edit().setAttribute(key, value).commit();
-                callbackContext.success(success ? 1 : 0);
-            }
-        };
+    /**
+     * @return the process-wide log sink, or null if the app has no files directory.
+     */
+    @Nullable
+    synchronized MCLogSink getLogSink() {
+        if (logSink == null && filesDir != null) {
+            MCSdkInitializer.awaitConfig();
+            logSink = MCLogSink.get(filesDir);
+        }
+        return logSink;
     }
 
-    private ActionHandler getAttributes() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                try {
-                    callbackContext.success(fromMap(sdk.getRegistrationManager().getAttributes()));
-                } catch (JSONException e) {
-                    callbackContext.error(e.getMessage());
+    /**
+     * Records whether JavaScript enabled the log sink, so {@link #onDestroy} releases it and
+     * its stream.
+     */
+    synchronized void setLogSinkEnabled(boolean enabled) {
+        logSinkEnabled = enabled;
+    }
+
+    // Waits for a deferred init mode to finish reading the plugin's settings in the background.
+    private static MCPluginConfig config() {
+        MCSdkInitializer.awaitConfig();
+        return MCPluginConfig.get();
+    }
+
+    synchronized MCSdkGate getSdkGate() {
+        if (sdkGate == null) {
+            sdkGate = new MCSdkGate(this, config().sdkReadyTimeoutMs);
+        }
+        return sdkGate;
+    }
+
+    synchronized MCRegistrationHistory getRegistrationHistory() {
+        if (registrationHistory == null) {
+            registrationHistory =
+                new MCRegistrationHistory(config().registrationHistoryWindow);
+        }
+        return registrationHistory;
+    }
+
+    MCSdkStateSnapshot getSdkStateSnapshot() {
+        return sdkStateSnapshot;
+    }
+
+    synchronized MCActionExecutor getActionExecutor() {
+        if (actionExecutor == null) {
+            actionExecutor = MCActionExecutor.create(config());
+        }
+        return actionExecutor;
+    }
+
+    void invoke(MCActionRegistry.Action entry, @Nullable MarketingCloudSdk sdk,
+        JSONArray args, CallbackContext callbackContext) {
+        MCActionMetrics metrics = entry.metrics();
+        long startNanos = System.nanoTime();
+        try {
+            entry.handler.execute(this, sdk, args, callbackContext);
+            metrics.recordSuccess();
+        } catch (JSONException e) {
+            metrics.recordError();
+            callbackContext.error(e.getMessage());
+        } finally {
+            metrics.run.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    void registerEventsChannel(CallbackContext callbackContext) {
+        synchronized (eventLock) {
+            this.eventsChannel = callbackContext;
+            MCEventBatcher batcher = getEventBatcher();
+            if (batcher != null) {
+                // Batches sent to a previous channel will never be acknowledged, so their events
+                // are put back to be sent to this one.
+                batcher.reset();
+                List<JSONObject> unacknowledged = new ArrayList<>();
+                for (List<JSONObject> events : batchEvents.values()) {
+                    unacknowledged.addAll(events);
                 }
+                batchEvents.clear();
+                getEventBuffer().requeue(unacknowledged);
             }
-        };
+            replayEvents();
+        }
     }
 
-    private ActionHandler disablePush() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                sdk.getPushMessageManager().disablePush();
-                callbackContext.success();
-            }
-        };
+    void subscribe(JSONArray args, CallbackContext context) {
+        switch (args.optString(0, null)) {
+            case EVENT_NOTIFICATION_OPENED:
+                synchronized (eventLock) {
+                    notificationOpenedSubscribed = true;
+                    if (eventsChannel != null) {
+                        replayEvents();
+                    }
+                }
+                break;
+            case EVENT_URL_ACTION:
+                // NO_OP
+                // Always send urlAction events to the JS plugin.  It will manager the listener
+                // registration.
+                break;
+            default:
+                // NO_OP
+        }
     }
 
-    private ActionHandler enabledPush() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                sdk.getPushMessageManager().enablePush();
-                callbackContext.success();
+    JSONObject getPluginStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        MCRegistrationCoalescer coalescer = getRegistrationCoalescer();
+        stats.put("registrationCoalescing",
+            coalescer != null ? coalescer.stats() : new JSONObject().put("enabled", false));
+        stats.put("executor", getActionExecutor().stats());
+        stats.put("sdkGate", getSdkGate().stats());
+        stats.put("events", getEventBuffer().stats());
+        MCEventBatcher batcher = getEventBatcher();
+        stats.put("eventBatching",
+            batcher != null ? batcher.stats() : new JSONObject().put("enabled", false));
+        MCLogSink sink = getLogSink();
+        stats.put("logSink",
+            sink != null ? sink.stats() : new JSONObject().put("enabled", false));
+        stats.put("notificationOpened", notificationOpenMetrics.toJson());
+        stats.put("inbox", inboxCache.stats());
+        MCRegionEventCoalescer regionEvents;
+        synchronized (this) {
+            regionEvents = regionEventCoalescer;
+        }
+        stats.put("regionEvents", regionEvents != null
+            ? regionEvents.stats() : new JSONObject().put("enabled", false));
+        return stats;
+    }
+
+    /**
+     * Sends the event if the WebView is listening for it, otherwise buffers it for replay.  With
+     * batching enabled every event is buffered and sent by the next batch.  Notification opens
+     * that are not sent at once are also recorded in the journal, and stay there even if the
+     * buffer drops them, until JavaScript has received them.  Other events would be stale by the
+     * time a later process replayed them.
+     */
+    private void sendEvent(String type, String eventId, JSONObject eventArgs)
+        throws JSONException {
+        synchronized (eventLock) {
+            if (recentEventIds.put(eventId, Boolean.TRUE) != null) {
+                return;
             }
-        };
-    }
+            eventArgs.put("eventId", eventId);
+            boolean deliverable = eventsChannel != null && isSubscribed(type);
 
-    private ActionHandler isPushEnabled() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                callbackContext.success(sdk.getPushMessageManager().isPushEnabled() ? 1 : 0);
+            if (deliverable && getEventBatcher() == null) {
+                eventArgs.put("sequence", getEventBuffer().nextSequence());
+                eventsChannel.sendPluginResult(eventResult(eventArgs));
+                return;
             }
-        };
+            bufferEvent(type, eventArgs);
+            if (eventJournal != null && EVENT_NOTIFICATION_OPENED.equals(type)) {
+                eventJournal.append(eventId, type, eventArgs);
+            }
+            if (deliverable) {
+                replayEvents();
+            }
+        }
     }
 
-    private ActionHandler getSystemToken() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                callbackContext.success(sdk.getPushMessageManager().getPushToken());
+    // Must be called while holding eventLock.
+    private void bufferEvent(String type, JSONObject eventArgs) throws JSONException {
+        MCEventBuffer buffer = getEventBuffer();
+        long sequence = buffer.nextSequence();
+        eventArgs.put("sequence", sequence);
+        buffer.add(type, sequence, eventArgs);
+    }
+
+    /**
+     * Buffers events left undelivered by a previous process.
+     */
+    void restoreEvents(List<MCEventJournal.Entry> entries) {
+        synchronized (eventLock) {
+            List<String> stale = new ArrayList<>();
+            for (MCEventJournal.Entry entry : entries) {
+                if (!EVENT_NOTIFICATION_OPENED.equals(entry.type)) {
+                    // Only notification opens are still relevant in a later process.
+                    stale.add(entry.id);
+                    continue;
+                }
+                if (recentEventIds.put(entry.id, Boolean.TRUE) != null) {
+                    continue;
+                }
+                try {
+                    bufferEvent(entry.type, entry.event);
+                } catch (JSONException e) {
+                    // NO_OP
+                }
             }
-        };
+            if (eventJournal != null && !stale.isEmpty()) {
+                eventJournal.acknowledge(stale);
+            }
+            if (eventsChannel != null) {
+                replayEvents();
+            }
+        }
     }
 
-    private ActionHandler logSdkState() {
-        return new ActionHandler() {
-            @Override
-            public void execute(
-                MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                log("MCSDK STATE", sdk.getSdkState().toString());
-                callbackContext.success();
-            }
-        };
+    // Must be called while holding eventLock with a registered events channel.
+    private void replayEvents() {
+        MCEventBatcher batcher = getEventBatcher();
+        if (batcher != null) {
+            batcher.eventsWaiting(getEventBuffer().size(deliverableEventTypes()));
+            return;
+        }
+        List<String> delivered = new ArrayList<>();
+        for (JSONObject event : getEventBuffer().drain(deliverableEventTypes())) {
+            eventsChannel.sendPluginResult(eventResult(event));
+            delivered.add(event.optString("eventId"));
+        }
+        if (eventJournal != null) {
+            eventJournal.acknowledge(delivered);
+        }
     }
 
-    private ActionHandler enableGeofence() {
-        return new ActionHandler() {
-            @Override
-            public void execute(MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                sdk.getRegionMessageManager().enableGeofenceMessaging();
-                /*
-                 * if(android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.M
-                 * ||cordova.hasPermission(Manifest.permission.ACCESS_FINE_LOCATION)) {
-                 * sdk.getRegionMessageManager().enableGeofenceMessaging(); } else {
-                 * cordova.requestPermission(thisObject, PERMISSIONS_REQUEST_FINE_LOCATION,
-                 * Manifest.permission.ACCESS_FINE_LOCATION); }
-                 */
+    // Must be called while holding eventLock.
+    private boolean isSubscribed(String type) {
+        switch (type) {
+            case EVENT_NOTIFICATION_OPENED:
+                return notificationOpenedSubscribed;
+            case EVENT_REGION_TRANSITION:
+            case EVENT_GEOFENCE_MESSAGE_RESPONSE:
+                return regionEventsSubscribed;
+            default:
+                return true;
+        }
+    }
 
-                callbackContext.success();
+    private String[] deliverableEventTypes() {
+        List<String> types = new ArrayList<>(4);
+        types.add(EVENT_URL_ACTION);
+        if (notificationOpenedSubscribed) {
+            types.add(EVENT_NOTIFICATION_OPENED);
+        }
+        if (regionEventsSubscribed) {
+            types.add(EVENT_REGION_TRANSITION);
+            types.add(EVENT_GEOFENCE_MESSAGE_RESPONSE);
+        }
+        return types.toArray(new String[0]);
+    }
+
+    private static PluginResult eventResult(JSONObject event) {
+        PluginResult result = new PluginResult(PluginResult.Status.OK, event);
+        result.setKeepCallback(true);
+        return result;
+    }
+
+    /**
+     * Sends waiting events as batches until the buffer is empty or too many batches are awaiting
+     * acknowledgement.
+     */
+    void flushEvents() {
+        synchronized (eventLock) {
+            MCEventBatcher batcher = getEventBatcher();
+            if (batcher == null || eventsChannel == null) {
+                return;
             }
-        };
+            MCEventBuffer buffer = getEventBuffer();
+            String[] types = deliverableEventTypes();
+            int waiting;
+            while ((waiting = buffer.size(types)) > 0) {
+                long batchId = batcher.beginBatch(Math.min(waiting, batcher.maxBatchSize()));
+                if (batchId < 0) {
+                    // Sent again once a batch is acknowledged.
+                    return;
+                }
+                JSONArray events = new JSONArray();
+                List<JSONObject> drained = buffer.drain(batcher.maxBatchSize(), types);
+                for (JSONObject event : drained) {
+                    events.put(event);
+                }
+                batchEvents.put(batchId, drained);
+                try {
+                    eventsChannel.sendPluginResult(eventResult(new JSONObject()
+                        .put("type", "batch")
+                        .put("batchId", batchId)
+                        .put("events", events)));
+                } catch (JSONException e) {
+                    // NO_OP
+                }
+            }
+        }
     }
 
-    private ActionHandler disableGeofence() {
-        return new ActionHandler() {
-            @Override
-            public void execute(MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                sdk.getRegionMessageManager().disableGeofenceMessaging();
-                callbackContext.success();
+    void ackEvents(JSONArray args) {
+        long batchId = args.optLong(0, -1);
+        List<JSONObject> events;
+        synchronized (eventLock) {
+            events = batchEvents.remove(batchId);
+        }
+        if (events != null && eventJournal != null) {
+            List<String> eventIds = new ArrayList<>();
+            for (JSONObject event : events) {
+                eventIds.add(event.optString("eventId"));
             }
-        };
+            eventJournal.acknowledge(eventIds);
+        }
+        MCEventBatcher batcher = getEventBatcher();
+        if (batcher != null) {
+            batcher.ack(batchId);
+        }
     }
 
-    private ActionHandler getSDKState() {
-        return new ActionHandler() {
-            @Override
-            public void execute(MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                callbackContext.success(sdk.getSdkState().toString());
+    @Nullable
+    MCEventBatcher getEventBatcher() {
+        synchronized (eventLock) {
+            MCPluginConfig config = config();
+            if (eventBatcher == null && config.isEventBatchingEnabled()) {
+                eventBatcher = new MCEventBatcher(this, config.eventBatchMaxSize,
+                    config.eventBatchLatencyMs, config.eventBatchMaxInFlight);
             }
-        };
+            return eventBatcher;
+        }
     }
 
-    private ActionHandler askForLocationPermissions() {
-        final MCCordovaPlugin thisObject = this;
-        return new ActionHandler() {
-            @Override
-            public void execute(MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext) {
-                if (android.os.Build.VERSION.SDK_INT > android.os.Build.VERSION_CODES.M) {
-                    cordova.requestPermission(thisObject, PERMISSIONS_REQUEST_FINE_LOCATION,
-                            Manifest.permission.ACCESS_FINE_LOCATION);
-                }
-                callbackContext.success();
+    MCEventBuffer getEventBuffer() {
+        synchronized (eventLock) {
+            if (eventBuffer == null) {
+                MCPluginConfig config = config();
+                eventBuffer =
+                    new MCEventBuffer(config.eventBufferCapacity, config.eventBufferDropNewest);
             }
-        };
+            return eventBuffer;
+        }
     }
 
     @Override
@@ -497,19 +806,8 @@ public class MCCordovaPlugin extends CordovaPlugin implements UrlHandler, Activi
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
                 MarketingCloudSdk sdk = MarketingCloudSdk.getInstance();
                 sdk.getRegionMessageManager().enableGeofenceMessaging();
+                sdkStateSnapshot.invalidate(MCSdkStateSnapshot.LOCATION);
             }
         }
     }
-
-    interface ActionHandler {
-        void execute(MarketingCloudSdk sdk, JSONArray args, CallbackContext callbackContext);
-    }
-
-    private static int MAX_LOG_LENGTH = 4000;
-
-    private static void log(String tag, String msg) {
-        for (int i = 0, length = msg.length(); i < length; i += MAX_LOG_LENGTH) {
-            Log.println(Log.DEBUG, tag, msg.substring(i, Math.min(length, i + MAX_LOG_LENGTH)));
-        }
-    }
-}
+}
\ No newline at end of file
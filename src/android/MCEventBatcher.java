@@ -0,0 +1,171 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces batched delivery on the events channel.  Events wait in the plugin's
+ * {@link MCEventBuffer} and are sent as one batch per tick, at most {@code maxLatencyMs} after the
+ * first of them arrived or as soon as {@code maxBatchSize} are waiting.  Each batch must be
+ * acknowledged by the JavaScript side; while {@code maxInFlight} batches are unacknowledged no
+ * more are sent, so a slow handler leaves events in the bounded buffer instead of in Cordova's
+ * result queue.
+ */
+class MCEventBatcher {
+    private final MCCordovaPlugin plugin;
+    private final int maxBatchSize;
+    private final long maxLatencyMs;
+    private final int maxInFlight;
+    private final ScheduledExecutorService scheduler;
+
+    private final Set<Long> inFlight = new HashSet<>();
+    private long nextBatchId = 1;
+    private boolean tickScheduled = false;
+
+    private long batchCount = 0;
+    private long eventCount = 0;
+    private long ackCount = 0;
+    private long backpressureCount = 0;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (MCEventBatcher.this) {
+                tickScheduled = false;
+            }
+            plugin.flushEvents();
+        }
+    };
+
+    MCEventBatcher(MCCordovaPlugin plugin, int maxBatchSize, long maxLatencyMs, int maxInFlight) {
+        this(plugin, maxBatchSize, maxLatencyMs, maxInFlight,
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "MCCordovaEventBatch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }));
+    }
+
+    MCEventBatcher(MCCordovaPlugin plugin, int maxBatchSize, long maxLatencyMs, int maxInFlight,
+        ScheduledExecutorService scheduler) {
+        this.plugin = plugin;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyMs = maxLatencyMs;
+        this.maxInFlight = maxInFlight;
+        this.scheduler = scheduler;
+    }
+
+    int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Called when events are waiting to be delivered.
+     *
+     * @param waiting number of deliverable events in the buffer.
+     */
+    void eventsWaiting(int waiting) {
+        synchronized (this) {
+            if (waiting < maxBatchSize) {
+                if (!tickScheduled) {
+                    tickScheduled = true;
+                    scheduler.schedule(tick, maxLatencyMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+        scheduler.execute(tick);
+    }
+
+    /**
+     * Reserves an id for the next batch of {@code size} events.
+     *
+     * @return the batch id, or -1 if too many batches are awaiting acknowledgement.
+     */
+    synchronized long beginBatch(int size) {
+        if (inFlight.size() >= maxInFlight) {
+            backpressureCount++;
+            return -1;
+        }
+        long batchId = nextBatchId++;
+        inFlight.add(batchId);
+        batchCount++;
+        eventCount += size;
+        return batchId;
+    }
+
+    /**
+     * Releases an acknowledged batch and sends any events that were held back by it.
+     */
+    void ack(long batchId) {
+        synchronized (this) {
+            if (!inFlight.remove(batchId)) {
+                return;
+            }
+            ackCount++;
+        }
+        scheduler.execute(tick);
+    }
+
+    /**
+     * Forgets unacknowledged batches, for example when the WebView registers a new channel.
+     */
+    synchronized void reset() {
+        inFlight.clear();
+    }
+
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        return new JSONObject()
+            .put("enabled", true)
+            .put("maxBatchSize", maxBatchSize)
+            .put("maxLatencyMs", maxLatencyMs)
+            .put("maxInFlight", maxInFlight)
+            .put("inFlight", inFlight.size())
+            .put("batches", batchCount)
+            .put("events", eventCount)
+            .put("acked", ackCount)
+            .put("backpressured", backpressureCount);
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps events the WebView is not yet listening for in a bounded ring per event type.  Every event
+ * gets a sequence number so buffered events of several types replay in the order they occurred.
+ * When a ring is full either its oldest event or the new one is dropped.
+ */
+class MCEventBuffer {
+    private final int capacity;
+    private final boolean dropNewest;
+    private final Map<String, Ring> rings = new HashMap<>();
+    private long nextSequence = 1;
+
+    MCEventBuffer(int capacity, boolean dropNewest) {
+        this.capacity = capacity;
+        this.dropNewest = dropNewest;
+    }
+
+    synchronized long nextSequence() {
+        return nextSequence++;
+    }
+
+    synchronized void add(@NonNull String type, long sequence, @NonNull JSONObject event) {
+        Ring ring = rings.get(type);
+        if (ring == null) {
+            ring = new Ring(capacity);
+            rings.put(type, ring);
+        }
+        ring.add(sequence, event, dropNewest);
+    }
+
+    /**
+     * Puts back events that were drained but never delivered ahead of the events still buffered,
+     * so they replay in their original order.
+     */
+    synchronized void requeue(@NonNull List<JSONObject> events) {
+        List<JSONObject> sorted = new ArrayList<>(events);
+        Collections.sort(sorted, new Comparator<JSONObject>() {
+            @Override
+            public int compare(JSONObject a, JSONObject b) {
+                // Newest first, as each is put in front of the one before.
+                long x = a.optLong("sequence");
+                long y = b.optLong("sequence");
+                return x < y ? 1 : x > y ? -1 : 0;
+            }
+        });
+        for (JSONObject event : sorted) {
+            String type = event.optString("type");
+            Ring ring = rings.get(type);
+            if (ring == null) {
+                ring = new Ring(capacity);
+                rings.put(type, ring);
+            }
+            ring.addFirst(event.optLong("sequence"), event, dropNewest);
+        }
+    }
+
+    /**
+     * Removes and returns the buffered events of {@code types} in sequence order.
+     */
+    @NonNull
+    synchronized List<JSONObject> drain(@NonNull String... types) {
+        return drain(Integer.MAX_VALUE, types);
+    }
+
+    /**
+     * Removes and returns at most {@code max} of the oldest buffered events of {@code types}.
+     */
+    @NonNull
+    synchronized List<JSONObject> drain(int max, @NonNull String... types) {
+        List<JSONObject> replay = new ArrayList<>();
+        Ring[] sources = new Ring[types.length];
+        for (int i = 0; i < types.length; i++) {
+            sources[i] = rings.get(types[i]);
+        }
+        while (replay.size() < max) {
+            Ring next = null;
+            for (Ring ring : sources) {
+                if (ring != null && ring.size > 0
+                    && (next == null || ring.peekSequence() < next.peekSequence())) {
+                    next = ring;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            replay.add(next.poll());
+        }
+        return replay;
+    }
+
+    synchronized int size(@NonNull String... types) {
+        int size = 0;
+        for (String type : types) {
+            Ring ring = rings.get(type);
+            size += ring != null ? ring.size : 0;
+        }
+        return size;
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        JSONObject stats = new JSONObject()
+            .put("capacity", capacity)
+            .put("dropPolicy", dropNewest ? "drop_newest" : "drop_oldest");
+        for (Map.Entry<String, Ring> entry : rings.entrySet()) {
+            Ring ring = entry.getValue();
+            stats.put(entry.getKey(), new JSONObject()
+                .put("buffered", ring.size)
+                .put("dropped", ring.dropped)
+                .put("replayed", ring.replayed));
+        }
+        return stats;
+    }
+
+    private static final class Ring {
+        final long[] sequences;
+        final JSONObject[] events;
+        int head = 0;
+        int size = 0;
+        long dropped = 0;
+        long replayed = 0;
+
+        Ring(int capacity) {
+            sequences = new long[capacity];
+            events = new JSONObject[capacity];
+        }
+
+        void add(long sequence, JSONObject event, boolean dropNewest) {
+            if (size == events.length) {
+                dropped++;
+                if (dropNewest) {
+                    return;
+                }
+                events[head] = null;
+                head = (head + 1) % events.length;
+                size--;
+            }
+            int tail = (head + size) % events.length;
+            sequences[tail] = sequence;
+            events[tail] = event;
+            size++;
+        }
+
+        void addFirst(long sequence, JSONObject event, boolean dropNewest) {
+            if (size == events.length) {
+                dropped++;
+                if (!dropNewest) {
+                    // Older than everything kept, so it is the one to drop.
+                    return;
+                }
+                events[(head + size - 1) % events.length] = null;
+                size--;
+            }
+            head = (head - 1 + events.length) % events.length;
+            sequences[head] = sequence;
+            events[head] = event;
+            size++;
+            replayed--;
+        }
+
+        long peekSequence() {
+            return sequences[head];
+        }
+
+        JSONObject poll() {
+            JSONObject event = events[head];
+            events[head] = null;
+            head = (head + 1) % events.length;
+            size--;
+            replayed++;
+            return event;
+        }
+    }
+}
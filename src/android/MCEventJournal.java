@@ -0,0 +1,335 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.salesforce.marketingcloud.cordova.MCCordovaPlugin.TAG;
+
+/**
+ * Append-only file of events that have not reached the WebView yet, so they can be replayed
+ * after the process is killed.  Each line is either an {@code add} record holding the event or an
+ * {@code ack} record naming a delivered event, or the oldest event once more than
+ * {@code MAX_LIVE_RECORDS} are undelivered.  All file access happens on a single background
+ * thread; writes are flushed to the OS but not synced, so an event can only be lost if the device
+ * itself goes down.  The file is rewritten with just the undelivered events once enough
+ * acknowledgements have piled up, and truncated when none are left.
+ */
+class MCEventJournal {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int COMPACT_AFTER_ACKS = 32;
+    // Undelivered events kept at most; the oldest is dropped when another is appended.
+    private static final int MAX_LIVE_RECORDS = 256;
+
+    interface LoadCallback {
+        void onLoaded(@NonNull List<Entry> entries);
+    }
+
+    static final class Entry {
+        final String id;
+        final String type;
+        final JSONObject event;
+
+        Entry(String id, String type, JSONObject event) {
+            this.id = id;
+            this.type = type;
+            this.event = event;
+        }
+    }
+
+    private final File file;
+    private final ExecutorService executor;
+
+    // Only accessed on the executor thread.
+    private final Map<String, String> liveRecords = new LinkedHashMap<>();
+    private Writer writer;
+    private int ackRecords = 0;
+    private int tornRecords = 0;
+    // Set when the file ends in a torn record, so the next write starts on a fresh line.
+    private boolean unterminated = false;
+
+    MCEventJournal(@NonNull File file) {
+        this(file, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, "MCCordovaEventJournal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    MCEventJournal(@NonNull File file, @NonNull ExecutorService executor) {
+        this.file = file;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads the undelivered events left by a previous process.
+     */
+    void load(@NonNull final LoadCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Entry> entries = new ArrayList<>();
+                readRecords();
+                for (String record : liveRecords.values()) {
+                    try {
+                        JSONObject json = new JSONObject(record);
+                        entries.add(new Entry(json.getString("id"), json.getString("type"),
+                            json.getJSONObject("event")));
+                    } catch (JSONException e) {
+                        // Skipped by readRecords.
+                    }
+                }
+                if (tornRecords > 0) {
+                    Log.w(TAG, "Skipped " + tornRecords + " torn event journal records.");
+                }
+                if (ackRecords > 0) {
+                    rewrite();
+                }
+                callback.onLoaded(entries);
+            }
+        });
+    }
+
+    void append(@NonNull final String id, @NonNull final String type,
+        @NonNull final JSONObject event) {
+        final String record;
+        try {
+            record = new JSONObject()
+                .put("op", "add")
+                .put("id", id)
+                .put("type", type)
+                .put("event", event)
+                .toString();
+        } catch (JSONException e) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (liveRecords.containsKey(id)) {
+                    return;
+                }
+                liveRecords.put(id, record);
+                write(record);
+                if (liveRecords.size() > MAX_LIVE_RECORDS) {
+                    String oldest = liveRecords.keySet().iterator().next();
+                    liveRecords.remove(oldest);
+                    writeAck(oldest);
+                }
+            }
+        });
+    }
+
+    void acknowledge(@NonNull final Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String id : ids) {
+                    if (liveRecords.remove(id) == null) {
+                        continue;
+                    }
+                    if (liveRecords.isEmpty()) {
+                        rewrite();
+                        continue;
+                    }
+                    writeAck(id);
+                }
+                if (ackRecords >= COMPACT_AFTER_ACKS) {
+                    rewrite();
+                }
+            }
+        });
+    }
+
+    void shutdown() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeWriter();
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void readRecords() {
+        liveRecords.clear();
+        ackRecords = 0;
+        tornRecords = 0;
+        unterminated = false;
+        if (!file.exists()) {
+            return;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JSONObject json = new JSONObject(line);
+                    String id = json.getString("id");
+                    if ("add".equals(json.optString("op"))) {
+                        json.getJSONObject("event");
+                        liveRecords.put(id, line);
+                    } else {
+                        liveRecords.remove(id);
+                        ackRecords++;
+                    }
+                } catch (JSONException e) {
+                    // A record torn by the process being killed mid-write.  It is dropped by
+                    // the next compaction rather than forcing one of its own.
+                    tornRecords++;
+                }
+            }
+            unterminated = !endsWithNewline();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read event journal.", e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void writeAck(String id) {
+        try {
+            write(new JSONObject().put("op", "ack").put("id", id).toString());
+            ackRecords++;
+        } catch (JSONException e) {
+            // NO_OP
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        if (file.length() == 0) {
+            return true;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            in.seek(file.length() - 1);
+            return in.read() == '\n';
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(String record) {
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+            }
+            if (unterminated) {
+                writer.write('\n');
+                unterminated = false;
+            }
+            writer.write(record);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write event journal.", e);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Replaces the file with only the undelivered events.
+     */
+    private void rewrite() {
+        closeWriter();
+        ackRecords = 0;
+        tornRecords = 0;
+        unterminated = false;
+        if (liveRecords.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Unable to delete event journal.");
+            }
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        Writer out = null;
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF_8));
+            for (String record : liveRecords.values()) {
+                out.write(record);
+                out.write('\n');
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Unable to replace event journal.");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to compact event journal.", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private void closeWriter() {
+        closeQuietly(writer);
+        writer = null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // NO_OP
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.salesforce.marketingcloud.messages.inbox.InboxMessage;
+import com.salesforce.marketingcloud.messages.inbox.InboxMessageManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the SDK's inbox to JavaScript one page at a time.  The messages of each filter are
+ * sorted newest first and serialized once, then kept until the SDK reports an inbox change or the
+ * plugin marks messages read or deleted, so paging through a large inbox neither rereads the SDK
+ * nor sends the whole inbox across the bridge.  A cursor names the last message of a page rather
+ * than its position, so the next page starts in the right place even if messages arrived or were
+ * removed in between.
+ */
+final class MCInboxCache {
+    static final String ALL = "all";
+    static final String READ = "read";
+    static final String UNREAD = "unread";
+    static final String DELETED = "deleted";
+
+    static final int MAX_PAGE_SIZE = 200;
+
+    private static final class Entry {
+        final String id;
+        final long sendTimeMs;
+        final String json;
+
+        Entry(String id, long sendTimeMs, String json) {
+            this.id = id;
+            this.sendTimeMs = sendTimeMs;
+            this.json = json;
+        }
+    }
+
+    // Newest first, then by id so messages sent at the same time have a stable order.
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.sendTimeMs != b.sendTimeMs) {
+                return a.sendTimeMs > b.sendTimeMs ? -1 : 1;
+            }
+            return a.id.compareTo(b.id);
+        }
+    };
+
+    private final Map<String, List<Entry>> filters = new HashMap<>();
+    private long generation = 0;
+    private long hitCount = 0;
+    private long buildCount = 0;
+
+    /**
+     * Returns a page of messages as JSON text:
+     * {@code {"messages": [...], "nextCursor": "..." or null, "total": n, "version": v}}.
+     *
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page.
+     * @throws JSONException if {@code filter} or {@code cursor} is not valid.
+     */
+    @NonNull
+    String page(@NonNull InboxMessageManager manager, @NonNull String filter,
+        @Nullable String cursor, int limit) throws JSONException {
+        List<Entry> entries;
+        long version;
+        synchronized (this) {
+            entries = filters.get(filter);
+            version = generation;
+            if (entries != null) {
+                hitCount++;
+            }
+        }
+        if (entries == null) {
+            entries = build(messages(manager, filter));
+            synchronized (this) {
+                buildCount++;
+                // Not kept if the inbox changed while it was being read.
+                if (generation == version) {
+                    filters.put(filter, entries);
+                }
+            }
+        }
+
+        int start = cursor == null ? 0 : indexAfter(entries, cursor);
+        int end = Math.min(entries.size(), start + Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        StringBuilder out = new StringBuilder("{\"messages\":[");
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                out.append(',');
+            }
+            out.append(entries.get(i).json);
+        }
+        out.append("],\"nextCursor\":");
+        if (end < entries.size()) {
+            Entry last = entries.get(end - 1);
+            MCJsonWriter.writeString(out, last.sendTimeMs + ":" + last.id);
+        } else {
+            out.append("null");
+        }
+        return out.append(",\"total\":").append(entries.size())
+            .append(",\"version\":").append(version)
+            .append('}').toString();
+    }
+
+    /**
+     * Drops every cached page.  Pages being built from the previous state are not kept.
+     */
+    synchronized void invalidate() {
+        filters.clear();
+        generation++;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        return new JSONObject()
+            .put("cachedFilters", filters.size())
+            .put("hits", hitCount)
+            .put("builds", buildCount)
+            .put("version", generation);
+    }
+
+    private static List<InboxMessage> messages(InboxMessageManager manager, String filter)
+        throws JSONException {
+        switch (filter) {
+            case ALL:
+                return manager.getMessages();
+            case READ:
+                return manager.getReadMessages();
+            case UNREAD:
+                return manager.getUnreadMessages();
+            case DELETED:
+                return manager.getDeletedMessages();
+            default:
+                throw new JSONException("Unknown inbox filter: " + filter);
+        }
+    }
+
+    private static List<Entry> build(@Nullable List<InboxMessage> messages) {
+        if (messages == null) {
+            return Collections.emptyList();
+        }
+        List<Entry> entries = new ArrayList<>(messages.size());
+        for (InboxMessage message : messages) {
+            if (message == null || message.id() == null) {
+                continue;
+            }
+            entries.add(new Entry(message.id(), time(message.sendDateUtc()), toJson(message)));
+        }
+        Collections.sort(entries, ORDER);
+        return entries;
+    }
+
+    // Index of the first entry after the one named by cursor, which need not still be present.
+    private static int indexAfter(List<Entry> entries, String cursor) throws JSONException {
+        int separator = cursor.indexOf(':');
+        Entry last;
+        try {
+            last = new Entry(cursor.substring(separator + 1),
+                Long.parseLong(cursor.substring(0, Math.max(0, separator))), null);
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid inbox cursor: " + cursor);
+        }
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ORDER.compare(entries.get(mid), last) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static String toJson(InboxMessage message) {
+        StringBuilder out = new StringBuilder(256).append('{');
+        appendString(out, "id", message.id());
+        appendString(out, "subject", message.subject());
+        appendString(out, "title", message.title());
+        appendString(out, "alert", message.alert());
+        appendString(out, "url", message.url());
+        out.append(",\"read\":").append(message.read());
+        out.append(",\"deleted\":").append(message.deleted());
+        appendDate(out, "sendDateUtc", message.sendDateUtc());
+        appendDate(out, "startDateUtc", message.startDateUtc());
+        appendDate(out, "endDateUtc", message.endDateUtc());
+        appendString(out, "custom", message.custom());
+        Map<String, String> customKeys = message.customKeys();
+        if (customKeys != null) {
+            out.append(",\"customKeys\":").append(MCJsonWriter.writeMap(customKeys));
+        }
+        return out.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder out, String name, @Nullable String value) {
+        if (value == null) {
+            return;
+        }
+        if (out.length() > 1) {
+            out.append(',');
+        }
+        MCJsonWriter.writeString(out, name);
+        out.append(':');
+        MCJsonWriter.writeString(out, value);
+    }
+
+    private static void appendDate(StringBuilder out, String name, @Nullable Date value) {
+        if (value != null) {
+            out.append(",\"").append(name).append("\":").append(value.getTime());
+        }
+    }
+
+    private static long time(@Nullable Date date) {
+        return date != null ? date.getTime() : 0;
+    }
+}
@@ -28,36 +28,86 @@ package com.salesforce.marketingcloud.cordova;
 import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.salesforce.marketingcloud.InitializationStatus;
 import com.salesforce.marketingcloud.MCLogListener;
-import com.salesforce.marketingcloud.MarketingCloudConfig;
 import com.salesforce.marketingcloud.MarketingCloudSdk;
 import com.salesforce.marketingcloud.registration.RegistrationManager;
 
 public class MCInitProvider
     extends ContentProvider implements MarketingCloudSdk.InitializationListener {
+    static final String PATH_METRICS = "metrics";
+    static final String[] METRICS_COLUMNS = {"action", "stage", "count", "success", "error",
+        "mean_us", "p50_us", "p90_us", "p99_us", "max_us"};
+
     @Override
     public boolean onCreate() {
-        Context ctx = getContext();
-        if (ctx != null) {
-            MarketingCloudConfig.Builder builder = MCSdkConfig.prepareConfigBuilder(ctx);
-            if (builder != null) {
-                builder.setUrlHandler(MCSdkListener.INSTANCE);
-                MarketingCloudSdk.init(ctx, builder.build(ctx), this);
+        MCStartupTimeline.begin(MCStartupTimeline.INIT_PROVIDER);
+        try {
+            Context ctx = getContext();
+            if (ctx != null) {
+                MCSdkInitializer.start(ctx, MCSdkInitializer.readMode(ctx), this);
             }
+        } finally {
+            MCStartupTimeline.end(MCStartupTimeline.INIT_PROVIDER);
         }
         return false;
     }
 
+    /**
+     * Initializes the SDK on the calling thread if the {@code lazy} or {@code background} init
+     * mode has not done so yet.  Call this before handing a push message to the SDK, for example
+     * from your {@code FirebaseMessagingService}, since no plugin call may have started it.
+     */
+    public static void ensureInitialized() {
+        MCSdkInitializer.initialize();
+    }
+
     @Nullable
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
         @Nullable String[] selectionArgs, @Nullable String sortOrder) {
-        return null;
+        if (!isMetricsUri(uri)) {
+            return null;
+        }
+        // One row per action and stage, for `adb shell content query` during load tests.
+        MatrixCursor cursor = new MatrixCursor(METRICS_COLUMNS);
+        for (MCActionRegistry.Action action : MCActionRegistry.all()) {
+            MCActionMetrics metrics = action.metrics();
+            if (metrics.isEmpty()) {
+                continue;
+            }
+            addMetricsRow(cursor, action.name(), MCActionMetrics.GATE_WAIT, metrics.gateWait,
+                metrics);
+            addMetricsRow(cursor, action.name(), MCActionMetrics.QUEUE_WAIT, metrics.queueWait,
+                metrics);
+            addMetricsRow(cursor, action.name(), MCActionMetrics.RUN, metrics.run, metrics);
+        }
+        return cursor;
+    }
+
+    private static void addMetricsRow(MatrixCursor cursor, String action, String stage,
+        MCActionMetrics.Histogram histogram, MCActionMetrics metrics) {
+        cursor.addRow(new Object[] {action, stage, histogram.count(), metrics.successCount(),
+            metrics.errorCount(), histogram.meanMicros(), histogram.percentileMicros(50),
+            histogram.percentileMicros(90), histogram.percentileMicros(99),
+            histogram.maxMicros()});
+    }
+
+    /**
+     * The metrics URI is only served by debuggable builds so release apps do not expose them to
+     * other processes with access to the provider.
+     */
+    private boolean isMetricsUri(Uri uri) {
+        Context ctx = getContext();
+        return ctx != null
+            && (ctx.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0
+            && PATH_METRICS.equals(uri.getLastPathSegment());
     }
 
     @Nullable
@@ -75,7 +125,11 @@ public class MCInitProvider
     @Override
     public int delete(
         @NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
-        return 0;
+        if (!isMetricsUri(uri)) {
+            return 0;
+        }
+        MCActionMetrics.reset();
+        return 1;
     }
 
     @Override
@@ -86,10 +140,13 @@ public class MCInitProvider
 
     @Override
     public void complete(@NonNull InitializationStatus status) {
+        MCStartupTimeline.mark(MCStartupTimeline.INIT_COMPLETE);
+        MCSdkInitializer.recordStatus(status);
         if (status.isUsable()) {
             MarketingCloudSdk.requestSdk(new MarketingCloudSdk.WhenReadyListener() {
                 @Override
                 public void ready(@NonNull MarketingCloudSdk marketingCloudSdk) {
+                    MCStartupTimeline.mark(MCStartupTimeline.SDK_READY);
                     RegistrationManager registrationManager =
                         marketingCloudSdk.getRegistrationManager();
                     registrationManager.edit().addTag("Cordova").commit();
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes registration data as JSON text without building an {@code org.json} tree, for read
+ * results that are sent to JavaScript as a string and decoded there.  Output decodes to the same
+ * value {@link MCBuiltInActions#fromMap} and {@link MCBuiltInActions#fromCollection} produce.
+ *
+ * <p>Each thread reuses one buffer, so a read allocates little more than its result string.
+ * Buffers that grew past {@link #MAX_POOLED_CAPACITY} are dropped after use instead of being
+ * kept for the life of the thread.
+ */
+final class MCJsonWriter {
+    static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+    };
+
+    private MCJsonWriter() {}
+
+    /**
+     * @return a JSON object with an entry for each mapping whose key and value are not null.
+     */
+    @NonNull
+    static String writeMap(@Nullable Map<String, String> map) {
+        StringBuilder out = acquire();
+        out.append('{');
+        if (map != null) {
+            boolean first = true;
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    // JSONObject#put drops null values and rejects null keys.
+                    continue;
+                }
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(out, entry.getKey());
+                out.append(':');
+                writeString(out, entry.getValue());
+            }
+        }
+        out.append('}');
+        return release(out);
+    }
+
+    /**
+     * @return a JSON array of the strings, in iteration order.
+     */
+    @NonNull
+    static String writeStrings(@Nullable Collection<String> collection) {
+        StringBuilder out = acquire();
+        out.append('[');
+        if (collection != null) {
+            boolean first = true;
+            for (String s : collection) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                if (s == null) {
+                    out.append("null");
+                } else {
+                    writeString(out, s);
+                }
+            }
+        }
+        out.append(']');
+        return release(out);
+    }
+
+    /** Appends {@code s} as a quoted JSON string, escaped as {@code JSONObject#quote} does. */
+    static void writeString(StringBuilder out, String s) {
+        out.append('"');
+        int start = 0;
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            String escape;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '/') {
+                escape = "\\/";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if (c == '\b') {
+                escape = "\\b";
+            } else if (c == '\f') {
+                escape = "\\f";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                // The line separators are valid in JSON but end a statement in older JavaScript.
+                out.append(s, start, i)
+                    .append("\\u")
+                    .append(HEX[(c >> 12) & 0xf])
+                    .append(HEX[(c >> 8) & 0xf])
+                    .append(HEX[(c >> 4) & 0xf])
+                    .append(HEX[c & 0xf]);
+                start = i + 1;
+                continue;
+            } else {
+                continue;
+            }
+            out.append(s, start, i).append(escape);
+            start = i + 1;
+        }
+        out.append(s, start, s.length()).append('"');
+    }
+
+    private static StringBuilder acquire() {
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        return out;
+    }
+
+    private static String release(StringBuilder out) {
+        String result = out.toString();
+        if (out.capacity() > MAX_POOLED_CAPACITY) {
+            buffers.set(new StringBuilder(INITIAL_CAPACITY));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,604 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.salesforce.marketingcloud.MCLogListener;
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.salesforce.marketingcloud.cordova.MCCordovaPlugin.TAG;
+
+/**
+ * SDK log listener that keeps logging off the SDK's threads.  {@link #out} only claims a slot in
+ * a preallocated ring buffer with an atomic increment and copies the record into it, so logging
+ * allocates nothing on the SDK's threads; a single background thread drains
+ * the buffer at most {@code flushIntervalMs} after a record arrives, or as soon as it is half
+ * full, and writes the records to size-rotated files, optionally echoes them to logcat and streams
+ * them in batches to JavaScript.  When the SDK logs faster than the buffer is drained the oldest
+ * records are overwritten and counted as dropped.
+ *
+ * <p>Files, logcat and JavaScript each have their own minimum level; the SDK is asked to log at
+ * the lowest of them.
+ */
+final class MCLogSink implements MCLogListener {
+    static final String LOG_DIR = "mccordova_logs";
+    static final String LOG_FILE = "sdk.log";
+    static final int OFF = Integer.MAX_VALUE;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LEVELS = "??VDIWEA";
+    private static MCLogSink instance;
+    // The listener set by enableVerboseLogging, put back when the sink is disabled.
+    @Nullable private static volatile MCLogListener appListener;
+    private static volatile int appLogLevel;
+
+    private final File dir;
+    private final int mask;
+    private final long maxFileBytes;
+    private final int fileCount;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService scheduler;
+
+    private final Record[] slots;
+    // 1 while a producer is storing into or the drain is copying out of the slot.
+    private final AtomicIntegerArray claims;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile int minLevel = OFF;
+    private volatile int fileLevel = OFF;
+    private volatile int logcatLevel = OFF;
+    private volatile int streamLevel = OFF;
+    @Nullable private volatile CallbackContext stream;
+
+    // Only accessed on the scheduler thread.
+    private long tail = 0;
+    private long stalledAt = -1;
+    private final Record[] batch;
+    private final SimpleDateFormat dateFormat =
+        new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    private final StringBuilder line = new StringBuilder();
+    private OutputStream out;
+    private long fileBytes;
+
+    private volatile long writtenCount = 0;
+    private volatile long droppedCount = 0;
+    private volatile long streamedCount = 0;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    MCLogSink(@NonNull File dir, int capacity, long maxFileBytes, int fileCount,
+        long flushIntervalMs) {
+        this(dir, capacity, maxFileBytes, fileCount, flushIntervalMs,
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "MCCordovaLogSink");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            }));
+    }
+
+    MCLogSink(@NonNull File dir, int capacity, long maxFileBytes, int fileCount,
+        long flushIntervalMs, @NonNull ScheduledExecutorService scheduler) {
+        // A power of two of at least 2 so a slot is found with a mask and half full is a bit.
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.dir = dir;
+        this.mask = size - 1;
+        this.maxFileBytes = maxFileBytes;
+        this.fileCount = fileCount;
+        this.flushIntervalMs = flushIntervalMs;
+        this.scheduler = scheduler;
+        this.slots = new Record[size];
+        this.batch = new Record[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Record();
+            batch[i] = new Record();
+        }
+        this.claims = new AtomicIntegerArray(size);
+    }
+
+    /**
+     * @return the process-wide sink writing under {@code filesDir}, sized by
+     * {@link MCPluginConfig}.
+     */
+    @NonNull
+    static synchronized MCLogSink get(@NonNull File filesDir) {
+        if (instance == null) {
+            MCPluginConfig config = MCPluginConfig.get();
+            instance = new MCLogSink(new File(filesDir, LOG_DIR), config.logBufferCapacity,
+                config.logFileMaxBytes, config.logFileCount, config.logFlushIntervalMs);
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts {@code sink} down, closing its file and stopping its thread, so the next
+     * {@link #get} starts a new one if it was the process-wide sink.
+     */
+    static synchronized void release(@NonNull MCLogSink sink) {
+        sink.shutdown();
+        if (instance == sink) {
+            instance = null;
+        }
+    }
+
+    /**
+     * Makes {@code listener} the SDK's log listener at {@code level}, as enableVerboseLogging
+     * does, and remembers it so disabling a sink puts it back rather than clearing it.
+     */
+    static void setAppLogListener(@Nullable MCLogListener listener, int level) {
+        appLogLevel = level;
+        appListener = listener;
+        if (listener != null) {
+            MarketingCloudSdk.setLogLevel(level);
+        }
+        MarketingCloudSdk.setLogListener(listener);
+    }
+
+    /**
+     * Starts the sink if the {@code log_sink_level} preference is set, before the SDK is
+     * initialized so its startup is captured.
+     */
+    static void startFromConfig(@NonNull File filesDir) {
+        int level = MCPluginConfig.get().logSinkLevel;
+        if (level != OFF) {
+            get(filesDir).enable(level, OFF, OFF, null);
+        }
+    }
+
+    /**
+     * Sets the minimum level written to the log files, echoed to logcat and sent to
+     * {@code stream}, each {@link #OFF} to skip it, and makes this the SDK's log listener.  A
+     * stream already set is ended.
+     */
+    synchronized void enable(int fileLevel, int logcatLevel, int streamLevel,
+        @Nullable CallbackContext stream) {
+        if (this.stream != null && this.stream != stream) {
+            endStream(this.stream);
+        }
+        this.fileLevel = fileLevel;
+        this.logcatLevel = logcatLevel;
+        this.stream = stream;
+        this.streamLevel = stream != null ? streamLevel : OFF;
+        int level = Math.min(fileLevel, Math.min(logcatLevel, this.streamLevel));
+        if (level == OFF) {
+            disable();
+            return;
+        }
+        minLevel = level;
+        MarketingCloudSdk.setLogLevel(level);
+        MarketingCloudSdk.setLogListener(this);
+    }
+
+    /**
+     * Detaches from the SDK if enabled, putting back the listener set by enableVerboseLogging,
+     * and ends the stream.  Records already buffered are still written.
+     */
+    synchronized void disable() {
+        if (minLevel == OFF) {
+            // Leave a listener set by enableVerboseLogging in place.
+            return;
+        }
+        minLevel = OFF;
+        MCLogListener listener = appListener;
+        if (listener != null) {
+            MarketingCloudSdk.setLogLevel(appLogLevel);
+        }
+        MarketingCloudSdk.setLogListener(listener);
+        if (stream != null) {
+            endStream(stream);
+            stream = null;
+            streamLevel = OFF;
+        } else {
+            scheduleDrain(0);
+        }
+    }
+
+    /**
+     * Detaches from the SDK, writes what is buffered, closes the log file and stops the sink's
+     * thread.
+     */
+    void shutdown() {
+        disable();
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+                closeFile();
+            }
+        });
+        scheduler.shutdown();
+    }
+
+    boolean isEnabled() {
+        return minLevel != OFF;
+    }
+
+    @Override
+    public void out(int level, @NonNull String tag, @NonNull String message,
+        @Nullable Throwable throwable) {
+        if (level < minLevel) {
+            return;
+        }
+        long sequence = head.getAndIncrement();
+        int index = (int) (sequence & mask);
+        // A slot still claimed belongs to a lapped producer or the drain; the record is dropped.
+        if (claims.compareAndSet(index, 0, 1)) {
+            slots[index].set(sequence, level, tag, message, throwable);
+            claims.set(index, 0);
+        }
+        try {
+            if ((sequence & (mask >> 1)) == mask >> 1) {
+                // Half a buffer since the last wake-up; drain before records are overwritten.
+                scheduler.execute(drain);
+            } else {
+                scheduleDrain(flushIntervalMs);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shut down while the SDK was logging.
+        }
+    }
+
+    /**
+     * Writes everything buffered, then sends the paths of the log files, oldest first, to
+     * {@code callbackContext}.
+     */
+    void sendFiles(@NonNull final CallbackContext callbackContext) {
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+                JSONArray paths = new JSONArray();
+                for (int i = fileCount - 1; i >= 0; i--) {
+                    File file = file(i);
+                    if (file.exists()) {
+                        paths.put(file.getAbsolutePath());
+                    }
+                }
+                callbackContext.success(paths);
+            }
+        });
+    }
+
+    JSONObject stats() throws JSONException {
+        return new JSONObject()
+            .put("enabled", isEnabled())
+            .put("bufferCapacity", mask + 1)
+            .put("written", writtenCount)
+            .put("streamed", streamedCount)
+            .put("dropped", droppedCount);
+    }
+
+    private void scheduleDrain(long delayMs) {
+        if (!drainScheduled.get() && drainScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(drain, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Only called on the scheduler thread.
+    private void drain() {
+        // Cleared first so a record that arrives while draining schedules the next drain.
+        drainScheduled.set(false);
+        long end = head.get();
+        long overwritten = end - (mask + 1) - tail;
+        if (overwritten > 0) {
+            droppedCount += overwritten;
+            tail += overwritten;
+        }
+        int count = 0;
+        while (tail < end) {
+            int index = (int) (tail & mask);
+            long stored = -1;
+            if (claims.compareAndSet(index, 0, 1)) {
+                stored = slots[index].sequence;
+                if (stored == tail) {
+                    batch[count++].copy(slots[index]);
+                }
+                claims.set(index, 0);
+            }
+            if (stored < tail && stalledAt != tail) {
+                // Claimed but not stored yet; picked up by the next drain.
+                stalledAt = tail;
+                scheduleDrain(flushIntervalMs);
+                break;
+            }
+            if (stored != tail) {
+                // Overwritten by a newer record, or still missing on the second drain because
+                // its producer was lapped.
+                droppedCount++;
+            }
+            tail++;
+        }
+        if (count > 0) {
+            write(count);
+            send(count);
+            for (int i = 0; i < count; i++) {
+                batch[i].clear();
+            }
+        }
+    }
+
+    private void write(int count) {
+        int fileLevel = this.fileLevel;
+        int logcatLevel = this.logcatLevel;
+        long written = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                Record record = batch[i];
+                if (record.level >= logcatLevel) {
+                    MCBuiltInActions.println(record.level, record.tag, record.text());
+                }
+                if (record.level < fileLevel) {
+                    continue;
+                }
+                if (out == null) {
+                    open();
+                }
+                line.setLength(0);
+                line.append(dateFormat.format(new Date(record.timeMs)))
+                    .append(' ')
+                    .append(level(record.level))
+                    .append('/')
+                    .append(record.tag)
+                    .append(": ")
+                    .append(record.text())
+                    .append('\n');
+                byte[] bytes = line.toString().getBytes(UTF_8);
+                out.write(bytes);
+                fileBytes += bytes.length;
+                written++;
+                if (fileBytes >= maxFileBytes) {
+                    rotate();
+                }
+            }
+            if (out != null) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write SDK log file.", e);
+            closeFile();
+        }
+        writtenCount += written;
+    }
+
+    private void send(int count) {
+        CallbackContext stream = this.stream;
+        int streamLevel = this.streamLevel;
+        if (stream == null) {
+            return;
+        }
+        JSONArray records = new JSONArray();
+        try {
+            for (int i = 0; i < count; i++) {
+                Record record = batch[i];
+                if (record.level >= streamLevel) {
+                    records.put(new JSONObject()
+                        .put("time", record.timeMs)
+                        .put("level", String.valueOf(level(record.level)))
+                        .put("tag", record.tag)
+                        .put("message", record.text()));
+                }
+            }
+        } catch (JSONException e) {
+            return;
+        }
+        if (records.length() == 0) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, records);
+        result.setKeepCallback(true);
+        stream.sendPluginResult(result);
+        streamedCount += records.length();
+    }
+
+    /**
+     * Releases {@code stream}'s callback with a final empty batch once what is buffered has been
+     * drained.
+     */
+    private void endStream(@NonNull final CallbackContext stream) {
+        try {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                    stream.success(new JSONArray());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            stream.success(new JSONArray());
+        }
+    }
+
+    private void open() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        File file = file(0);
+        fileBytes = file.length();
+        out = new BufferedOutputStream(new FileOutputStream(file, true));
+    }
+
+    /**
+     * Shifts {@code sdk.log} to {@code sdk.log.1} and so on, deleting the oldest file.
+     */
+    private void rotate() throws IOException {
+        out.flush();
+        closeFile();
+        for (int i = fileCount - 1; i > 0; i--) {
+            File from = file(i - 1);
+            File to = file(i);
+            if (from.exists() && (!to.exists() || to.delete()) && !from.renameTo(to)) {
+                Log.w(TAG, "Unable to rotate SDK log file " + from + ".");
+            }
+        }
+        if (fileCount == 1 && !file(0).delete()) {
+            Log.w(TAG, "Unable to truncate SDK log file.");
+        }
+    }
+
+    private File file(int index) {
+        return new File(dir, index == 0 ? LOG_FILE : LOG_FILE + "." + index);
+    }
+
+    private void closeFile() {
+        closeQuietly(out);
+        out = null;
+    }
+
+    private static char level(int level) {
+        return level >= 0 && level < LEVELS.length() ? LEVELS.charAt(level) : '?';
+    }
+
+    /**
+     * @return the {@link MCLogListener} level named by {@code name}, for example {@code "debug"},
+     * or {@code fallback} if it names none.
+     */
+    static int parseLevel(@Nullable String name, int fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        switch (name.trim().toLowerCase(Locale.US)) {
+            case "verbose":
+                return VERBOSE;
+            case "debug":
+                return DEBUG;
+            case "info":
+                return INFO;
+            case "warn":
+                return WARN;
+            case "error":
+                return ERROR;
+            case "off":
+                return OFF;
+            default:
+                return fallback;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // NO_OP
+            }
+        }
+    }
+
+    // Visible for testing.
+    static synchronized void reset() {
+        if (instance != null) {
+            release(instance);
+        }
+        appListener = null;
+    }
+
+    /**
+     * A ring slot, written by one thread at a time while it holds the slot's claim, or a copy
+     * the drain formats on the sink's thread.
+     */
+    private static final class Record {
+        long sequence = -1;
+        long timeMs;
+        int level;
+        String tag;
+        String message;
+        @Nullable Throwable throwable;
+        private String text;
+
+        void set(long sequence, int level, String tag, String message,
+            @Nullable Throwable throwable) {
+            this.sequence = sequence;
+            this.timeMs = System.currentTimeMillis();
+            this.level = level;
+            this.tag = tag;
+            this.message = message;
+            this.throwable = throwable;
+        }
+
+        void copy(Record other) {
+            sequence = other.sequence;
+            timeMs = other.timeMs;
+            level = other.level;
+            tag = other.tag;
+            message = other.message;
+            throwable = other.throwable;
+            text = null;
+        }
+
+        void clear() {
+            tag = null;
+            message = null;
+            throwable = null;
+            text = null;
+        }
+
+        /** The message followed by the stack trace, formatted on the sink's thread. */
+        String text() {
+            if (text == null) {
+                text = throwable == null
+                    ? message
+                    : message + '\n' + Log.getStackTraceString(throwable);
+            }
+            return text;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of actions sent in one {@code pipeline} call and answers with one array holding
+ * each action's result in list order.  Every step that needs the SDK is handed the same instance,
+ * resolved once for the whole pipeline.
+ *
+ * <p>The steps run in segments.  Consecutive reads form one segment and run in parallel: lane
+ * reads on the read lane while caller-thread reads run on the current thread.  Consecutive writes
+ * form one segment that runs its steps in order as a single task on the write lane, sequenced by
+ * the union of their keys, so they stay ordered with the app's other writes.  A segment starts
+ * once the one before it has finished, so a read listed after a write sees that write.
+ */
+final class MCPipeline {
+    /** Actions that keep their callback open and so cannot report a single result. */
+    private static final Set<String> UNSUPPORTED = new HashSet<>(
+        Arrays.asList("pipeline", "registerEventsChannel", "enableLogSink"));
+
+    private final MCCordovaPlugin plugin;
+    @Nullable private final MarketingCloudSdk sdk;
+    private final List<Step> steps;
+    private final CallbackContext callbackContext;
+    private final String[] results;
+    private final AtomicInteger segmentRemaining = new AtomicInteger();
+    // Index of the first step of the next segment.  Only advanced by the thread finishing the
+    // current segment.
+    private int next = 0;
+
+    private MCPipeline(MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk, List<Step> steps,
+        CallbackContext callbackContext) {
+        this.plugin = plugin;
+        this.sdk = sdk;
+        this.steps = steps;
+        this.callbackContext = callbackContext;
+        this.results = new String[steps.size()];
+    }
+
+    /**
+     * @param stepsJson {@code [{action, args}]}.
+     * @return the steps, or null if one of them is unknown or unsupported, in which case
+     * {@code callbackContext} has been sent the error.
+     */
+    @Nullable
+    static List<Step> parse(@NonNull JSONArray stepsJson, @NonNull CallbackContext callbackContext)
+        throws JSONException {
+        List<Step> steps = new ArrayList<>(stepsJson.length());
+        for (int i = 0; i < stepsJson.length(); i++) {
+            JSONObject step = stepsJson.getJSONObject(i);
+            String name = step.getString("action");
+            MCActionRegistry.Action entry = MCActionRegistry.get(name);
+            if (entry == null || UNSUPPORTED.contains(name)) {
+                callbackContext.error("Action '" + name + "' cannot run in a pipeline.");
+                return null;
+            }
+            JSONArray args = step.optJSONArray("args");
+            steps.add(new Step(i, entry, args != null ? args : new JSONArray()));
+        }
+        return steps;
+    }
+
+    static boolean requiresSdk(@NonNull List<Step> steps) {
+        for (Step step : steps) {
+            if (step.entry.requiresSdk()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void run(@NonNull MCCordovaPlugin plugin, @Nullable MarketingCloudSdk sdk,
+        @NonNull List<Step> steps, @NonNull CallbackContext callbackContext) {
+        new MCPipeline(plugin, sdk, steps, callbackContext).runNextSegment();
+    }
+
+    private void runNextSegment() {
+        if (next == steps.size()) {
+            finish();
+            return;
+        }
+        boolean write = steps.get(next).entry.isWrite();
+        int end = next;
+        while (end < steps.size() && steps.get(end).entry.isWrite() == write) {
+            end++;
+        }
+        List<Step> segment = steps.subList(next, end);
+        next = end;
+        if (write) {
+            runWrites(segment);
+        } else {
+            runReads(segment);
+        }
+    }
+
+    private void runReads(List<Step> segment) {
+        segmentRemaining.set(segment.size());
+        List<Step> inline = new ArrayList<>();
+        for (final Step step : segment) {
+            if (step.entry.mayRunOnCallerThread()) {
+                inline.add(step);
+                continue;
+            }
+            final long queuedAtNanos = System.nanoTime();
+            try {
+                plugin.getActionExecutor().executeRead(new Runnable() {
+                    @Override
+                    public void run() {
+                        step.entry.metrics().queueWait.record(System.nanoTime() - queuedAtNanos);
+                        invoke(step);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                step.entry.metrics().recordError();
+                stepDone(step, error("MCCordovaPlugin is overloaded. Too many read actions "
+                    + "are queued; '" + step.entry.name() + "' was rejected."));
+            }
+        }
+        for (Step step : inline) {
+            invoke(step);
+        }
+    }
+
+    private void runWrites(final List<Step> segment) {
+        segmentRemaining.set(segment.size());
+        boolean inline = true;
+        Set<String> keys = new LinkedHashSet<>();
+        for (Step step : segment) {
+            inline &= step.entry.mayRunOnCallerThread();
+            Collections.addAll(keys, step.entry.sequenceKeys(step.args));
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                for (Step step : segment) {
+                    invoke(step);
+                }
+            }
+        };
+        if (inline) {
+            task.run();
+            return;
+        }
+        if (keys.isEmpty()) {
+            // A write without keys, such as a batchEdit with no operations, still has to run.
+            keys.add(MCActionRegistry.ALL_KEYS);
+        }
+        try {
+            plugin.getActionExecutor().executeWrite(keys.toArray(new String[0]), task);
+        } catch (RejectedExecutionException e) {
+            for (Step step : segment) {
+                step.entry.metrics().recordError();
+                stepDone(step, error("MCCordovaPlugin is overloaded. Too many write "
+                    + "actions are queued; '" + step.entry.name() + "' was rejected."));
+            }
+        }
+    }
+
+    private void invoke(Step step) {
+        plugin.invoke(step.entry, step.entry.requiresSdk() ? sdk : null, step.args,
+            new StepCallbackContext(step, callbackContext));
+    }
+
+    /**
+     * Records a step's result.  The step that completes its segment, on whatever thread it
+     * answered, starts the next one.
+     */
+    private void stepDone(Step step, String result) {
+        results[step.index] = result;
+        if (segmentRemaining.decrementAndGet() == 0) {
+            runNextSegment();
+        }
+    }
+
+    private void finish() {
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < results.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(results[i]);
+        }
+        // Sent as JSON text and decoded by the JavaScript plugin.
+        callbackContext.sendPluginResult(
+            new PluginResult(PluginResult.Status.OK, out.append(']').toString()));
+    }
+
+    private static String error(String message) {
+        return "{\"ok\":false,\"error\":" + JSONObject.quote(message) + "}";
+    }
+
+    static final class Step {
+        final int index;
+        final MCActionRegistry.Action entry;
+        final JSONArray args;
+
+        Step(int index, MCActionRegistry.Action entry, JSONArray args) {
+            this.index = index;
+            this.entry = entry;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Keeps a step's first result instead of sending it to the WebView.  Steps may answer after
+     * their handler returned, as coalesced registration edits do.
+     */
+    private final class StepCallbackContext extends CallbackContext {
+        private final Step step;
+        private final AtomicBoolean answered = new AtomicBoolean();
+
+        StepCallbackContext(Step step, CallbackContext pipelineContext) {
+            super(pipelineContext.getCallbackId(), null);
+            this.step = step;
+        }
+
+        @Override
+        public void sendPluginResult(@NonNull PluginResult pluginResult) {
+            if (pluginResult.getStatus() == PluginResult.Status.NO_RESULT.ordinal()
+                || !answered.compareAndSet(false, true)) {
+                return;
+            }
+            if (pluginResult.getStatus() == PluginResult.Status.OK.ordinal()) {
+                // The message is already encoded as JSON, strings included.
+                stepDone(step, "{\"ok\":true,\"value\":" + pluginResult.getMessage() + "}");
+            } else {
+                stepDone(step, MCPipeline.error(
+                    pluginResult.getMessageType() == PluginResult.MESSAGE_TYPE_STRING
+                        ? pluginResult.getStrMessage()
+                        : pluginResult.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import static com.salesforce.marketingcloud.cordova.MCCordovaPlugin.TAG;
+
+/**
+ * Plugin-side settings read from the {@code com.salesforce.marketingcloud.} preferences in
+ * config.xml that are not part of the SDK's
+ * {@link com.salesforce.marketingcloud.MarketingCloudConfig}.
+ */
+final class MCPluginConfig {
+    private static volatile MCPluginConfig current = new MCPluginConfig();
+
+    /**
+     * Window, in milliseconds, during which attribute and tag edits are merged before being
+     * committed.  Zero disables coalescing.
+     */
+    long registrationFlushWindowMs = 0;
+
+    /**
+     * Maximum time, in milliseconds, an action waits for the SDK to become ready before failing.
+     * Zero waits indefinitely.
+     */
+    long sdkReadyTimeoutMs = 0;
+
+    /** Threads and queue capacity of the executor lane that runs read actions. */
+    int readThreads = 2;
+    int readQueueSize = 256;
+
+    /**
+     * Threads of the executor lane that runs write actions, and the most writes that may be queued
+     * or running.  Writes that share a sequence key never run concurrently whatever the thread
+     * count.
+     */
+    int writeThreads = 2;
+    int writeQueueSize = 256;
+
+    /**
+     * Events of each type kept while the WebView is not listening, and whether the newest event
+     * rather than the oldest is dropped when that many are already kept.
+     */
+    int eventBufferCapacity = 16;
+    boolean eventBufferDropNewest = false;
+
+    /**
+     * Longest time, in milliseconds, an event waits to be sent in a batch.  Zero sends every event
+     * on its own.  Batches hold at most {@code eventBatchMaxSize} events and no more than
+     * {@code eventBatchMaxInFlight} may be awaiting acknowledgement from JavaScript.
+     */
+    long eventBatchLatencyMs = 0;
+    int eventBatchMaxSize = 32;
+    int eventBatchMaxInFlight = 2;
+
+    /**
+     * Attribute and tag changes kept for {@code getAttributesSince} and {@code getTagsSince}.
+     * Clients that fall further behind receive the full set.
+     */
+    int registrationHistoryWindow = 512;
+
+    /**
+     * Longest time, in milliseconds, a cached SDK state section is served by
+     * {@code getSdkStateSnapshot} calls that do not set their own maximum age.  Zero rebuilds it on
+     * every call.  {@code getSDKState} and {@code logSdkState} always report live state.
+     */
+    long sdkStateMaxAgeMs = 1000;
+
+    /**
+     * Minimum {@link com.salesforce.marketingcloud.MCLogListener} level the SDK log sink writes to
+     * files from process start, or {@link MCLogSink#OFF} to leave it off until enabled from
+     * JavaScript.
+     */
+    int logSinkLevel = MCLogSink.OFF;
+
+    /**
+     * Log records buffered between writes; older ones are dropped when the SDK logs faster than
+     * they are written.  Records are written at most {@code logFlushIntervalMs} after they arrive.
+     */
+    int logBufferCapacity = 1024;
+    long logFlushIntervalMs = 1000;
+
+    /** Size at which the log file is rotated, and the number of files kept including it. */
+    long logFileMaxBytes = 256 * 1024;
+    int logFileCount = 3;
+
+    /**
+     * Time, in milliseconds, a region transition waits before it is sent; it is dropped if the
+     * region returns to its previous state meanwhile.  Each region, and the geofence message
+     * responses, send at most one event every {@code regionEventMinIntervalMs}.
+     */
+    long regionEventDebounceMs = 5000;
+    long regionEventMinIntervalMs = 30000;
+
+    /**
+     * Messages per page returned by {@code getInboxMessages} calls that do not set their own limit.
+     */
+    int inboxPageSize = 50;
+
+    @NonNull
+    static MCPluginConfig get() {
+        return current;
+    }
+
+    static void set(@NonNull MCPluginConfig config) {
+        current = config;
+    }
+
+    boolean isRegistrationCoalescingEnabled() {
+        return registrationFlushWindowMs > 0;
+    }
+
+    boolean isEventBatchingEnabled() {
+        return eventBatchLatencyMs > 0;
+    }
+
+    static int parsePositiveInt(String key, String val, int fallback) {
+        long parsed = parseLong(key, val, fallback);
+        if (parsed < 1 || parsed > Integer.MAX_VALUE) {
+            Log.w(TAG, "Value for " + key + " must be a positive integer. Using " + fallback + ".");
+            return fallback;
+        }
+        return (int) parsed;
+    }
+
+    static long parseLong(String key, String val, long fallback) {
+        try {
+            return Long.parseLong(val.trim());
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid value '" + val + "' for " + key + ". Using " + fallback + ".");
+            return fallback;
+        }
+    }
+}
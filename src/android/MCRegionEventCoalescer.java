@@ -0,0 +1,312 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.salesforce.marketingcloud.location.LatLon;
+import com.salesforce.marketingcloud.messages.Region;
+import com.salesforce.marketingcloud.messages.RegionMessageManager;
+import com.salesforce.marketingcloud.messages.geofence.GeofenceMessageResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives region transitions and geofence message responses from the SDK and coalesces them
+ * before they are sent on the events channel, so a noisy location fix does not wake the WebView
+ * for every report.  A transition waits {@code debounceMs} and is dropped if its region is back in
+ * the state last sent by then, which absorbs enter/exit flapping at the edge of a fence.  After
+ * that each region, and the geofence message responses, send at most one event every
+ * {@code minIntervalMs}; a newer report replaces one that is still waiting.
+ */
+class MCRegionEventCoalescer implements RegionMessageManager.RegionTransitionEventListener,
+    RegionMessageManager.GeofenceMessageResponseListener {
+    // The values of Android's Geofence.GEOFENCE_TRANSITION_* constants, which the SDK reports.
+    private static final int TRANSITION_ENTER = 1;
+    private static final int TRANSITION_EXIT = 2;
+    private static final int TRANSITION_DWELL = 4;
+    // Responses are not tied to one region so they share a single entry.
+    private static final String GEOFENCE_RESPONSE_KEY = "geofenceMessageResponse";
+    private static final int MAX_ENTRIES = 256;
+
+    private final MCCordovaPlugin plugin;
+    private final long debounceMs;
+    private final long minIntervalMs;
+    private final ScheduledExecutorService scheduler;
+    // Entries waiting to send are never evicted.
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES && eldest.getValue().pendingEvent == null;
+        }
+    };
+
+    private long receivedCount = 0;
+    private long suppressedCount = 0;
+    private long replacedCount = 0;
+    private long rateLimitedCount = 0;
+    private long sentCount = 0;
+
+    private final class Entry implements Runnable {
+        final String type;
+        @Nullable String sentState;
+        boolean sent = false;
+        long sentAtMs;
+        @Nullable String pendingState;
+        @Nullable JSONObject pendingEvent;
+        int pendingReports;
+        long dueAtMs;
+        boolean scheduled = false;
+
+        Entry(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public void run() {
+            flush(this);
+        }
+    }
+
+    MCRegionEventCoalescer(MCCordovaPlugin plugin, long debounceMs, long minIntervalMs) {
+        this(plugin, debounceMs, minIntervalMs,
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, "MCCordovaRegionEvents");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }));
+    }
+
+    MCRegionEventCoalescer(MCCordovaPlugin plugin, long debounceMs, long minIntervalMs,
+        ScheduledExecutorService scheduler) {
+        this.plugin = plugin;
+        this.debounceMs = debounceMs;
+        this.minIntervalMs = minIntervalMs;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void onTransitionEvent(int transitionType, @NonNull Region region) {
+        String transition;
+        switch (transitionType) {
+            case TRANSITION_ENTER:
+                transition = "entered";
+                break;
+            case TRANSITION_EXIT:
+                transition = "exited";
+                break;
+            case TRANSITION_DWELL:
+                transition = "dwelling";
+                break;
+            default:
+                return;
+        }
+        try {
+            JSONObject event = new JSONObject()
+                .put("type", MCCordovaPlugin.EVENT_REGION_TRANSITION)
+                .put("transition", transition)
+                .put("region", toJson(region))
+                .put("timeStamp", System.currentTimeMillis());
+            offer(MCCordovaPlugin.EVENT_REGION_TRANSITION, "region:" + region.id(), transition,
+                event);
+        } catch (JSONException e) {
+            // NO_OP
+        }
+    }
+
+    @Override
+    public void onGeofenceMessageResponse(@NonNull GeofenceMessageResponse response) {
+        try {
+            JSONArray fences = new JSONArray();
+            if (response.fences() != null) {
+                for (Region fence : response.fences()) {
+                    fences.put(toJson(fence));
+                }
+            }
+            JSONObject event = new JSONObject()
+                .put("type", MCCordovaPlugin.EVENT_GEOFENCE_MESSAGE_RESPONSE)
+                .put("fences", fences)
+                .put("timeStamp", System.currentTimeMillis());
+            offer(MCCordovaPlugin.EVENT_GEOFENCE_MESSAGE_RESPONSE, GEOFENCE_RESPONSE_KEY, null,
+                event);
+        } catch (JSONException e) {
+            // NO_OP
+        }
+    }
+
+    /**
+     * Queues {@code event} for the entry {@code key}.
+     *
+     * @param state the region state the event reports, or null if every event should be sent.
+     */
+    void offer(@NonNull String type, @NonNull String key, @Nullable String state,
+        @NonNull JSONObject event) {
+        long nowMs = SystemClock.elapsedRealtime();
+        long delayMs;
+        Entry entry;
+        synchronized (this) {
+            receivedCount++;
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(type);
+                entries.put(key, entry);
+            }
+            if (state != null && state.equals(entry.sentState)) {
+                // Back in the state the app last saw, so a waiting transition is a flap.
+                if (entry.pendingEvent != null) {
+                    entry.pendingEvent = null;
+                    entry.pendingState = null;
+                }
+                suppressedCount++;
+                return;
+            }
+
+            if (entry.pendingEvent == null) {
+                entry.pendingReports = 0;
+            } else {
+                replacedCount++;
+            }
+            if (entry.pendingEvent == null || !equal(state, entry.pendingState)) {
+                // The state changed, so wait for it to settle again.
+                entry.dueAtMs = nowMs + debounceMs;
+                if (entry.sent && entry.sentAtMs + minIntervalMs > entry.dueAtMs) {
+                    entry.dueAtMs = entry.sentAtMs + minIntervalMs;
+                    rateLimitedCount++;
+                }
+            }
+            entry.pendingState = state;
+            entry.pendingEvent = event;
+            entry.pendingReports++;
+            if (entry.scheduled) {
+                return;
+            }
+            entry.scheduled = true;
+            delayMs = entry.dueAtMs - nowMs;
+        }
+        schedule(entry, delayMs);
+    }
+
+    private void flush(Entry entry) {
+        long nowMs = SystemClock.elapsedRealtime();
+        JSONObject event = null;
+        long delayMs = 0;
+        synchronized (this) {
+            if (entry.pendingEvent == null) {
+                entry.scheduled = false;
+                return;
+            }
+            if (nowMs < entry.dueAtMs) {
+                // The wait was extended after this run was scheduled.
+                delayMs = entry.dueAtMs - nowMs;
+            } else {
+                event = entry.pendingEvent;
+                try {
+                    event.put("reports", entry.pendingReports);
+                } catch (JSONException e) {
+                    // NO_OP
+                }
+                entry.sentState = entry.pendingState;
+                entry.sent = true;
+                entry.sentAtMs = nowMs;
+                entry.pendingEvent = null;
+                entry.pendingState = null;
+                entry.scheduled = false;
+                sentCount++;
+            }
+        }
+        if (event == null) {
+            schedule(entry, delayMs);
+            return;
+        }
+        plugin.sendRegionEvent(entry.type, event);
+    }
+
+    // Called without holding the lock; once shut down the entry is left unscheduled.
+    private void schedule(Entry entry, long delayMs) {
+        try {
+            scheduler.schedule(entry, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                entry.scheduled = false;
+            }
+        }
+    }
+
+    void shutdown() {
+        scheduler.shutdown();
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        int pending = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.pendingEvent != null) {
+                pending++;
+            }
+        }
+        return new JSONObject()
+            .put("enabled", true)
+            .put("debounceMs", debounceMs)
+            .put("minIntervalMs", minIntervalMs)
+            .put("received", receivedCount)
+            .put("suppressed", suppressedCount)
+            .put("replaced", replacedCount)
+            .put("rateLimited", rateLimitedCount)
+            .put("sent", sentCount)
+            .put("pending", pending);
+    }
+
+    private static boolean equal(@Nullable String a, @Nullable String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    static JSONObject toJson(@NonNull Region region) throws JSONException {
+        JSONObject json = new JSONObject()
+            .put("id", region.id())
+            .put("name", region.name())
+            .put("radius", region.radius())
+            .put("regionType", region.regionType());
+        LatLon center = region.center();
+        if (center != null) {
+            json.put("latitude", center.latitude()).put("longitude", center.longitude());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.Nullable;
+
+/**
+ * In-memory copies of registration and push values read through the plugin.  Each entry carries a
+ * generation that is bumped on invalidation so a read that raced with a write never stores the
+ * value it loaded before the write.
+ */
+final class MCRegistrationCache {
+    static final int ATTRIBUTES = 0;
+    static final int TAGS = 1;
+    static final int CONTACT_KEY = 2;
+    static final int SYSTEM_TOKEN = 3;
+    static final int PUSH_ENABLED = 4;
+    /** Returned by {@link #lookup(int)} when an entry holds no value. */
+    static final Object MISS = new Object();
+
+    private static final int ENTRY_COUNT = 5;
+    private static final Object NULL_VALUE = new Object();
+
+    private final Object[] values = new Object[ENTRY_COUNT];
+    private final long[] generations = new long[ENTRY_COUNT];
+
+    /**
+     * @return whether {@code entry} holds a value.  Reads that allow a cached null use
+     * {@link #lookup(int)}, since the entry may be invalidated between the two calls.
+     */
+    synchronized boolean contains(int entry) {
+        return values[entry] != null;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    synchronized <T> T get(int entry) {
+        Object value = values[entry];
+        return value == NULL_VALUE ? null : (T) value;
+    }
+
+    /**
+     * @return the value of {@code entry}, which may be null if null was cached, or {@link #MISS}
+     * if it holds none.
+     */
+    @Nullable
+    synchronized Object lookup(int entry) {
+        Object value = values[entry];
+        return value == null ? MISS : value == NULL_VALUE ? null : value;
+    }
+
+    /**
+     * @return the current generation of {@code entry}, to be passed to {@link #put} once the value
+     * has been loaded.
+     */
+    synchronized long generation(int entry) {
+        return generations[entry];
+    }
+
+    /**
+     * Stores {@code value} unless {@code entry} was invalidated since {@code generation} was read.
+     */
+    synchronized void put(int entry, long generation, @Nullable Object value) {
+        if (generations[entry] == generation) {
+            values[entry] = value == null ? NULL_VALUE : value;
+        }
+    }
+
+    synchronized void invalidate(int entry) {
+        values[entry] = null;
+        generations[entry]++;
+    }
+
+    synchronized void invalidateAll() {
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            invalidate(i);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+import com.salesforce.marketingcloud.registration.RegistrationManager;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges attribute and tag edits in memory and commits them together once the flush window
+ * elapses.  The last edit for an attribute key or a tag wins, so the committed state is the same
+ * as if every edit had been committed in turn.  Callbacks for merged edits are resolved with the
+ * result of the commit that persisted them, or with an error if it threw.
+ */
+class MCRegistrationCoalescer {
+    private final Object lock = new Object();
+    // Serializes flushes so a later flush can never commit before an earlier one.
+    private final Object flushLock = new Object();
+    private final long windowMs;
+    @Nullable private final MCRegistrationCache cache;
+    private final ScheduledExecutorService scheduler;
+
+    // A null value clears the attribute.
+    private Map<String, String> pendingAttributes = new LinkedHashMap<>();
+    // True adds the tag, false removes it.
+    private Map<String, Boolean> pendingTags = new LinkedHashMap<>();
+    private List<CallbackContext> pendingCallbacks = new ArrayList<>();
+    private MarketingCloudSdk sdk;
+    private boolean flushScheduled = false;
+    private boolean shutdown = false;
+
+    private long editCount = 0;
+    private long commitCount = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    MCRegistrationCoalescer(long windowMs, @Nullable MCRegistrationCache cache) {
+        this(windowMs, cache, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, "MCCordovaRegistrationFlush");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * @param cache invalidated once committed edits have reached the SDK, or null.
+     */
+    MCRegistrationCoalescer(long windowMs, @Nullable MCRegistrationCache cache,
+        ScheduledExecutorService scheduler) {
+        this.windowMs = windowMs;
+        this.cache = cache;
+        this.scheduler = scheduler;
+    }
+
+    void setAttribute(MarketingCloudSdk sdk, String key, String value, CallbackContext callback) {
+        enqueueAttribute(sdk, key, value, callback);
+    }
+
+    void clearAttribute(MarketingCloudSdk sdk, String key, CallbackContext callback) {
+        enqueueAttribute(sdk, key, null, callback);
+    }
+
+    void addTag(MarketingCloudSdk sdk, String tag, CallbackContext callback) {
+        enqueueTag(sdk, tag, Boolean.TRUE, callback);
+    }
+
+    void removeTag(MarketingCloudSdk sdk, String tag, CallbackContext callback) {
+        enqueueTag(sdk, tag, Boolean.FALSE, callback);
+    }
+
+    private void enqueueAttribute(
+        MarketingCloudSdk sdk, String key, @Nullable String value, CallbackContext callback) {
+        boolean flushNow;
+        synchronized (lock) {
+            // Remove first so the key moves to the end and commit order follows edit order.
+            pendingAttributes.remove(key);
+            pendingAttributes.put(key, value);
+            flushNow = track(sdk, callback);
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    private void enqueueTag(
+        MarketingCloudSdk sdk, String tag, Boolean add, CallbackContext callback) {
+        boolean flushNow;
+        synchronized (lock) {
+            // The last edit of a tag wins, as it would if each were committed in turn.  Remove
+            // first so the tag moves to the end and commit order follows edit order.
+            pendingTags.remove(tag);
+            pendingTags.put(tag, add);
+            flushNow = track(sdk, callback);
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Must be called while holding lock.
+     *
+     * @return true if the caller must flush since the flush thread has been stopped.
+     */
+    private boolean track(MarketingCloudSdk sdk, CallbackContext callback) {
+        this.sdk = sdk;
+        editCount++;
+        pendingCallbacks.add(callback);
+        if (shutdown) {
+            return true;
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(flushRunnable, windowMs, TimeUnit.MILLISECONDS);
+        }
+        return false;
+    }
+
+    /**
+     * Commits pending edits on the calling thread.  Callers that must observe earlier edits, such
+     * as reads or contact key changes, flush before running.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            Map<String, String> attributes;
+            Map<String, Boolean> tags;
+            List<CallbackContext> callbacks;
+            MarketingCloudSdk target;
+            synchronized (lock) {
+                flushScheduled = false;
+                if (pendingCallbacks.isEmpty()) {
+                    return;
+                }
+                attributes = pendingAttributes;
+                tags = pendingTags;
+                callbacks = pendingCallbacks;
+                target = sdk;
+                pendingAttributes = new LinkedHashMap<>();
+                pendingTags = new LinkedHashMap<>();
+                pendingCallbacks = new ArrayList<>();
+                if (!attributes.isEmpty() || !tags.isEmpty()) {
+                    commitCount++;
+                }
+            }
+
+            Boolean success = null;
+            try {
+                success = commit(target, attributes, tags);
+            } finally {
+                // Resolved even if the commit threw, so no JavaScript promise is left waiting.
+                for (CallbackContext callback : callbacks) {
+                    if (success == null) {
+                        callback.error("Unable to commit registration changes");
+                    } else {
+                        callback.success(success ? 1 : 0);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean commit(MarketingCloudSdk target, Map<String, String> attributes,
+        Map<String, Boolean> tags) {
+        if (attributes.isEmpty() && tags.isEmpty()) {
+            // Nothing was edited since the last flush.
+            return true;
+        }
+        RegistrationManager.Editor editor = target.getRegistrationManager().edit();
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            if (entry.getValue() == null) {
+                editor.clearAttribute(entry.getKey());
+            } else {
+                editor.setAttribute(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : tags.entrySet()) {
+            if (entry.getValue()) {
+                editor.addTag(entry.getKey());
+            } else {
+                editor.removeTag(entry.getKey());
+            }
+        }
+        boolean success = editor.commit();
+        // A read between the edit and this commit may have cached the value it replaced.
+        if (cache != null) {
+            if (!attributes.isEmpty()) {
+                cache.invalidate(MCRegistrationCache.ATTRIBUTES);
+            }
+            if (!tags.isEmpty()) {
+                cache.invalidate(MCRegistrationCache.TAGS);
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Commits pending edits on the flush thread without waiting for the window to elapse.
+     */
+    void flushAsync() {
+        synchronized (lock) {
+            if (shutdown || pendingCallbacks.isEmpty()) {
+                return;
+            }
+        }
+        scheduler.execute(flushRunnable);
+    }
+
+    /**
+     * Commits pending edits on the flush thread and then stops it.  Edits made afterwards are
+     * committed on the calling thread.
+     */
+    void shutdown() {
+        synchronized (lock) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        scheduler.execute(flushRunnable);
+        scheduler.shutdown();
+    }
+
+    JSONObject stats() throws JSONException {
+        synchronized (lock) {
+            return new JSONObject()
+                .put("enabled", true)
+                .put("windowMs", windowMs)
+                .put("edits", editCount)
+                .put("commits", commitCount)
+                .put("commitsSaved", editCount - commitCount - pendingCallbacks.size())
+                .put("pending", pendingCallbacks.size());
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A versioned history of the registration's attributes and tags, so a client that polls for them
+ * only receives what changed since its last poll.  Each read observes the SDK's current values and
+ * records how they differ from the values observed before under a new version.  Versions are
+ * shared by attributes and tags, only grow and restart with the process.
+ *
+ * <p>The most recent {@code window} changes are kept.  A client whose version predates them, is
+ * newer than the current version or is 0 receives a reset carrying the full set instead.
+ */
+final class MCRegistrationHistory {
+    private static final int ATTRIBUTE = 0;
+    private static final int TAG = 1;
+
+    private final int window;
+    private final ArrayDeque<Change> changes = new ArrayDeque<>();
+    private long version = 0;
+
+    // Indexed by ATTRIBUTE and TAG.
+    private final long[] floors = new long[2];
+    private final long[] generations = {-1, -1};
+    @Nullable private Map<String, String> attributes;
+    @Nullable private Set<String> tags;
+
+    MCRegistrationHistory(int window) {
+        this.window = window;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * @return whether the attributes were observed at {@code generation} of
+     * {@link MCRegistrationCache#ATTRIBUTES}, so the SDK does not need to be read again.
+     */
+    synchronized boolean hasAttributes(long generation) {
+        return attributes != null && generations[ATTRIBUTE] == generation;
+    }
+
+    synchronized boolean hasTags(long generation) {
+        return tags != null && generations[TAG] == generation;
+    }
+
+    /**
+     * Records how {@code current} differs from the attributes observed before.  An observation
+     * made at an older cache generation than the last one is stale and ignored.
+     */
+    synchronized void observeAttributes(@Nullable Map<String, String> current, long generation) {
+        if (generation < generations[ATTRIBUTE]) {
+            return;
+        }
+        generations[ATTRIBUTE] = generation;
+        Map<String, String> observed = new LinkedHashMap<>();
+        if (current != null) {
+            for (Map.Entry<String, String> entry : current.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    observed.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (attributes == null) {
+            attributes = observed;
+            floors[ATTRIBUTE] = ++version;
+            return;
+        }
+
+        long next = version + 1;
+        boolean changed = false;
+        for (Map.Entry<String, String> entry : observed.entrySet()) {
+            if (!entry.getValue().equals(attributes.get(entry.getKey()))) {
+                changes.addLast(new Change(next, ATTRIBUTE, entry.getKey(), entry.getValue()));
+                changed = true;
+            }
+        }
+        for (String key : attributes.keySet()) {
+            if (!observed.containsKey(key)) {
+                changes.addLast(new Change(next, ATTRIBUTE, key, null));
+                changed = true;
+            }
+        }
+        attributes = observed;
+        if (changed) {
+            version = next;
+            trim();
+        }
+    }
+
+    synchronized void observeTags(@Nullable Collection<String> current, long generation) {
+        if (generation < generations[TAG]) {
+            return;
+        }
+        generations[TAG] = generation;
+        Set<String> observed = new LinkedHashSet<>();
+        if (current != null) {
+            for (String tag : current) {
+                if (tag != null) {
+                    observed.add(tag);
+                }
+            }
+        }
+        if (tags == null) {
+            tags = observed;
+            floors[TAG] = ++version;
+            return;
+        }
+
+        long next = version + 1;
+        boolean changed = false;
+        for (String tag : observed) {
+            if (!tags.contains(tag)) {
+                changes.addLast(new Change(next, TAG, tag, tag));
+                changed = true;
+            }
+        }
+        for (String tag : tags) {
+            if (!observed.contains(tag)) {
+                changes.addLast(new Change(next, TAG, tag, null));
+                changed = true;
+            }
+        }
+        tags = observed;
+        if (changed) {
+            version = next;
+            trim();
+        }
+    }
+
+    /**
+     * @return {@code {version, reset, changed: {key: value}, removed: [key]}} as JSON text.  After
+     * a reset {@code changed} holds every attribute.
+     */
+    @NonNull
+    synchronized String attributesSince(long since) {
+        if (attributes == null) {
+            throw new IllegalStateException("Attributes have not been observed.");
+        }
+        if (needsReset(ATTRIBUTE, since)) {
+            return delta("changed", MCJsonWriter.writeMap(attributes),
+                MCJsonWriter.writeStrings(null), true);
+        }
+        // The last change of each key since the client's version wins.
+        Map<String, String> latest = new LinkedHashMap<>();
+        for (Change change : changes) {
+            if (change.kind == ATTRIBUTE && change.version > since) {
+                latest.remove(change.key);
+                latest.put(change.key, change.value);
+            }
+        }
+        Map<String, String> changed = new LinkedHashMap<>();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, String> entry : latest.entrySet()) {
+            if (entry.getValue() != null) {
+                changed.put(entry.getKey(), entry.getValue());
+            } else {
+                removed.add(entry.getKey());
+            }
+        }
+        return delta("changed", MCJsonWriter.writeMap(changed), MCJsonWriter.writeStrings(removed),
+            false);
+    }
+
+    /**
+     * @return {@code {version, reset, added: [tag], removed: [tag]}} as JSON text.  After a reset
+     * {@code added} holds every tag.
+     */
+    @NonNull
+    synchronized String tagsSince(long since) {
+        if (tags == null) {
+            throw new IllegalStateException("Tags have not been observed.");
+        }
+        if (needsReset(TAG, since)) {
+            return delta("added", MCJsonWriter.writeStrings(tags),
+                MCJsonWriter.writeStrings(null), true);
+        }
+        Map<String, Boolean> latest = new LinkedHashMap<>();
+        for (Change change : changes) {
+            if (change.kind == TAG && change.version > since) {
+                latest.remove(change.key);
+                latest.put(change.key, change.value != null);
+            }
+        }
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : latest.entrySet()) {
+            (entry.getValue() ? added : removed).add(entry.getKey());
+        }
+        return delta("added", MCJsonWriter.writeStrings(added), MCJsonWriter.writeStrings(removed),
+            false);
+    }
+
+    private boolean needsReset(int kind, long since) {
+        return since < floors[kind] || since > version;
+    }
+
+    /** Drops the oldest changes beyond the window; clients older than them need a reset. */
+    private void trim() {
+        while (changes.size() > window) {
+            Change dropped = changes.removeFirst();
+            floors[dropped.kind] = Math.max(floors[dropped.kind], dropped.version);
+        }
+    }
+
+    private String delta(String changedName, String changed, String removed, boolean reset) {
+        return "{\"version\":" + version + ",\"reset\":" + reset + ",\"" + changedName + "\":"
+            + changed + ",\"removed\":" + removed + "}";
+    }
+
+    private static final class Change {
+        final long version;
+        final int kind;
+        final String key;
+        // The new attribute value, or for tags the tag if it was added.  Null if removed.
+        @Nullable final String value;
+
+        Change(long version, int kind, String key, @Nullable String value) {
+            this.version = version;
+            this.kind = kind;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -27,8 +27,10 @@
 package com.salesforce.marketingcloud.cordova;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 import com.google.firebase.FirebaseApp;
@@ -37,18 +39,89 @@ import com.salesforce.marketingcloud.notifications.NotificationCustomizationOpti
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import static com.salesforce.marketingcloud.cordova.MCCordovaPlugin.TAG;
 
 public class MCSdkConfig {
     private static final String CONFIG_PREFIX = "com.salesforce.marketingcloud.";
+    private static final String SNAPSHOT_FILE = "mccordova_config.snapshot";
+
+    private static final Object loadLock = new Object();
+    private static boolean loaded = false;
+    @Nullable private static MCConfigSnapshot loadedConfig;
 
     private MCSdkConfig() {}
 
     @Nullable
     public static MarketingCloudConfig.Builder prepareConfigBuilder(Context context) {
+        MCStartupTimeline.begin(MCStartupTimeline.PREPARE_CONFIG);
+        try {
+            return prepareConfigBuilderInternal(context);
+        } finally {
+            MCStartupTimeline.end(MCStartupTimeline.PREPARE_CONFIG);
+        }
+    }
+
+    @Nullable
+    private static MarketingCloudConfig.Builder prepareConfigBuilderInternal(Context context) {
+        MCConfigSnapshot snapshot = loadConfig(context);
+        return snapshot != null ? applyConfig(snapshot) : null;
+    }
+
+    /**
+     * Reads the Marketing Cloud preferences, from the snapshot or config.xml, the first time it is
+     * called in the process and publishes the plugin's settings from them as
+     * {@link MCPluginConfig}.  This does not need the SDK, so the plugin calls it before a deferred
+     * initialization has run.
+     *
+     * @return the preferences, or null if the app has no config.xml.
+     */
+    @Nullable
+    static MCConfigSnapshot loadConfig(Context context) {
+        synchronized (loadLock) {
+            if (!loaded) {
+                loadedConfig = readConfig(context);
+                loaded = true;
+                if (loadedConfig != null) {
+                    MCPluginConfig.set(parsePluginConfig(loadedConfig));
+                }
+            }
+            return loadedConfig;
+        }
+    }
+
+    // Visible for testing.
+    static void resetLoadedConfig() {
+        synchronized (loadLock) {
+            loaded = false;
+            loadedConfig = null;
+        }
+    }
+
+    @Nullable
+    private static MCConfigSnapshot readConfig(Context context) {
+        File snapshotFile = null;
+        // The application info is already in this process; the package manager is not called.
+        ApplicationInfo info = context.getApplicationInfo();
+        String apkPath = info != null ? info.sourceDir : null;
+        long apkModified = 0;
+        if (apkPath != null && context.getFilesDir() != null) {
+            apkModified = new File(apkPath).lastModified();
+            snapshotFile = new File(context.getFilesDir(), SNAPSHOT_FILE);
+        }
+
+        if (snapshotFile != null) {
+            MCConfigSnapshot snapshot = MCConfigSnapshot.read(snapshotFile, apkPath, apkModified);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+
         Resources res = context.getResources();
         int configId = res.getIdentifier("config", "xml", context.getPackageName());
 
@@ -57,13 +130,24 @@ public class MCSdkConfig {
         }
 
         XmlResourceParser parser = res.getXml(configId);
-
-        return parseConfig(context, parser);
+        MCConfigSnapshot snapshot = collectConfig(context, parser);
+        if (snapshot.complete && snapshotFile != null) {
+            snapshot.write(snapshotFile, apkPath, apkModified);
+        }
+        return snapshot;
     }
 
     static MarketingCloudConfig.Builder parseConfig(Context context, XmlPullParser parser) {
-        MarketingCloudConfig.Builder builder = MarketingCloudConfig.builder();
-        boolean senderIdSet = false;
+        return applyConfig(collectConfig(context, parser));
+    }
+
+    /**
+     * Reads the Marketing Cloud preferences from config.xml and resolves the notification icon.
+     */
+    @NonNull
+    static MCConfigSnapshot collectConfig(Context context, XmlPullParser parser) {
+        Map<String, String> preferences = new LinkedHashMap<>();
+        int notificationIconId = 0;
         try {
             while (parser.next() != XmlPullParser.END_DOCUMENT) {
                 if (parser.getEventType() != XmlPullParser.START_TAG
@@ -76,60 +160,181 @@ public class MCSdkConfig {
 
                 if (key != null && val != null) {
                     key = key.toLowerCase(Locale.US);
-
-                    switch (key) {
-                        case CONFIG_PREFIX + "app_id":
-                            builder.setApplicationId(val);
-                            break;
-                        case CONFIG_PREFIX + "access_token":
-                            builder.setAccessToken(val);
-                            break;
-                        case CONFIG_PREFIX + "sender_id":
-                            builder.setSenderId(val);
-                            senderIdSet = true;
-                            break;
-                        case CONFIG_PREFIX + "analytics":
-                            builder.setAnalyticsEnabled("true".equalsIgnoreCase(val));
-                            break;
-                        case CONFIG_PREFIX + "notification_small_icon":
-                            int notifId = context.getResources().getIdentifier(
-                                val, "drawable", context.getPackageName());
-                            if (notifId != 0) {
-                                builder.setNotificationCustomizationOptions(
-                                    NotificationCustomizationOptions.create(notifId));
-                            }
-                            break;
-                        case CONFIG_PREFIX + "tenant_specific_endpoint":
-                            builder.setMarketingCloudServerUrl(val);
-                            break;
-                        case CONFIG_PREFIX + "delay_registration_until_contact_key_is_set":
-                            builder.setDelayRegistrationUntilContactKeyIsSet(
-                                "true".equalsIgnoreCase(val));
-                            break;
-                        case CONFIG_PREFIX + "location":
-                            builder.setGeofencingEnabled("true".equalsIgnoreCase(val));
-                            break;
-                        default:
-                            break;
+                    if (!key.startsWith(CONFIG_PREFIX)) {
+                        continue;
+                    }
+                    preferences.put(key, val);
+                    if (key.equals(CONFIG_PREFIX + "notification_small_icon")) {
+                        notificationIconId = context.getResources().getIdentifier(
+                            val, "drawable", context.getPackageName());
                     }
                 }
             }
         } catch (XmlPullParserException e) {
             Log.e(TAG, "Unable to read config.xml.", e);
+            return new MCConfigSnapshot(preferences, notificationIconId, false);
         } catch (IOException ioe) {
             Log.e(TAG, "Unable to open config.xml.", ioe);
+            return new MCConfigSnapshot(preferences, notificationIconId, false);
+        }
+        return new MCConfigSnapshot(preferences, notificationIconId, true);
+    }
+
+    static MarketingCloudConfig.Builder applyConfig(MCConfigSnapshot snapshot) {
+        MarketingCloudConfig.Builder builder = MarketingCloudConfig.builder();
+        boolean senderIdSet = false;
+        for (Map.Entry<String, String> preference : snapshot.preferences.entrySet()) {
+            String key = preference.getKey();
+            String val = preference.getValue();
+
+            switch (key) {
+                case CONFIG_PREFIX + "app_id":
+                    builder.setApplicationId(val);
+                    break;
+                case CONFIG_PREFIX + "access_token":
+                    builder.setAccessToken(val);
+                    break;
+                case CONFIG_PREFIX + "sender_id":
+                    builder.setSenderId(val);
+                    senderIdSet = true;
+                    break;
+                case CONFIG_PREFIX + "analytics":
+                    builder.setAnalyticsEnabled("true".equalsIgnoreCase(val));
+                    break;
+                case CONFIG_PREFIX + "notification_small_icon":
+                    if (snapshot.notificationIconId != 0) {
+                        builder.setNotificationCustomizationOptions(
+                            NotificationCustomizationOptions.create(
+                                snapshot.notificationIconId));
+                    }
+                    break;
+                case CONFIG_PREFIX + "tenant_specific_endpoint":
+                    builder.setMarketingCloudServerUrl(val);
+                    break;
+                case CONFIG_PREFIX + "delay_registration_until_contact_key_is_set":
+                    builder.setDelayRegistrationUntilContactKeyIsSet(
+                        "true".equalsIgnoreCase(val));
+                    break;
+                case CONFIG_PREFIX + "location":
+                    builder.setGeofencingEnabled("true".equalsIgnoreCase(val));
+                    break;
+                default:
+                    break;
+            }
         }
 
+        MCPluginConfig.set(parsePluginConfig(snapshot));
+
         if (!senderIdSet) {
+            MCStartupTimeline.begin(MCStartupTimeline.SENDER_ID_LOOKUP);
             try {
                 builder.setSenderId(FirebaseApp.getInstance().getOptions().getGcmSenderId());
             } catch (Exception e) {
                 Log.e(TAG,
                     "Unable to retrieve sender id.  Push messages will not work for Marketing Cloud.",
                     e);
+            } finally {
+                MCStartupTimeline.end(MCStartupTimeline.SENDER_ID_LOOKUP);
             }
         }
 
         return builder;
     }
+
+    @NonNull
+    static MCPluginConfig parsePluginConfig(MCConfigSnapshot snapshot) {
+        MCPluginConfig pluginConfig = new MCPluginConfig();
+        for (Map.Entry<String, String> preference : snapshot.preferences.entrySet()) {
+            String key = preference.getKey();
+            String val = preference.getValue();
+
+            switch (key) {
+                case CONFIG_PREFIX + "registration_flush_window_ms":
+                    pluginConfig.registrationFlushWindowMs =
+                        Math.max(0, MCPluginConfig.parseLong(key, val, 0));
+                    break;
+                case CONFIG_PREFIX + "sdk_ready_timeout_ms":
+                    pluginConfig.sdkReadyTimeoutMs =
+                        Math.max(0, MCPluginConfig.parseLong(key, val, 0));
+                    break;
+                case CONFIG_PREFIX + "executor_read_threads":
+                    pluginConfig.readThreads = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.readThreads);
+                    break;
+                case CONFIG_PREFIX + "executor_read_queue_size":
+                    pluginConfig.readQueueSize = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.readQueueSize);
+                    break;
+                case CONFIG_PREFIX + "executor_write_threads":
+                    pluginConfig.writeThreads = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.writeThreads);
+                    break;
+                case CONFIG_PREFIX + "executor_write_queue_size":
+                    pluginConfig.writeQueueSize = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.writeQueueSize);
+                    break;
+                case CONFIG_PREFIX + "event_buffer_capacity":
+                    pluginConfig.eventBufferCapacity = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.eventBufferCapacity);
+                    break;
+                case CONFIG_PREFIX + "event_buffer_drop_policy":
+                    pluginConfig.eventBufferDropNewest = "drop_newest".equalsIgnoreCase(val);
+                    break;
+                case CONFIG_PREFIX + "event_batch_latency_ms":
+                    pluginConfig.eventBatchLatencyMs =
+                        Math.max(0, MCPluginConfig.parseLong(key, val, 0));
+                    break;
+                case CONFIG_PREFIX + "event_batch_max_size":
+                    pluginConfig.eventBatchMaxSize = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.eventBatchMaxSize);
+                    break;
+                case CONFIG_PREFIX + "event_batch_max_in_flight":
+                    pluginConfig.eventBatchMaxInFlight = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.eventBatchMaxInFlight);
+                    break;
+                case CONFIG_PREFIX + "registration_history_window":
+                    pluginConfig.registrationHistoryWindow = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.registrationHistoryWindow);
+                    break;
+                case CONFIG_PREFIX + "sdk_state_max_age_ms":
+                    pluginConfig.sdkStateMaxAgeMs = Math.max(0, MCPluginConfig.parseLong(
+                        key, val, pluginConfig.sdkStateMaxAgeMs));
+                    break;
+                case CONFIG_PREFIX + "log_sink_level":
+                    pluginConfig.logSinkLevel = MCLogSink.parseLevel(val, MCLogSink.OFF);
+                    break;
+                case CONFIG_PREFIX + "log_buffer_capacity":
+                    pluginConfig.logBufferCapacity = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.logBufferCapacity);
+                    break;
+                case CONFIG_PREFIX + "log_flush_interval_ms":
+                    pluginConfig.logFlushIntervalMs = Math.max(0, MCPluginConfig.parseLong(
+                        key, val, pluginConfig.logFlushIntervalMs));
+                    break;
+                case CONFIG_PREFIX + "log_file_max_bytes":
+                    pluginConfig.logFileMaxBytes = MCPluginConfig.parsePositiveInt(
+                        key, val, (int) pluginConfig.logFileMaxBytes);
+                    break;
+                case CONFIG_PREFIX + "log_file_count":
+                    pluginConfig.logFileCount = MCPluginConfig.parsePositiveInt(
+                        key, val, pluginConfig.logFileCount);
+                    break;
+                case CONFIG_PREFIX + "region_event_debounce_ms":
+                    pluginConfig.regionEventDebounceMs = Math.max(0, MCPluginConfig.parseLong(
+                        key, val, pluginConfig.regionEventDebounceMs));
+                    break;
+                case CONFIG_PREFIX + "region_event_min_interval_ms":
+                    pluginConfig.regionEventMinIntervalMs = Math.max(0, MCPluginConfig.parseLong(
+                        key, val, pluginConfig.regionEventMinIntervalMs));
+                    break;
+                case CONFIG_PREFIX + "inbox_page_size":
+                    pluginConfig.inboxPageSize = Math.min(MCInboxCache.MAX_PAGE_SIZE,
+                        MCPluginConfig.parsePositiveInt(key, val, pluginConfig.inboxPageSize));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return pluginConfig;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds SDK actions that arrive before the SDK is ready.  A single
+ * {@link MarketingCloudSdk#requestSdk} listener is registered for all of them and, once the SDK
+ * is ready, the held actions are dispatched to the plugin's executor in arrival order, so writes
+ * keep their per-key order.  Actions that arrive while the queue is draining are appended to it so
+ * they cannot overtake earlier ones.
+ */
+class MCSdkGate implements MarketingCloudSdk.WhenReadyListener {
+    private static final int WAITING = 0;
+    private static final int DRAINING = 1;
+    private static final int OPEN = 2;
+
+    private final MCCordovaPlugin plugin;
+    private final long maxWaitMs;
+    private final Handler handler;
+    private final Object lock = new Object();
+    private final ArrayDeque<PendingCall> pending = new ArrayDeque<>();
+
+    private volatile boolean open = false;
+    private int state = WAITING;
+    private boolean sdkRequested = false;
+    private boolean timedOut = false;
+
+    private long heldCount = 0;
+    private long drainedCount = 0;
+    private long timeoutCount = 0;
+    private int maxPending = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+
+    private final Runnable requestSdkTask = new Runnable() {
+        @Override
+        public void run() {
+            if (MarketingCloudSdk.isReady() || MarketingCloudSdk.isInitializing()) {
+                MarketingCloudSdk.requestSdk(MCSdkGate.this);
+            } else {
+                // A deferred init found no usable config.
+                failPending("MarketingCloudSdk#init has not been called");
+            }
+        }
+    };
+
+    private final Runnable timeoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            expire();
+        }
+    };
+
+    MCSdkGate(MCCordovaPlugin plugin, long maxWaitMs) {
+        this(plugin, maxWaitMs, new Handler(Looper.getMainLooper()));
+    }
+
+    MCSdkGate(MCCordovaPlugin plugin, long maxWaitMs, Handler handler) {
+        this.plugin = plugin;
+        this.maxWaitMs = maxWaitMs;
+        this.handler = handler;
+    }
+
+    /**
+     * Holds the action until the SDK is ready, or fails it if the SDK cannot become ready.
+     *
+     * @return false if the SDK is ready and the caller should run the action itself.
+     */
+    boolean hold(MCActionRegistry.Action entry, JSONArray args, CallbackContext callbackContext) {
+        if (open) {
+            return false;
+        }
+
+        boolean requestSdk = false;
+        synchronized (lock) {
+            if (state == OPEN) {
+                return false;
+            }
+            if (state == WAITING && pending.isEmpty()) {
+                if (MarketingCloudSdk.isReady()) {
+                    state = OPEN;
+                    open = true;
+                    return false;
+                }
+                if (!MarketingCloudSdk.isInitializing() && !MCSdkInitializer.isPending()) {
+                    entry.metrics().recordError();
+                    callbackContext.error("MarketingCloudSdk#init has not been called");
+                    return true;
+                }
+            }
+            if (timedOut) {
+                entry.metrics().recordError();
+                callbackContext.error(timeoutMessage());
+                return true;
+            }
+
+            pending.add(new PendingCall(entry, args, callbackContext, System.nanoTime()));
+            heldCount++;
+            maxPending = Math.max(maxPending, pending.size());
+            if (!sdkRequested) {
+                sdkRequested = true;
+                requestSdk = true;
+            }
+            if (maxWaitMs > 0 && state == WAITING && pending.size() == 1) {
+                handler.postDelayed(timeoutCheck, maxWaitMs);
+            }
+        }
+
+        if (requestSdk) {
+            // A lazy init is started by the first call that needs the SDK.
+            MCSdkInitializer.startWorker();
+            MCSdkInitializer.runWhenStarted(requestSdkTask);
+        }
+        return true;
+    }
+
+    @Override
+    public void ready(@NonNull MarketingCloudSdk sdk) {
+        MCStartupTimeline.mark(MCStartupTimeline.SDK_READY);
+        synchronized (lock) {
+            state = DRAINING;
+            timedOut = false;
+        }
+        handler.removeCallbacks(timeoutCheck);
+        // Dispatching only queues the calls so draining on the ready callback's thread is cheap.
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            PendingCall call;
+            synchronized (lock) {
+                call = pending.poll();
+                if (call == null) {
+                    state = OPEN;
+                    open = true;
+                    return;
+                }
+                long waitNanos = System.nanoTime() - call.heldAtNanos;
+                totalWaitNanos += waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                drainedCount++;
+                call.entry.metrics().gateWait.record(waitNanos);
+            }
+            plugin.dispatchHeld(call.entry, call.args, call.callbackContext);
+        }
+    }
+
+    private void expire() {
+        List<PendingCall> expired = new ArrayList<>();
+        synchronized (lock) {
+            if (state != WAITING) {
+                return;
+            }
+            long now = System.nanoTime();
+            long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            PendingCall head;
+            while ((head = pending.peek()) != null && now - head.heldAtNanos >= maxWaitNanos) {
+                expired.add(pending.poll());
+            }
+            if (!expired.isEmpty()) {
+                // Calls made from now until the SDK is ready fail immediately.
+                timedOut = true;
+                timeoutCount += expired.size();
+            }
+            if (head != null) {
+                handler.postDelayed(timeoutCheck,
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos - (now - head.heldAtNanos)) + 1);
+            }
+        }
+        for (PendingCall call : expired) {
+            call.entry.metrics().recordError();
+            call.callbackContext.error(timeoutMessage());
+        }
+    }
+
+    private void failPending(String message) {
+        List<PendingCall> failed;
+        synchronized (lock) {
+            failed = new ArrayList<>(pending);
+            pending.clear();
+            sdkRequested = false;
+        }
+        handler.removeCallbacks(timeoutCheck);
+        for (PendingCall call : failed) {
+            call.entry.metrics().recordError();
+            call.callbackContext.error(message);
+        }
+    }
+
+    private String timeoutMessage() {
+        return "MarketingCloudSdk was not ready within " + maxWaitMs + "ms";
+    }
+
+    JSONObject stats() throws JSONException {
+        synchronized (lock) {
+            return new JSONObject()
+                .put("state", state == OPEN ? "open" : state == DRAINING ? "draining" : "waiting")
+                .put("pending", pending.size())
+                .put("maxPending", maxPending)
+                .put("timeoutMs", maxWaitMs)
+                .put("held", heldCount)
+                .put("drained", drainedCount)
+                .put("timedOut", timeoutCount)
+                .put("averageWaitMs", drainedCount == 0
+                    ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / drainedCount))
+                .put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        }
+    }
+
+    private static final class PendingCall {
+        final MCActionRegistry.Action entry;
+        final JSONArray args;
+        final CallbackContext callbackContext;
+        final long heldAtNanos;
+
+        PendingCall(MCActionRegistry.Action entry, JSONArray args,
+            CallbackContext callbackContext, long heldAtNanos) {
+            this.entry = entry;
+            this.args = args;
+            this.callbackContext = callbackContext;
+            this.heldAtNanos = heldAtNanos;
+        }
+    }
+}
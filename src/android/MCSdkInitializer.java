@@ -0,0 +1,286 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.salesforce.marketingcloud.InitializationStatus;
+import com.salesforce.marketingcloud.MarketingCloudConfig;
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static com.salesforce.marketingcloud.cordova.MCCordovaPlugin.TAG;
+
+/**
+ * Parses config.xml and calls {@link MarketingCloudSdk#init} according to the init mode set with
+ * the {@code MC_INIT_MODE} plugin variable:
+ * <ul>
+ * <li>{@code eager} initializes on the main thread while the app process starts.</li>
+ * <li>{@code background} starts a worker thread to initialize so app start is not delayed.</li>
+ * <li>{@code lazy} waits for the first plugin call that needs the SDK, or for
+ * {@link MCInitProvider#ensureInitialized()}.</li>
+ * </ul>
+ * Until a deferred initialization has called {@link MarketingCloudSdk#init} it is reported as
+ * pending so plugin calls wait for it rather than fail.
+ */
+final class MCSdkInitializer {
+    static final String INIT_MODE_KEY = "com.salesforce.marketingcloud.cordova.init_mode";
+    static final String MODE_EAGER = "eager";
+    static final String MODE_BACKGROUND = "background";
+    static final String MODE_LAZY = "lazy";
+
+    private static final Object lock = new Object();
+    // Held for the whole of initialization; lock only guards the state below.
+    private static final Object initLock = new Object();
+    private static final List<Runnable> whenStarted = new ArrayList<>();
+    private static Context appContext;
+    private static MarketingCloudSdk.InitializationListener listener;
+    private static boolean deferred = false;
+    private static boolean workerStarted = false;
+    private static boolean started = false;
+    @Nullable private static volatile String lastStatus;
+    // Counted down once a deferred init mode has read the config on a background thread.
+    @Nullable private static volatile CountDownLatch configLoaded;
+
+    private MCSdkInitializer() {}
+
+    @NonNull
+    static String readMode(@NonNull Context context) {
+        try {
+            ApplicationInfo info = context.getPackageManager().getApplicationInfo(
+                context.getPackageName(), PackageManager.GET_META_DATA);
+            String mode = info.metaData != null ? info.metaData.getString(INIT_MODE_KEY) : null;
+            if (MODE_BACKGROUND.equals(mode) || MODE_LAZY.equals(mode)) {
+                return mode;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to read the SDK init mode. Initializing eagerly.", e);
+        }
+        return MODE_EAGER;
+    }
+
+    static void start(@NonNull Context context, @NonNull String mode,
+        @NonNull MarketingCloudSdk.InitializationListener initListener) {
+        synchronized (lock) {
+            appContext = context.getApplicationContext();
+            listener = initListener;
+            deferred = !MODE_EAGER.equals(mode);
+            configLoaded = deferred ? new CountDownLatch(1) : null;
+        }
+        switch (mode) {
+            case MODE_BACKGROUND:
+                // The worker reads the config before initializing.
+                startWorker();
+                break;
+            case MODE_LAZY:
+                // Initialization is started by the first plugin call that needs the SDK, but the
+                // plugin's settings are read now so they are ready when the plugin needs them.
+                startConfigLoader();
+                break;
+            default:
+                initialize();
+                break;
+        }
+    }
+
+    /**
+     * Waits until a deferred init mode has published the plugin's settings from config.xml, so
+     * the objects the plugin creates are built with them.  The config is read on a background
+     * thread started with the process; this only blocks if the plugin needs it before then.
+     */
+    static void awaitConfig() {
+        CountDownLatch latch = configLoaded;
+        if (latch == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void startConfigLoader() {
+        final Context context;
+        synchronized (lock) {
+            context = appContext;
+        }
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MCSdkConfig.loadConfig(context);
+                } finally {
+                    configLoadFinished();
+                }
+            }
+        }, "MCCordovaConfig");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private static void configLoadFinished() {
+        CountDownLatch latch = configLoaded;
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * @return true while a deferred initialization has not yet called
+     * {@link MarketingCloudSdk#init}.
+     */
+    static boolean isPending() {
+        synchronized (lock) {
+            return deferred && !started;
+        }
+    }
+
+    /**
+     * Starts a deferred initialization on a worker thread if it has not been started yet.
+     */
+    static void startWorker() {
+        synchronized (lock) {
+            if (!deferred || started || workerStarted) {
+                return;
+            }
+            workerStarted = true;
+        }
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                initialize();
+            }
+        }, "MCCordovaInit");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs {@code task} once {@link MarketingCloudSdk#init} has been called, or immediately if it
+     * already has been or initialization is not deferred.
+     */
+    static void runWhenStarted(@NonNull Runnable task) {
+        synchronized (lock) {
+            if (deferred && !started) {
+                whenStarted.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Initializes the SDK on the calling thread unless that has already happened.  Blocks while
+     * another thread is initializing it.
+     */
+    static void initialize() {
+        List<Runnable> tasks;
+        synchronized (initLock) {
+            Context context;
+            MarketingCloudSdk.InitializationListener initListener;
+            synchronized (lock) {
+                if (started || appContext == null) {
+                    return;
+                }
+                context = appContext;
+                initListener = listener;
+            }
+            MarketingCloudConfig.Builder builder;
+            try {
+                builder = MCSdkConfig.prepareConfigBuilder(context);
+            } finally {
+                configLoadFinished();
+            }
+            if (context.getFilesDir() != null) {
+                MCLogSink.startFromConfig(context.getFilesDir());
+            }
+            if (builder != null) {
+                builder.setUrlHandler(MCSdkListener.INSTANCE);
+                MCStartupTimeline.begin(MCStartupTimeline.SDK_INIT);
+                try {
+                    MarketingCloudSdk.init(context, builder.build(context), initListener);
+                } finally {
+                    MCStartupTimeline.end(MCStartupTimeline.SDK_INIT);
+                }
+            }
+            synchronized (lock) {
+                started = true;
+                tasks = new ArrayList<>(whenStarted);
+                whenStarted.clear();
+            }
+        }
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    static void recordStatus(@NonNull InitializationStatus status) {
+        InitializationStatus.Status value = status.status();
+        lastStatus = value != null ? value.name() : null;
+    }
+
+    /**
+     * @return the name of the status the SDK reported when it finished initializing, or null if
+     * it has not yet.
+     */
+    @Nullable
+    static String lastStatus() {
+        return lastStatus;
+    }
+
+    // Visible for testing.
+    static void reset() {
+        lastStatus = null;
+        MCSdkConfig.resetLoadedConfig();
+        MCLogSink.reset();
+        synchronized (lock) {
+            whenStarted.clear();
+            appContext = null;
+            listener = null;
+            deferred = false;
+            workerStarted = false;
+            started = false;
+            configLoaded = null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+import com.salesforce.marketingcloud.messages.RegionMessageManager;
+import com.salesforce.marketingcloud.messages.push.PushMessageManager;
+import com.salesforce.marketingcloud.registration.RegistrationManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the SDK's state one named section at a time and keeps each section's JSON text between
+ * calls.  A cached section is served until it is older than the caller's maximum age or until what
+ * it was built from changes: the registration and push sections follow the plugin's
+ * {@link MCRegistrationCache} generations, the location section is invalidated by the geofence
+ * actions, and the full {@code sdk} dump from {@link MarketingCloudSdk#getSdkState()} is only
+ * rebuilt once it is too old.  Each section reports its size and how long it took to build.
+ */
+final class MCSdkStateSnapshot {
+    static final String REGISTRATION = "registration";
+    static final String PUSH = "push";
+    static final String LOCATION = "location";
+    static final String INITIALIZATION = "initialization";
+    static final String SDK = "sdk";
+
+    private abstract static class Section {
+        /**
+         * @return a value that changes whenever the section would build differently, as far as
+         * the plugin can tell.
+         */
+        long stamp(@NonNull MCCordovaPlugin plugin) {
+            return 0;
+        }
+
+        abstract String build(@NonNull MarketingCloudSdk sdk) throws JSONException;
+    }
+
+    private static final class Cached {
+        final String json;
+        final long stamp;
+        final long builtAtMs;
+        final long buildUs;
+
+        Cached(String json, long stamp, long builtAtMs, long buildUs) {
+            this.json = json;
+            this.stamp = stamp;
+            this.builtAtMs = builtAtMs;
+            this.buildUs = buildUs;
+        }
+    }
+
+    private static final Map<String, Section> SECTIONS = new LinkedHashMap<>();
+
+    static {
+        SECTIONS.put(REGISTRATION, new Section() {
+            @Override
+            long stamp(@NonNull MCCordovaPlugin plugin) {
+                return plugin.registrationCache.generation(MCRegistrationCache.ATTRIBUTES)
+                    + plugin.registrationCache.generation(MCRegistrationCache.TAGS)
+                    + plugin.registrationCache.generation(MCRegistrationCache.CONTACT_KEY);
+            }
+
+            @Override
+            String build(@NonNull MarketingCloudSdk sdk) throws JSONException {
+                RegistrationManager registrationManager = sdk.getRegistrationManager();
+                return new JSONObject()
+                    .put("contactKey", registrationManager.getContactKey())
+                    .put("attributes",
+                        MCBuiltInActions.fromMap(registrationManager.getAttributes()))
+                    .put("tags", MCBuiltInActions.fromCollection(registrationManager.getTags()))
+                    .toString();
+            }
+        });
+        SECTIONS.put(PUSH, new Section() {
+            @Override
+            long stamp(@NonNull MCCordovaPlugin plugin) {
+                return plugin.registrationCache.generation(MCRegistrationCache.PUSH_ENABLED)
+                    + plugin.registrationCache.generation(MCRegistrationCache.SYSTEM_TOKEN);
+            }
+
+            @Override
+            String build(@NonNull MarketingCloudSdk sdk) throws JSONException {
+                PushMessageManager pushMessageManager = sdk.getPushMessageManager();
+                return new JSONObject()
+                    .put("enabled", pushMessageManager.isPushEnabled())
+                    .put("token", pushMessageManager.getPushToken())
+                    .toString();
+            }
+        });
+        SECTIONS.put(LOCATION, new Section() {
+            @Override
+            String build(@NonNull MarketingCloudSdk sdk) throws JSONException {
+                RegionMessageManager regionMessageManager = sdk.getRegionMessageManager();
+                return new JSONObject()
+                    .put("geofenceEnabled", regionMessageManager.isGeofenceMessagingEnabled())
+                    .put("proximityEnabled", regionMessageManager.isProximityMessagingEnabled())
+                    .toString();
+            }
+        });
+        SECTIONS.put(INITIALIZATION, new Section() {
+            @Override
+            long stamp(@NonNull MCCordovaPlugin plugin) {
+                String status = MCSdkInitializer.lastStatus();
+                return (MarketingCloudSdk.isReady() ? 1 : 0)
+                    + (MarketingCloudSdk.isInitializing() ? 2 : 0)
+                    + (status != null ? 4 + status.hashCode() * 8L : 0);
+            }
+
+            @Override
+            String build(@NonNull MarketingCloudSdk sdk) throws JSONException {
+                return new JSONObject()
+                    .put("ready", MarketingCloudSdk.isReady())
+                    .put("initializing", MarketingCloudSdk.isInitializing())
+                    .put("status", MCSdkInitializer.lastStatus())
+                    .toString();
+            }
+        });
+        SECTIONS.put(SDK, new Section() {
+            @Override
+            String build(@NonNull MarketingCloudSdk sdk) {
+                return String.valueOf(sdk.getSdkState());
+            }
+        });
+    }
+
+    private final Map<String, Cached> cache = new HashMap<>();
+
+    static Set<String> sectionNames() {
+        return SECTIONS.keySet();
+    }
+
+    /**
+     * @return {@code {sections: {name: state}, stats: {name: {cached, size, buildUs, ageMs}}}} as
+     * JSON text, where size is the section's length in characters.
+     */
+    @NonNull
+    synchronized String snapshot(@NonNull MCCordovaPlugin plugin, @NonNull MarketingCloudSdk sdk,
+        @NonNull Collection<String> names, long maxAgeMs) throws JSONException {
+        for (String name : names) {
+            if (!SECTIONS.containsKey(name)) {
+                throw new JSONException("Unknown SDK state section: " + name);
+            }
+        }
+        StringBuilder sections = new StringBuilder("{");
+        JSONObject stats = new JSONObject();
+        long nowMs = SystemClock.elapsedRealtime();
+        for (String name : names) {
+            Section section = SECTIONS.get(name);
+            if (stats.has(name)) {
+                continue;
+            }
+            Cached cached = cache.get(name);
+            boolean hit = cached != null
+                && cached.stamp == section.stamp(plugin)
+                && nowMs - cached.builtAtMs < maxAgeMs;
+            if (!hit) {
+                cached = build(plugin, sdk, name, section);
+            }
+            if (sections.length() > 1) {
+                sections.append(',');
+            }
+            sections.append(JSONObject.quote(name)).append(':').append(cached.json);
+            stats.put(name, new JSONObject()
+                .put("cached", hit)
+                .put("size", cached.json.length())
+                .put("buildUs", cached.buildUs)
+                .put("ageMs", hit ? nowMs - cached.builtAtMs : 0));
+        }
+        return "{\"sections\":" + sections.append('}') + ",\"stats\":" + stats + "}";
+    }
+
+    /**
+     * @return the JSON text of one section, built unless a cached copy younger than
+     * {@code maxAgeMs} is still current.
+     */
+    @NonNull
+    synchronized String section(@NonNull MCCordovaPlugin plugin, @NonNull MarketingCloudSdk sdk,
+        @NonNull String name, long maxAgeMs) throws JSONException {
+        Section section = SECTIONS.get(name);
+        Cached cached = cache.get(name);
+        if (cached == null
+            || cached.stamp != section.stamp(plugin)
+            || SystemClock.elapsedRealtime() - cached.builtAtMs >= maxAgeMs) {
+            cached = build(plugin, sdk, name, section);
+        }
+        return cached.json;
+    }
+
+    synchronized void invalidate(@NonNull String name) {
+        cache.remove(name);
+    }
+
+    private Cached build(MCCordovaPlugin plugin, MarketingCloudSdk sdk, String name,
+        Section section) throws JSONException {
+        // Read before building so a change made while building is seen by the next call.
+        long stamp = section.stamp(plugin);
+        long startNanos = System.nanoTime();
+        String json = section.build(sdk);
+        Cached cached = new Cached(json, stamp, SystemClock.elapsedRealtime(),
+            (System.nanoTime() - startNanos) / 1000);
+        cache.put(name, cached);
+        return cached;
+    }
+}
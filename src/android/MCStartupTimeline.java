@@ -0,0 +1,181 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records when each step of the plugin's startup happened so its share of app start can be
+ * measured in the field.  Times come from {@link SystemClock#elapsedRealtimeNanos()} and are
+ * reported relative to process start where the platform provides it.  Sections are also emitted
+ * as {@link Trace} sections, prefixed with {@code MCCordova:}, so they show up in Perfetto and
+ * systrace captures.  Only the first occurrence of each phase is kept.
+ */
+final class MCStartupTimeline {
+    static final String INIT_PROVIDER = "initProvider";
+    static final String PREPARE_CONFIG = "prepareConfig";
+    static final String SENDER_ID_LOOKUP = "senderIdLookup";
+    static final String SDK_INIT = "sdkInit";
+    static final String INIT_COMPLETE = "initComplete";
+    static final String SDK_READY = "sdkReady";
+    static final String PLUGIN_INITIALIZE = "pluginInitialize";
+    static final String FIRST_ACTION = "firstAction";
+
+    private static final String TRACE_PREFIX = "MCCordova:";
+    private static final Map<String, Phase> phases = new LinkedHashMap<>();
+    private static volatile boolean firstActionRecorded = false;
+
+    private MCStartupTimeline() {}
+
+    /**
+     * Starts a section.  Must be followed by {@link #end(String)} on the same thread.
+     */
+    static void begin(@NonNull String name) {
+        Trace.beginSection(TRACE_PREFIX + name);
+        long now = SystemClock.elapsedRealtimeNanos();
+        synchronized (phases) {
+            if (!phases.containsKey(name)) {
+                phases.put(name, new Phase(name, now));
+            }
+        }
+    }
+
+    static void end(@NonNull String name) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        synchronized (phases) {
+            Phase phase = phases.get(name);
+            if (phase != null && phase.endNanos == 0) {
+                phase.endNanos = now;
+            }
+        }
+        Trace.endSection();
+    }
+
+    /**
+     * Records a point in time rather than a section.
+     */
+    static void mark(@NonNull String name) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        synchronized (phases) {
+            if (!phases.containsKey(name)) {
+                Phase phase = new Phase(name, now);
+                phase.endNanos = now;
+                phase.instant = true;
+                phases.put(name, phase);
+            }
+        }
+    }
+
+    /**
+     * Records the first plugin action.  Cheap enough to call for every action.
+     */
+    static void markFirstAction() {
+        if (!firstActionRecorded) {
+            firstActionRecorded = true;
+            mark(FIRST_ACTION);
+        }
+    }
+
+    @NonNull
+    static JSONObject toJson() throws JSONException {
+        List<Phase> snapshot;
+        synchronized (phases) {
+            snapshot = new ArrayList<>(phases.size());
+            for (Phase phase : phases.values()) {
+                snapshot.add(phase.copy());
+            }
+        }
+
+        long originNanos;
+        String origin;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            originNanos = Process.getStartElapsedRealtime() * 1_000_000L;
+            origin = "processStart";
+        } else {
+            originNanos = snapshot.isEmpty() ? 0 : snapshot.get(0).startNanos;
+            origin = "firstPhase";
+        }
+
+        JSONArray phaseArray = new JSONArray();
+        for (Phase phase : snapshot) {
+            JSONObject json = new JSONObject()
+                .put("name", phase.name)
+                .put("startMs", toMillis(phase.startNanos - originNanos));
+            if (!phase.instant) {
+                // A null duration means the section has not ended.
+                json.put("durationMs", phase.endNanos == 0
+                    ? JSONObject.NULL : toMillis(phase.endNanos - phase.startNanos));
+            }
+            phaseArray.put(json);
+        }
+        return new JSONObject().put("origin", origin).put("phases", phaseArray);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    // Visible for testing.
+    static void reset() {
+        synchronized (phases) {
+            phases.clear();
+        }
+        firstActionRecorded = false;
+    }
+
+    private static final class Phase {
+        final String name;
+        final long startNanos;
+        long endNanos = 0;
+        boolean instant = false;
+
+        Phase(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        Phase copy() {
+            Phase copy = new Phase(name, startNanos);
+            copy.endNanos = endNanos;
+            copy.instant = instant;
+            return copy;
+        }
+    }
+}
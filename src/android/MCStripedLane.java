@@ -0,0 +1,257 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks in per-key order on a shared pool.  Each key hashes to a stripe, a serial queue that
+ * has at most one task on the pool at a time.  A task with several keys is queued on each of its
+ * stripes and runs on whichever thread reaches it last, so no thread is parked while a stripe
+ * waits.  Tasks with no stripe in common run concurrently.
+ */
+class MCStripedLane {
+    static final int DEFAULT_STRIPES = 16;
+
+    private final Executor pool;
+    private final Stripe[] stripes;
+    private final int maxPending;
+    private final Object submitLock = new Object();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    MCStripedLane(@NonNull Executor pool, int stripeCount, int maxPending) {
+        this.pool = pool;
+        this.maxPending = maxPending;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @param keys the keys the task writes, or {@link MCActionRegistry#ALL_KEYS} to order it
+     * with every other task.
+     * @throws RejectedExecutionException if {@code maxPending} tasks are already queued or running,
+     * or the pool rejected the task.  The task is then not run.
+     */
+    void execute(@NonNull String[] keys, @NonNull Runnable task) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException();
+        }
+
+        Stripe[] targets = stripesFor(keys);
+        Step step = new Step(task, targets);
+        if (targets.length == 1) {
+            enqueue(step);
+            return;
+        }
+        // Multi-stripe tasks are queued under one lock so any two of them are in the same order on
+        // every stripe they share, otherwise each could wait for the other.
+        synchronized (submitLock) {
+            enqueue(step);
+        }
+    }
+
+    private void enqueue(Step step) {
+        for (int i = 0; i < step.stripes.length; i++) {
+            try {
+                step.stripes[i].enqueue(step);
+            } catch (RejectedExecutionException e) {
+                pending.decrementAndGet();
+                step.cancel(i);
+                throw e;
+            }
+        }
+    }
+
+    int pending() {
+        return pending.get();
+    }
+
+    long completed() {
+        return completed.get();
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    private Stripe[] stripesFor(String[] keys) {
+        for (String key : keys) {
+            if (MCActionRegistry.ALL_KEYS.equals(key)) {
+                return stripes;
+            }
+        }
+        if (keys.length == 1) {
+            return new Stripe[] {stripes[indexOf(keys[0])]};
+        }
+        boolean[] seen = new boolean[stripes.length];
+        int count = 0;
+        for (String key : keys) {
+            int index = indexOf(key);
+            if (!seen[index]) {
+                seen[index] = true;
+                count++;
+            }
+        }
+        Stripe[] targets = new Stripe[count];
+        for (int i = 0, j = 0; i < seen.length; i++) {
+            if (seen[i]) {
+                targets[j++] = stripes[i];
+            }
+        }
+        return targets;
+    }
+
+    private int indexOf(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    private final class Step {
+        final Runnable task;
+        final Stripe[] stripes;
+        final AtomicInteger waiting;
+        // Set when the pool rejected the step; it is then only queued on its first queuedOn
+        // stripes, and is removed from them without running.
+        private volatile boolean cancelled = false;
+        private volatile int queuedOn;
+
+        Step(Runnable task, Stripe[] stripes) {
+            this.task = task;
+            this.stripes = stripes;
+            this.waiting = new AtomicInteger(stripes.length);
+            this.queuedOn = stripes.length;
+        }
+
+        /**
+         * Called when this step reaches the head of one of its stripes.
+         */
+        void arrive() {
+            if (waiting.decrementAndGet() != 0) {
+                // Another stripe still has earlier work; the last one to arrive runs the task.
+                return;
+            }
+            if (cancelled) {
+                advance(queuedOn);
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+                completed.incrementAndGet();
+                advance(stripes.length);
+            }
+        }
+
+        /**
+         * Called when the stripe at {@code index} rejected the step, which is queued on the
+         * stripes before it but never will be on that one or those after it.
+         */
+        void cancel(int index) {
+            queuedOn = index;
+            cancelled = true;
+            if (waiting.addAndGet(index - stripes.length) == 0) {
+                // Already at the head of every stripe it is queued on.
+                advance(index);
+            }
+        }
+
+        private void advance(int count) {
+            for (int i = 0; i < count; i++) {
+                stripes[i].advance();
+            }
+        }
+    }
+
+    private final class Stripe implements Runnable {
+        private final ArrayDeque<Step> queue = new ArrayDeque<>();
+        private boolean busy = false;
+
+        /**
+         * @throws RejectedExecutionException if the pool rejected this stripe, in which case
+         * {@code step} is no longer queued on it.
+         */
+        void enqueue(Step step) {
+            synchronized (this) {
+                queue.add(step);
+                if (busy) {
+                    return;
+                }
+                busy = true;
+            }
+            try {
+                pool.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Not busy, so the next task queued here tries the pool again rather than waiting
+                // behind a run that was never scheduled.
+                synchronized (this) {
+                    queue.removeLastOccurrence(step);
+                    busy = false;
+                }
+                throw e;
+            }
+        }
+
+        void advance() {
+            synchronized (this) {
+                queue.poll();
+                if (queue.isEmpty()) {
+                    busy = false;
+                    return;
+                }
+            }
+            try {
+                pool.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The pool was shut down; the next task queued here is rejected instead of waiting.
+                synchronized (this) {
+                    busy = false;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Step head;
+            synchronized (this) {
+                head = queue.peek();
+            }
+            head.arrive();
+        }
+    }
+}
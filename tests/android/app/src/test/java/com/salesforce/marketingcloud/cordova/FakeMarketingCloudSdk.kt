@@ -0,0 +1,218 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import com.salesforce.marketingcloud.messages.RegionMessageManager
+import com.salesforce.marketingcloud.messages.push.PushMessageManager
+import com.salesforce.marketingcloud.registration.Registration
+import com.salesforce.marketingcloud.registration.RegistrationManager
+import org.mockito.Mockito
+import org.mockito.Mockito.withSettings
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A thread-safe, in-memory stand-in for the SDK surfaces the plugin uses: registration with a
+ * working editor, push and geofence messaging.  Each manager is a stub-only mock whose answers read
+ * and write this fake's state, so methods the plugin never calls keep Mockito's default answers.
+ *
+ * Commits apply an editor's changes atomically and in commit order, and are recorded in
+ * [history] so tests can check the order writes reached the SDK in.
+ */
+class FakeMarketingCloudSdk(
+    /** How long every manager call blocks, to stand in for the SDK's disk and IPC work. */
+    @Volatile var latencyMs: Long = 0
+) {
+    private val lock = Any()
+    private var contactKey: String? = null
+    private val attributes = LinkedHashMap<String, String>()
+    private val tags = LinkedHashSet<String>()
+    private val history = ArrayList<String>()
+
+    @Volatile var pushEnabled = true
+    @Volatile var pushToken: String? = "fake-push-token"
+    @Volatile var geofenceEnabled = false
+
+    val commitCount = AtomicInteger()
+    val registrationListeners =
+            CopyOnWriteArraySet<RegistrationManager.RegistrationEventListener>()
+    val tokenRefreshListeners = CopyOnWriteArraySet<PushMessageManager.PushTokenRefreshListener>()
+
+    val registrationManager: RegistrationManager = stub(Answer<Any?> { invocation ->
+        pause()
+        when (invocation.method.name) {
+            "getContactKey" -> synchronized(lock) { contactKey }
+            "getAttributes" -> synchronized(lock) { LinkedHashMap(attributes) }
+            "getTags" -> synchronized(lock) { LinkedHashSet(tags) }
+            "edit" -> stub<RegistrationManager.Editor>(EditorAnswer())
+            "registerForRegistrationEvents" -> {
+                registrationListeners.add(invocation.getArgument(0))
+                null
+            }
+            "unregisterForRegistrationEvents" -> {
+                registrationListeners.remove(invocation.getArgument(0))
+                null
+            }
+            else -> Mockito.RETURNS_DEFAULTS.answer(invocation)
+        }
+    })
+
+    val pushMessageManager: PushMessageManager = stub(Answer<Any?> { invocation ->
+        pause()
+        when (invocation.method.name) {
+            "isPushEnabled" -> pushEnabled
+            "enablePush" -> {
+                pushEnabled = true
+                null
+            }
+            "disablePush" -> {
+                pushEnabled = false
+                null
+            }
+            "getPushToken" -> pushToken
+            "registerTokenRefreshListener" -> tokenRefreshListeners.add(invocation.getArgument(0))
+            "unregisterTokenRefreshListener" ->
+                tokenRefreshListeners.remove(invocation.getArgument(0))
+            else -> Mockito.RETURNS_DEFAULTS.answer(invocation)
+        }
+    })
+
+    val regionMessageManager: RegionMessageManager = stub(Answer<Any?> { invocation ->
+        pause()
+        when (invocation.method.name) {
+            "enableGeofenceMessaging" -> true.also { geofenceEnabled = true }
+            "disableGeofenceMessaging" -> {
+                geofenceEnabled = false
+                null
+            }
+            "isGeofenceMessagingEnabled" -> geofenceEnabled
+            else -> Mockito.RETURNS_DEFAULTS.answer(invocation)
+        }
+    })
+
+    val sdk: MarketingCloudSdk = stub(Answer<Any?> { invocation ->
+        when (invocation.method.name) {
+            "getRegistrationManager" -> registrationManager
+            "getPushMessageManager" -> pushMessageManager
+            "getRegionMessageManager" -> regionMessageManager
+            else -> Mockito.RETURNS_DEFAULTS.answer(invocation)
+        }
+    })
+
+    /** Makes this fake the ready SDK instance returned by [ShadowMarketingCloudSdk]. */
+    fun install() {
+        ShadowMarketingCloudSdk.setInstance(sdk)
+        ShadowMarketingCloudSdk.isReady(true)
+    }
+
+    fun contactKey(): String? = synchronized(lock) { contactKey }
+
+    fun attributes(): Map<String, String> = synchronized(lock) { LinkedHashMap(attributes) }
+
+    fun tags(): Set<String> = synchronized(lock) { LinkedHashSet(tags) }
+
+    /** Every committed change in commit order, such as `setAttribute:key=value`. */
+    fun history(): List<String> = synchronized(lock) { ArrayList(history) }
+
+    /** Delivers a registration to the listeners, as the SDK does after syncing with the server. */
+    fun sendRegistration(registration: Registration) {
+        registrationListeners.forEach { it.onRegistrationReceived(registration) }
+    }
+
+    /** Changes the push token and notifies the listeners. */
+    fun refreshToken(token: String) {
+        pushToken = token
+        tokenRefreshListeners.forEach { it.onTokenRefreshed(token) }
+    }
+
+    private fun pause() {
+        val latency = latencyMs
+        if (latency > 0) {
+            Thread.sleep(latency)
+        }
+    }
+
+    /** Stages an editor's changes until [RegistrationManager.Editor.commit]. */
+    private inner class EditorAnswer : Answer<Any?> {
+        private val changes = ArrayList<Pair<String, Any?>>()
+
+        override fun answer(invocation: InvocationOnMock): Any? {
+            val name = invocation.method.name
+            when (name) {
+                "commit" -> return commit()
+                "setContactKey", "clearAttribute", "addTag", "removeTag" ->
+                    changes.add(name to invocation.getArgument<String>(0))
+                "setAttribute" -> changes.add(name to
+                        (invocation.getArgument<String>(0) to invocation.getArgument<String>(1)))
+                "addTags", "removeTags" -> {
+                    val single = if (name == "addTags") "addTag" else "removeTag"
+                    invocation.arguments.forEach { argument ->
+                        when (argument) {
+                            is Array<*> -> argument.forEach { changes.add(single to it) }
+                            is Iterable<*> -> argument.forEach { changes.add(single to it) }
+                            else -> changes.add(single to argument)
+                        }
+                    }
+                }
+                else -> return Mockito.RETURNS_DEFAULTS.answer(invocation)
+            }
+            return invocation.mock
+        }
+
+        private fun commit(): Boolean {
+            pause()
+            synchronized(lock) {
+                for ((operation, value) in changes) {
+                    when (operation) {
+                        "setContactKey" -> contactKey = value as String
+                        "clearAttribute" -> attributes.remove(value as String)
+                        "addTag" -> tags.add(value as String)
+                        "removeTag" -> tags.remove(value as String)
+                        "setAttribute" -> (value as Pair<*, *>).let {
+                            attributes[it.first as String] = it.second as String
+                        }
+                    }
+                    history.add(if (value is Pair<*, *>) {
+                        "$operation:${value.first}=${value.second}"
+                    } else {
+                        "$operation:$value"
+                    })
+                }
+                changes.clear()
+                commitCount.incrementAndGet()
+            }
+            return true
+        }
+    }
+
+    private companion object {
+        inline fun <reified T> stub(answer: Answer<*>): T =
+                Mockito.mock(T::class.java, withSettings().stubOnly().defaultAnswer(answer))
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+class MCActionExecutorTest {
+
+    val config = MCPluginConfig().apply {
+        readThreads = 1
+        readQueueSize = 1
+        writeThreads = 1
+        writeQueueSize = 1
+    }
+    val executor = MCActionExecutor.create(config)
+
+    @After
+    fun tearDown() {
+        executor.shutdown()
+    }
+
+    @Test
+    fun execute_routesByLane() {
+        val readLane = mock<ExecutorService>()
+        val writePool = mock<ExecutorService>()
+        val laneExecutor = MCActionExecutor(readLane, writePool)
+        val read = Runnable {}
+
+        laneExecutor.executeRead(read)
+        laneExecutor.executeWrite(arrayOf("key"), Runnable {})
+
+        verify(readLane).execute(read)
+        verify(writePool).execute(any())
+    }
+
+    @Test
+    fun execute_writeBacklog_doesNotBlockReads() {
+        // GIVEN
+        val release = CountDownLatch(1)
+        val started = CountDownLatch(1)
+        executor.executeWrite(arrayOf("key"), Runnable {
+            started.countDown()
+            release.await()
+        })
+        started.await(5, TimeUnit.SECONDS)
+
+        // WHEN
+        val readRan = CountDownLatch(1)
+        executor.executeRead(Runnable { readRan.countDown() })
+
+        // THEN
+        assertThat(readRan.await(5, TimeUnit.SECONDS)).isTrue()
+        release.countDown()
+    }
+
+    @Test
+    fun execute_queueFull_rejectsAndCounts() {
+        // GIVEN
+        val release = CountDownLatch(1)
+        val started = CountDownLatch(1)
+        executor.executeWrite(arrayOf("key"), Runnable {
+            started.countDown()
+            release.await()
+        })
+        started.await(5, TimeUnit.SECONDS)
+
+        // WHEN
+        try {
+            executor.executeWrite(arrayOf("other"), Runnable {})
+            throw AssertionError("Expected RejectedExecutionException")
+        } catch (e: RejectedExecutionException) {
+            // Expected
+        }
+
+        // THEN
+        assertThat(executor.stats().getJSONObject("write").getLong("rejected")).isEqualTo(1)
+        release.countDown()
+    }
+}
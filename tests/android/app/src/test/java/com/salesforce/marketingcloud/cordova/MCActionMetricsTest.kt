@@ -0,0 +1,181 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.whenever
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import com.salesforce.marketingcloud.registration.RegistrationManager
+import org.apache.cordova.CallbackContext
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCActionMetricsTest {
+
+    val plugin = MCCordovaPlugin()
+    val testExecutorService = mock<ExecutorService> {
+        on { execute(any()) } doAnswer { (it.arguments[0] as? Runnable)?.run() }
+    }
+    val sdk = mock<MarketingCloudSdk>()
+    val registrationManager = mock<RegistrationManager>()
+    val registrationEditor = mock<RegistrationManager.Editor>()
+
+    @Before
+    fun setup() {
+        plugin.actionExecutor = MCActionExecutor(testExecutorService, testExecutorService)
+        whenever(registrationEditor.setAttribute(any(), any())).thenReturn(registrationEditor)
+        whenever(registrationManager.edit()).thenReturn(registrationEditor)
+        whenever(sdk.registrationManager).thenReturn(registrationManager)
+        ShadowMarketingCloudSdk.setInstance(sdk)
+        MCPluginConfig.set(MCPluginConfig())
+        MCActionMetrics.reset()
+    }
+
+    @After
+    fun tearDown() {
+        ShadowMarketingCloudSdk.reset()
+        MCActionMetrics.reset()
+    }
+
+    @Test
+    fun bucketOf_powersOfTwoMicros() {
+        assertThat(MCActionMetrics.Histogram.bucketOf(0)).isEqualTo(0)
+        assertThat(MCActionMetrics.Histogram.bucketOf(999)).isEqualTo(0)
+        assertThat(MCActionMetrics.Histogram.bucketOf(1_000)).isEqualTo(1)
+        assertThat(MCActionMetrics.Histogram.bucketOf(1_999)).isEqualTo(1)
+        assertThat(MCActionMetrics.Histogram.bucketOf(2_000)).isEqualTo(2)
+        assertThat(MCActionMetrics.Histogram.bucketOf(4_000)).isEqualTo(3)
+        assertThat(MCActionMetrics.Histogram.bucketOf(Long.MAX_VALUE))
+                .isEqualTo(MCActionMetrics.Histogram.BUCKETS - 1)
+    }
+
+    @Test
+    fun histogram_percentiles() {
+        // GIVEN
+        val histogram = MCActionMetrics.Histogram()
+
+        // WHEN
+        repeat(90) { histogram.record(TimeUnit.MICROSECONDS.toNanos(10)) }
+        repeat(10) { histogram.record(TimeUnit.MICROSECONDS.toNanos(1_000)) }
+
+        // THEN
+        assertThat(histogram.count()).isEqualTo(100)
+        assertThat(histogram.percentileMicros(50.0)).isEqualTo(16)
+        assertThat(histogram.percentileMicros(90.0)).isEqualTo(16)
+        assertThat(histogram.percentileMicros(99.0)).isEqualTo(1_000)
+        assertThat(histogram.maxMicros()).isEqualTo(1_000)
+        assertThat(histogram.meanMicros()).isEqualTo(109)
+    }
+
+    @Test
+    fun histogram_empty() {
+        MCActionMetrics.Histogram().toJson().run {
+            assertThat(getLong("count")).isEqualTo(0)
+            assertThat(getLong("p99Us")).isEqualTo(0)
+            assertThat(getLong("maxUs")).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun execute_recordsQueueWaitRunAndSuccess() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isReady(true)
+
+        // WHEN
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val1")), mock<CallbackContext>())
+
+        // THEN
+        MCActionMetrics.snapshot().getJSONObject("actions").run {
+            assertThat(length()).isEqualTo(1)
+            getJSONObject("setAttribute").run {
+                assertThat(getLong("success")).isEqualTo(1)
+                assertThat(getLong("error")).isEqualTo(0)
+                assertThat(getJSONObject("queueWait").getLong("count")).isEqualTo(1)
+                assertThat(getJSONObject("run").getLong("count")).isEqualTo(1)
+                assertThat(getJSONObject("gateWait").getLong("count")).isEqualTo(0)
+            }
+        }
+    }
+
+    @Test
+    fun execute_callerThread_skipsQueueWait() {
+        plugin.execute("getStartupTimeline", JSONArray(), mock<CallbackContext>())
+
+        MCActionMetrics.snapshot().getJSONObject("actions").getJSONObject("getStartupTimeline")
+                .run {
+                    assertThat(getLong("success")).isEqualTo(1)
+                    assertThat(getJSONObject("queueWait").getLong("count")).isEqualTo(0)
+                    assertThat(getJSONObject("run").getLong("count")).isEqualTo(1)
+                }
+    }
+
+    @Test
+    fun execute_rejected_countsError() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isReady(true)
+        plugin.actionExecutor = MCActionExecutor(testExecutorService, testExecutorService, 0)
+
+        // WHEN
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val1")), mock<CallbackContext>())
+
+        // THEN
+        MCActionMetrics.snapshot().getJSONObject("actions").getJSONObject("setAttribute").run {
+            assertThat(getLong("success")).isEqualTo(0)
+            assertThat(getLong("error")).isEqualTo(1)
+            assertThat(getJSONObject("run").getLong("count")).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun execute_heldUntilReady_recordsGateWait() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isInitializing(true)
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val1")), mock<CallbackContext>())
+
+        // WHEN
+        ShadowMarketingCloudSdk.isInitializing(false)
+        ShadowMarketingCloudSdk.isReady(true)
+        ShadowMarketingCloudSdk.getRecentSdkRequest().ready(sdk)
+
+        // THEN
+        MCActionMetrics.snapshot().getJSONObject("actions").getJSONObject("setAttribute").run {
+            assertThat(getLong("success")).isEqualTo(1)
+            assertThat(getJSONObject("gateWait").getLong("count")).isEqualTo(1)
+        }
+    }
+}
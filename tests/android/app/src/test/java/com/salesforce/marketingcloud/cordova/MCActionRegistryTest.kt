@@ -0,0 +1,156 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import org.apache.cordova.CallbackContext
+import org.apache.cordova.CordovaInterface
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.*
+import java.util.concurrent.ExecutorService
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCActionRegistryTest {
+
+    val plugin = MCCordovaPlugin()
+    val threadPool = mock<ExecutorService>()
+    val sdk = mock<MarketingCloudSdk>()
+    val callbackContext = mock<CallbackContext>()
+
+    @Before
+    fun setup() {
+        plugin.cordova = mock<CordovaInterface>()
+        plugin.actionExecutor = MCActionExecutor(threadPool, threadPool)
+        ShadowMarketingCloudSdk.setInstance(sdk)
+    }
+
+    @After
+    fun tearDown() {
+        ShadowMarketingCloudSdk.reset()
+    }
+
+    @Test
+    fun builtInActions_haveMetadata() {
+        MCActionRegistry.get("getContactKey")!!.run {
+            assertThat(isRead).isTrue()
+            assertThat(requiresSdk()).isTrue()
+            assertThat(mayRunOnCallerThread()).isTrue()
+        }
+        MCActionRegistry.get("setAttribute")!!.run {
+            assertThat(isWrite).isTrue()
+            assertThat(requiresSdk()).isTrue()
+            assertThat(mayRunOnCallerThread()).isFalse()
+        }
+        MCActionRegistry.get("registerEventsChannel")!!.run {
+            assertThat(requiresSdk()).isFalse()
+        }
+    }
+
+    @Test
+    fun builtInActions_sequenceKeys() {
+        assertThat(MCActionRegistry.get("setAttribute")!!.sequenceKeys(JSONArray(listOf("k", "v"))))
+                .containsExactly("attribute:k")
+        assertThat(MCActionRegistry.get("removeTag")!!.sequenceKeys(JSONArray(listOf("t"))))
+                .containsExactly("tag:t")
+        assertThat(MCActionRegistry.get("setContactKey")!!.sequenceKeys(JSONArray(listOf("c"))))
+                .containsExactly(MCActionRegistry.ALL_KEYS)
+        assertThat(MCActionRegistry.get("batchEdit")!!.sequenceKeys(JSONArray(
+                "[[{op: 'setAttribute', key: 'k', value: 'v'}, {op: 'addTag', tag: 't'}]]")))
+                .containsExactly("attribute:k", "tag:t")
+    }
+
+    @Test
+    fun register_withoutSequenceKeys_usesActionName() {
+        val name = UUID.randomUUID().toString()
+        MCActionRegistry.register(name, MCActionRegistry.WRITE, mock())
+
+        assertThat(MCActionRegistry.get(name)!!.sequenceKeys(JSONArray())).containsExactly(name)
+    }
+
+    @Test
+    fun register_duplicateName_throws() {
+        val name = UUID.randomUUID().toString()
+        MCActionRegistry.register(name, MCActionRegistry.READ, mock())
+
+        try {
+            MCActionRegistry.register(name, MCActionRegistry.READ, mock())
+            throw AssertionError("Expected IllegalStateException")
+        } catch (e: IllegalStateException) {
+            // Expected
+        }
+    }
+
+    @Test
+    fun execute_registeredCallerThreadAction_sdkReady_runsInline() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isReady(true)
+        val name = UUID.randomUUID().toString()
+        val handler = mock<MCActionRegistry.ActionHandler>()
+        MCActionRegistry.register(name,
+                MCActionRegistry.READ or MCActionRegistry.REQUIRES_SDK or MCActionRegistry.CALLER_THREAD,
+                handler)
+        val args = JSONArray()
+
+        // WHEN
+        assertThat(plugin.execute(name, args, callbackContext)).isTrue()
+
+        // THEN
+        verify(handler).execute(plugin, sdk, args, callbackContext)
+        verifyZeroInteractions(threadPool)
+    }
+
+    @Test
+    fun execute_registeredAction_sdkInitializing_waitsForSdk() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isInitializing(true)
+        val name = UUID.randomUUID().toString()
+        val handler = mock<MCActionRegistry.ActionHandler>()
+        MCActionRegistry.register(name,
+                MCActionRegistry.WRITE or MCActionRegistry.REQUIRES_SDK, handler)
+        val args = JSONArray()
+
+        // WHEN
+        assertThat(plugin.execute(name, args, callbackContext)).isTrue()
+        verifyZeroInteractions(handler)
+        ShadowMarketingCloudSdk.getRecentSdkRequest().ready(sdk)
+        argumentCaptor<Runnable>().apply {
+            verify(threadPool).execute(capture())
+        }.firstValue.run()
+
+        // THEN
+        verify(handler).execute(plugin, sdk, args, callbackContext)
+    }
+}
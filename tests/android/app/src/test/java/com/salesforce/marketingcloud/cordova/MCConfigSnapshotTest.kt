@@ -0,0 +1,86 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+
+@RunWith(RobolectricTestRunner::class)
+class MCConfigSnapshotTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val preferences = linkedMapOf(
+            "com.salesforce.marketingcloud.app_id" to "appId",
+            "com.salesforce.marketingcloud.notification_small_icon" to "ic_notification")
+
+    @Test
+    fun write_read_roundTrip() {
+        // GIVEN
+        val file = File(folder.root, "config.snapshot")
+        MCConfigSnapshot(preferences, 42, true).write(file, "/data/app/base.apk", 1000)
+
+        // WHEN
+        val snapshot = MCConfigSnapshot.read(file, "/data/app/base.apk", 1000)
+
+        // THEN
+        assertThat(snapshot).isNotNull()
+        assertThat(snapshot!!.preferences).isEqualTo(preferences)
+        assertThat(snapshot.notificationIconId).isEqualTo(42)
+        assertThat(snapshot.complete).isTrue()
+    }
+
+    @Test
+    fun read_differentApk_null() {
+        val file = File(folder.root, "config.snapshot")
+        MCConfigSnapshot(preferences, 42, true).write(file, "/data/app/base.apk", 1000)
+
+        assertThat(MCConfigSnapshot.read(file, "/data/app/other.apk", 1000)).isNull()
+        assertThat(MCConfigSnapshot.read(file, "/data/app/base.apk", 2000)).isNull()
+    }
+
+    @Test
+    fun read_truncated_null() {
+        val file = File(folder.root, "config.snapshot")
+        MCConfigSnapshot(preferences, 42, true).write(file, "/data/app/base.apk", 1000)
+        file.writeBytes(file.readBytes().copyOf(file.length().toInt() - 3))
+
+        assertThat(MCConfigSnapshot.read(file, "/data/app/base.apk", 1000)).isNull()
+    }
+
+    @Test
+    fun read_missing_null() {
+        assertThat(MCConfigSnapshot.read(File(folder.root, "missing"), "/data/app/base.apk", 1000))
+                .isNull()
+    }
+}
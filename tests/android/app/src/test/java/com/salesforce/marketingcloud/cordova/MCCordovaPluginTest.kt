@@ -28,10 +28,17 @@ package com.salesforce.marketingcloud.cordova
 
 import android.app.Activity
 import android.content.Context
+import android.content.ContextWrapper
 import android.content.Intent
+import android.content.pm.ApplicationInfo
+import android.os.Looper
 import com.nhaarman.mockitokotlin2.*
 import com.salesforce.marketingcloud.MCLogListener
 import com.salesforce.marketingcloud.MarketingCloudSdk
+import com.salesforce.marketingcloud.analytics.AnalyticsManager
+import com.salesforce.marketingcloud.messages.RegionMessageManager
+import com.salesforce.marketingcloud.messages.inbox.InboxMessage
+import com.salesforce.marketingcloud.messages.inbox.InboxMessageManager
 import com.salesforce.marketingcloud.messages.push.PushMessageManager
 import com.salesforce.marketingcloud.notifications.NotificationMessage
 import com.salesforce.marketingcloud.registration.RegistrationManager
@@ -48,9 +55,13 @@ import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.Mockito
 import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
 import org.robolectric.annotation.Config
 import org.robolectric.shadows.ShadowLog
+import java.io.File
+import java.util.Collections
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.ScheduledExecutorService
 
 @RunWith(RobolectricTestRunner::class)
 @Config(shadows = [ShadowMarketingCloudSdk::class])
@@ -68,9 +79,8 @@ class MCCordovaPluginTest {
 
     @Before
     fun setup() {
-        plugin.cordova = mock<CordovaInterface> {
-            on { threadPool } doReturn testExecutorService
-        }
+        plugin.cordova = mock<CordovaInterface>()
+        plugin.actionExecutor = MCActionExecutor(testExecutorService, testExecutorService)
         whenever(registrationEditor.addTag(any())).thenReturn(registrationEditor)
         whenever(registrationEditor.removeTag(any())).thenReturn(registrationEditor)
         whenever(registrationEditor.setAttribute(any(), any())).thenReturn(registrationEditor)
@@ -83,12 +93,14 @@ class MCCordovaPluginTest {
         whenever(sdk.registrationManager).thenReturn(registrationManager)
 
         ShadowMarketingCloudSdk.setInstance(sdk)
+        MCPluginConfig.set(MCPluginConfig())
     }
 
     @After
     fun tearDown() {
         Mockito.reset(sdk, pushMessageManager, registrationEditor, registrationManager, callbackContext)
         ShadowMarketingCloudSdk.reset()
+        MCSdkInitializer.reset()
     }
 
 
@@ -97,6 +109,18 @@ class MCCordovaPluginTest {
         assertThat(plugin.execute("unknown", JSONArray(), mock<CallbackContext>())).isFalse()
     }
 
+    @Test
+    fun execute_laneFull_reportsOverload() {
+        ShadowMarketingCloudSdk.isReady(true)
+        plugin.actionExecutor = MCActionExecutor(testExecutorService, testExecutorService, 0)
+
+        assertThat(plugin.execute("setAttribute", JSONArray(listOf("key1", "val1")), callbackContext))
+                .isTrue()
+
+        verify(callbackContext).error(any<String>())
+        verifyZeroInteractions(registrationManager)
+    }
+
     @Test
     fun execute_sdkInitializing_requestSdk() {
         ShadowMarketingCloudSdk.isInitializing(true)
@@ -145,14 +169,119 @@ class MCCordovaPluginTest {
 
         assertThat(plugin.execute("getAttributes", JSONArray(), callbackContext)).isTrue()
 
-        argumentCaptor<JSONObject>().apply {
-            verify(callbackContext).success(capture())
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
         }.firstValue.run {
-            assertThat(getString("key1")).isEqualTo("val1")
-            assertThat(getString("key2")).isEqualTo("val2")
+            assertThat(status).isEqualTo(PluginResult.Status.OK.ordinal)
+            assertThat(messageType).isEqualTo(PluginResult.MESSAGE_TYPE_JSON)
+            JSONObject(message).run {
+                assertThat(getString("key1")).isEqualTo("val1")
+                assertThat(getString("key2")).isEqualTo("val2")
+            }
+        }
+    }
+
+    @Test
+    fun execute_getAttributes_repeated_servedFromCache() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationManager.attributes).thenReturn(mapOf("key1" to "val1"))
+
+        plugin.execute("getAttributes", JSONArray(), callbackContext)
+        plugin.execute("getAttributes", JSONArray(), callbackContext)
+
+        verify(registrationManager, times(1)).attributes
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(2)).sendPluginResult(capture())
+        }.run {
+            assertThat(secondValue).isSameAs(firstValue)
+        }
+    }
+
+    @Test
+    fun execute_setAttribute_invalidatesCachedAttributesOnly() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        whenever(registrationManager.attributes).thenReturn(mapOf("key1" to "val1"))
+        whenever(registrationManager.tags).thenReturn(setOf("tag1"))
+        plugin.execute("getAttributes", JSONArray(), callbackContext)
+        plugin.execute("getTags", JSONArray(), callbackContext)
+
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val2")), callbackContext)
+        plugin.execute("getAttributes", JSONArray(), callbackContext)
+        plugin.execute("getTags", JSONArray(), callbackContext)
+
+        verify(registrationManager, times(2)).attributes
+        verify(registrationManager, times(1)).tags
+    }
+
+    @Test
+    fun execute_getAttributesSince_returnsChangesAfterWrite() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        whenever(registrationManager.attributes).thenReturn(mapOf("key1" to "val1"))
+        plugin.execute("getAttributesSince", JSONArray(listOf(0)), callbackContext)
+        whenever(registrationManager.attributes)
+                .thenReturn(mapOf("key1" to "val1", "key2" to "val2"))
+        plugin.execute("getAttributesSince", JSONArray(listOf(0)), callbackContext)
+
+        val first = argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(2)).sendPluginResult(capture())
+        }.firstValue.run { JSONObject(strMessage) }
+        plugin.execute("setAttribute", JSONArray(listOf("key2", "val2")), callbackContext)
+        plugin.execute("getAttributesSince", JSONArray(listOf(first.getLong("version"))),
+                callbackContext)
+
+        // The second read was unchanged and served without reading the SDK again.
+        verify(registrationManager, times(2)).attributes
+        assertThat(first.getBoolean("reset")).isTrue()
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(3)).sendPluginResult(capture())
+        }.thirdValue.run {
+            assertThat(messageType).isEqualTo(PluginResult.MESSAGE_TYPE_STRING)
+            JSONObject(strMessage).run {
+                assertThat(getBoolean("reset")).isFalse()
+                assertThat(getLong("version")).isEqualTo(first.getLong("version") + 1)
+                assertThat(getJSONObject("changed").toString()).isEqualTo("{\"key2\":\"val2\"}")
+            }
         }
     }
 
+    @Test
+    fun execute_getTagsSince_reportsRemovedTags() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        whenever(registrationManager.tags).thenReturn(setOf("tag1", "tag2"))
+        plugin.execute("getTagsSince", JSONArray(listOf(0)), callbackContext)
+        whenever(registrationManager.tags).thenReturn(setOf("tag2"))
+
+        plugin.execute("removeTag", JSONArray(listOf("tag1")), callbackContext)
+        plugin.execute("getTagsSince", JSONArray(listOf(1)), callbackContext)
+
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(2)).sendPluginResult(capture())
+        }.secondValue.run {
+            JSONObject(strMessage).run {
+                assertThat(getBoolean("reset")).isFalse()
+                assertThat(getJSONArray("added").length()).isEqualTo(0)
+                assertThat(getJSONArray("removed").toString()).isEqualTo("[\"tag1\"]")
+            }
+        }
+    }
+
+    @Test
+    fun registrationEvent_invalidatesCachedReads() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationManager.contactKey).thenReturn("testContactKey")
+        plugin.execute("getContactKey", JSONArray(), callbackContext)
+
+        argumentCaptor<RegistrationManager.RegistrationEventListener>().apply {
+            verify(registrationManager).registerForRegistrationEvents(capture())
+        }.firstValue.onRegistrationReceived(mock())
+        plugin.execute("getContactKey", JSONArray(), callbackContext)
+
+        verify(registrationManager, times(2)).contactKey
+    }
+
     @Test
     fun execute_clearAttribute_success() {
         ShadowMarketingCloudSdk.isReady(true)
@@ -225,10 +354,11 @@ class MCCordovaPluginTest {
         assertThat(plugin.execute("getTags", JSONArray(), callbackContext)).isTrue()
 
         verify(registrationManager).tags
-        argumentCaptor<JSONArray>().apply {
-            verify(callbackContext).success(capture())
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
         }.firstValue.run {
-            assertThat(getString(0)).isEqualTo("tag1")
+            assertThat(messageType).isEqualTo(PluginResult.MESSAGE_TYPE_JSON)
+            assertThat(JSONArray(message).getString(0)).isEqualTo("tag1")
         }
     }
 
@@ -335,6 +465,165 @@ class MCCordovaPluginTest {
         verify(callbackContext).success(0)
     }
 
+    @Test
+    fun execute_batchEdit_appliesOperationsWithSingleCommit() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        val operations = JSONArray().apply {
+            put(JSONObject().put("op", "setContactKey").put("contactKey", "testContactKey"))
+            put(JSONObject().put("op", "setAttribute").put("key", "key1").put("value", "val1"))
+            put(JSONObject().put("op", "addTag").put("tag", "tag1"))
+            put(JSONObject().put("op", "removeTag").put("tag", "tag2"))
+            put(JSONObject().put("op", "clearAttribute").put("key", "key2"))
+        }
+
+        assertThat(plugin.execute("batchEdit", JSONArray().put(operations), callbackContext)).isTrue()
+
+        verify(registrationManager, times(1)).edit()
+        inOrder(registrationEditor) {
+            verify(registrationEditor).setContactKey("testContactKey")
+            verify(registrationEditor).setAttribute("key1", "val1")
+            verify(registrationEditor).addTag("tag1")
+            verify(registrationEditor).removeTag("tag2")
+            verify(registrationEditor).clearAttribute("key2")
+            verify(registrationEditor, times(1)).commit()
+        }
+        argumentCaptor<JSONArray>().apply {
+            verify(callbackContext).success(capture())
+        }.firstValue.run {
+            assertThat(length()).isEqualTo(5)
+            (0 until length()).forEach { assertThat(getBoolean(it)).isTrue() }
+        }
+    }
+
+    @Test
+    fun execute_batchEdit_malformedOperation_reportedPerOperation() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        val operations = JSONArray().apply {
+            put(JSONObject().put("op", "addTag").put("tag", "tag1"))
+            put(JSONObject().put("op", "unknown"))
+            put(JSONObject().put("op", "setAttribute"))
+        }
+
+        assertThat(plugin.execute("batchEdit", JSONArray().put(operations), callbackContext)).isTrue()
+
+        verify(registrationEditor).addTag("tag1")
+        verify(registrationEditor, never()).setAttribute(any(), any())
+        argumentCaptor<JSONArray>().apply {
+            verify(callbackContext).success(capture())
+        }.firstValue.run {
+            assertThat(getBoolean(0)).isTrue()
+            assertThat(getBoolean(1)).isFalse()
+            assertThat(getBoolean(2)).isFalse()
+        }
+    }
+
+    @Test
+    fun execute_batchEdit_commitFails_allOperationsFalse() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(false)
+        val operations = JSONArray().apply {
+            put(JSONObject().put("op", "addTag").put("tag", "tag1"))
+        }
+
+        assertThat(plugin.execute("batchEdit", JSONArray().put(operations), callbackContext)).isTrue()
+
+        argumentCaptor<JSONArray>().apply {
+            verify(callbackContext).success(capture())
+        }.firstValue.run {
+            assertThat(getBoolean(0)).isFalse()
+        }
+    }
+
+    @Test
+    fun execute_setAttribute_coalescingEnabled_commitsOnFlush() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        val scheduler = mock<ScheduledExecutorService>()
+        plugin.registrationCoalescer = MCRegistrationCoalescer(1000, plugin.registrationCache, scheduler)
+
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val1")), callbackContext)
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val2")), callbackContext)
+
+        verify(registrationEditor, never()).commit()
+        verify(callbackContext, never()).success(any<Int>())
+
+        plugin.onPause(false)
+        argumentCaptor<Runnable>().apply {
+            verify(scheduler).execute(capture())
+        }.firstValue.run()
+
+        verify(registrationEditor).setAttribute("key1", "val2")
+        verify(registrationEditor, times(1)).commit()
+        verify(callbackContext, times(2)).success(1)
+    }
+
+    @Test
+    fun onDestroy_coalescingEnabled_shutsDownCoalescer() {
+        val coalescer = mock<MCRegistrationCoalescer>()
+        plugin.registrationCoalescer = coalescer
+
+        plugin.onDestroy()
+
+        verify(coalescer).shutdown()
+    }
+
+    @Test
+    fun onDestroy_enabledLogSink_released() {
+        val scheduler = mock<ScheduledExecutorService>()
+        plugin.logSink = MCLogSink(File("build/tmp/logs"), 8, 1024, 1, 1000, scheduler)
+        plugin.execute("enableLogSink", JSONArray(), mock<CallbackContext>())
+
+        plugin.onDestroy()
+
+        verify(scheduler).shutdown()
+        assertThat(plugin.logSink).isNull()
+    }
+
+    @Test
+    fun onDestroy_configStartedLogSink_keepsRunning() {
+        val scheduler = mock<ScheduledExecutorService>()
+        val sink = MCLogSink(File("build/tmp/logs"), 8, 1024, 1, 1000, scheduler)
+        sink.enable(MCLogListener.WARN, MCLogSink.OFF, MCLogSink.OFF, null)
+        plugin.logSink = sink
+
+        plugin.onDestroy()
+
+        verify(scheduler, never()).shutdown()
+        assertThat(ShadowMarketingCloudSdk.getLogListener()).isSameAs(sink)
+        assertThat(plugin.logSink).isNull()
+    }
+
+    @Test
+    fun execute_disableLogSink_afterVerboseLogging_keepsVerboseListener() {
+        plugin.logSink = MCLogSink(File("build/tmp/logs"), 8, 1024, 1, 1000,
+                mock<ScheduledExecutorService>())
+        plugin.execute("enableVerboseLogging", JSONArray(), mock<CallbackContext>())
+        plugin.execute("enableLogSink", JSONArray(), mock<CallbackContext>())
+
+        plugin.execute("disableLogSink", JSONArray(), callbackContext)
+
+        assertThat(ShadowMarketingCloudSdk.getLogListener()).isInstanceOf(
+                MCLogListener.AndroidLogListener::class.java)
+    }
+
+    @Test
+    fun execute_getAttributes_coalescingEnabled_flushesPendingEdits() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        whenever(registrationManager.attributes).thenReturn(mapOf("key1" to "val1"))
+        plugin.registrationCoalescer = MCRegistrationCoalescer(1000, plugin.registrationCache, mock())
+
+        plugin.execute("setAttribute", JSONArray(listOf("key1", "val1")), mock<CallbackContext>())
+        plugin.execute("getAttributes", JSONArray(), callbackContext)
+
+        inOrder(registrationEditor, registrationManager) {
+            verify(registrationEditor).commit()
+            verify(registrationManager).attributes
+        }
+    }
+
     @Test
     fun execute_enableVerboseLogging_success() {
         assertThat(plugin.execute("enableVerboseLogging", JSONArray(), callbackContext)).isTrue()
@@ -352,6 +641,32 @@ class MCCordovaPluginTest {
         assertThat(ShadowMarketingCloudSdk.getLogListener()).isNull()
     }
 
+    @Test
+    fun execute_enableLogSink_withoutFiles_error() {
+        assertThat(plugin.execute("enableLogSink", JSONArray(), callbackContext)).isTrue()
+
+        verify(callbackContext).error(any<String>())
+    }
+
+    @Test
+    fun execute_enableLogSink_streaming_keepsCallback() {
+        plugin.logSink = MCLogSink(File("build/tmp/logs"), 8, 1024, 1, 1000,
+                mock<ScheduledExecutorService>())
+
+        plugin.execute("enableLogSink",
+                JSONArray().put(JSONObject().put("level", "info").put("stream", "warn")),
+                callbackContext)
+
+        assertThat(ShadowMarketingCloudSdk.getLogListener()).isSameAs(plugin.logSink)
+        assertThat(ShadowMarketingCloudSdk.getLogLevel()).isEqualTo(MCLogListener.INFO)
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
+        }.firstValue.run {
+            assertThat(status).isEqualTo(PluginResult.Status.NO_RESULT.ordinal)
+            assertThat(keepCallback).isTrue()
+        }
+    }
+
     @Test
     fun pushReceived_callbackRegister_pushOpenedNotSubscribed_doesNotDeliverPushToCallback() {
         // GIVEN
@@ -424,6 +739,80 @@ class MCCordovaPluginTest {
         }
     }
 
+    @Test
+    fun initialize_lazyInitMode_usesPluginPreferences() {
+        // GIVEN
+        val context = RuntimeEnvironment.application
+        val apk = File(context.filesDir, "base.apk").apply { writeText("apk") }
+        context.applicationInfo.sourceDir = apk.path
+        MCConfigSnapshot(mapOf(
+                "com.salesforce.marketingcloud.sdk_ready_timeout_ms" to "250",
+                "com.salesforce.marketingcloud.executor_read_threads" to "5",
+                "com.salesforce.marketingcloud.event_buffer_capacity" to "3",
+                "com.salesforce.marketingcloud.log_buffer_capacity" to "8"), 0, true)
+                .write(File(context.filesDir, "mccordova_config.snapshot"), apk.path,
+                        apk.lastModified())
+        MCSdkInitializer.start(context, MCSdkInitializer.MODE_LAZY, MCInitProvider())
+        plugin.actionExecutor = null
+        val cordovaActivity = mock<Activity> {
+            on { intent } doReturn Intent()
+            on { filesDir } doReturn context.filesDir
+        }
+        val cordovaInterface = mock<CordovaInterface> {
+            on { activity } doReturn cordovaActivity
+        }
+
+        // WHEN
+        plugin.initialize(cordovaInterface, mock<CordovaWebView>())
+
+        // THEN
+        assertThat(MCSdkInitializer.isPending()).isTrue()
+        plugin.getPluginStats().run {
+            assertThat(getJSONObject("sdkGate").getLong("timeoutMs")).isEqualTo(250)
+            assertThat(getJSONObject("executor").getJSONObject("read").getInt("threads"))
+                    .isEqualTo(5)
+            assertThat(getJSONObject("events").getInt("capacity")).isEqualTo(3)
+            assertThat(getJSONObject("logSink").getInt("bufferCapacity")).isEqualTo(8)
+        }
+        plugin.actionExecutor.shutdown()
+    }
+
+    @Test
+    fun initialize_backgroundInitMode_readsConfigOffMainThread() {
+        // GIVEN
+        val readers = Collections.synchronizedList(mutableListOf<Thread>())
+        val context = object : ContextWrapper(RuntimeEnvironment.application) {
+            override fun getApplicationContext() = this
+
+            override fun getApplicationInfo(): ApplicationInfo {
+                readers.add(Thread.currentThread())
+                return super.getApplicationInfo()
+            }
+        }
+        MCSdkInitializer.start(context, MCSdkInitializer.MODE_BACKGROUND, MCInitProvider())
+        plugin.actionExecutor = null
+        val cordovaActivity = mock<Activity> {
+            on { intent } doReturn Intent()
+            on { filesDir } doReturn context.filesDir
+        }
+        val cordovaInterface = mock<CordovaInterface> {
+            on { activity } doReturn cordovaActivity
+        }
+
+        // WHEN
+        plugin.initialize(cordovaInterface, mock<CordovaWebView>())
+        plugin.getPluginStats()
+
+        // THEN
+        assertThat(readers).isNotEmpty
+        assertThat(readers).doesNotContain(Looper.getMainLooper().thread)
+        plugin.actionExecutor.shutdown()
+        val deadline = System.currentTimeMillis() + 5000
+        while (MCSdkInitializer.isPending() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+
     @Test
     fun pushOpenedSubscribed_afterInitializaWithPush_sendsCachedPush() {
         // GIVEN
@@ -483,6 +872,374 @@ class MCCordovaPluginTest {
         }
     }
 
+    @Test
+    fun pushOpenedSubscribed_afterSeveralPushes_replaysAllInOrder() {
+        // GIVEN
+        assertThat(plugin.execute("registerEventsChannel", JSONArray(), callbackContext)).isTrue()
+        plugin.onNewIntent(intentWithMessage(messageId = "first"))
+        plugin.onNewIntent(intentWithMessage(messageId = "second"))
+
+        // WHEN
+        plugin.execute("subscribe", JSONArray().apply { put("notificationOpened") }, mock<CallbackContext>())
+
+        // THEN
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(2)).sendPluginResult(capture())
+        }.allValues.map { JSONObject(it.message).getJSONObject("values").getString("_m") }.run {
+            assertThat(this).containsExactly("first", "second")
+        }
+    }
+
+    @Test
+    fun onNewIntent_notificationOpened_convertedOnWriteLane() {
+        // GIVEN
+        val writePool = mock<ExecutorService>()
+        plugin.actionExecutor = MCActionExecutor(testExecutorService, writePool)
+        assertThat(plugin.execute("registerEventsChannel", JSONArray(), callbackContext)).isTrue()
+        plugin.execute("subscribe", JSONArray().apply { put("notificationOpened") }, mock<CallbackContext>())
+
+        // WHEN
+        plugin.onNewIntent(intentWithMessage(messageId = "first"))
+        plugin.onNewIntent(intentWithMessage(messageId = "second"))
+
+        // THEN
+        verify(callbackContext, never()).sendPluginResult(any())
+        argumentCaptor<Runnable>().apply {
+            verify(writePool, times(1)).execute(capture())
+        }.lastValue.run()
+        verify(callbackContext, times(1)).sendPluginResult(any())
+        argumentCaptor<Runnable>().apply {
+            verify(writePool, times(2)).execute(capture())
+        }.lastValue.run()
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(2)).sendPluginResult(capture())
+        }.allValues.map { JSONObject(it.message).getJSONObject("values").getString("_m") }.run {
+            assertThat(this).containsExactly("first", "second")
+        }
+    }
+
+    @Test
+    fun onNewIntent_notificationOpened_recordedInPluginStats() {
+        // GIVEN
+        assertThat(plugin.execute("registerEventsChannel", JSONArray(), callbackContext)).isTrue()
+
+        // WHEN
+        plugin.onNewIntent(intentWithMessage())
+
+        // THEN
+        plugin.getPluginStats().getJSONObject("notificationOpened").run {
+            assertThat(getLong("success")).isEqualTo(1)
+            assertThat(getLong("error")).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun urlAction_beforeEventsChannel_replayedOnRegister() {
+        // GIVEN
+        plugin.handleUrl(mock<Context>(), "http://www.salesforce.com/1", "webUrl")
+        plugin.handleUrl(mock<Context>(), "http://www.salesforce.com/2", "webUrl")
+
+        // WHEN
+        assertThat(plugin.execute("registerEventsChannel", JSONArray(), callbackContext)).isTrue()
+
+        // THEN
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, times(2)).sendPluginResult(capture())
+        }.allValues.map { JSONObject(it.message) }.run {
+            assertThat(map { it.getString("url") })
+                    .containsExactly("http://www.salesforce.com/1", "http://www.salesforce.com/2")
+            assertThat(this[0].getLong("sequence")).isLessThan(this[1].getLong("sequence"))
+        }
+        assertThat(plugin.getPluginStats().getJSONObject("events")
+                .getJSONObject("urlAction").getLong("replayed")).isEqualTo(2)
+    }
+
+    @Test
+    fun restoredEvents_replayedOnRegister_andAcknowledged() {
+        // GIVEN
+        val journal = mock<MCEventJournal>()
+        plugin.eventJournal = journal
+        plugin.restoreEvents(listOf(MCEventJournal.Entry("notificationOpened:1",
+                "notificationOpened",
+                JSONObject().put("type", "notificationOpened").put("eventId", "notificationOpened:1"))))
+        plugin.execute("subscribe", JSONArray().put("notificationOpened"), mock<CallbackContext>())
+
+        // WHEN
+        assertThat(plugin.execute("registerEventsChannel", JSONArray(), callbackContext)).isTrue()
+
+        // THEN
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
+        }.firstValue.run {
+            assertThat(JSONObject(message).getString("type")).isEqualTo("notificationOpened")
+        }
+        verify(journal).acknowledge(listOf("notificationOpened:1"))
+    }
+
+    @Test
+    fun restoredEvents_otherTypes_acknowledgedWithoutReplay() {
+        // GIVEN
+        val journal = mock<MCEventJournal>()
+        plugin.eventJournal = journal
+
+        // WHEN
+        plugin.restoreEvents(listOf(MCEventJournal.Entry("urlAction:1", "urlAction",
+                JSONObject().put("type", "urlAction").put("url", "http://www.salesforce.com"))))
+
+        // THEN
+        verify(journal).acknowledge(listOf("urlAction:1"))
+        assertThat(plugin.getEventBuffer().size("urlAction")).isEqualTo(0)
+    }
+
+    @Test
+    fun bufferedEvent_evicted_keptInJournal() {
+        // GIVEN
+        MCPluginConfig.set(MCPluginConfig().apply { eventBufferCapacity = 1 })
+        val journal = mock<MCEventJournal>()
+        plugin.eventJournal = journal
+
+        // WHEN
+        plugin.onNewIntent(intentWithMessage(messageId = "m1"))
+        plugin.onNewIntent(intentWithMessage(messageId = "m2"))
+
+        // THEN
+        verify(journal, times(2)).append(any(), eq("notificationOpened"), any())
+        verify(journal, never()).acknowledge(any())
+        assertThat(plugin.getEventBuffer().size("notificationOpened")).isEqualTo(1)
+    }
+
+    @Test
+    fun urlAction_notJournaled() {
+        // GIVEN
+        val journal = mock<MCEventJournal>()
+        plugin.eventJournal = journal
+
+        // WHEN
+        plugin.handleUrl(mock<Context>(), "http://www.salesforce.com", "webUrl")
+
+        // THEN
+        verify(journal, never()).append(any(), any(), any())
+        assertThat(plugin.getEventBuffer().size("urlAction")).isEqualTo(1)
+    }
+
+    @Test
+    fun pushOpened_sameMessageTwice_journaledAndDeliveredOnce() {
+        // GIVEN
+        val journal = mock<MCEventJournal>()
+        plugin.eventJournal = journal
+        assertThat(plugin.execute("registerEventsChannel", JSONArray(), callbackContext)).isTrue()
+
+        // WHEN
+        plugin.onNewIntent(intentWithMessage(messageId = "same"))
+        plugin.onNewIntent(intentWithMessage(messageId = "same"))
+        plugin.execute("subscribe", JSONArray().apply { put("notificationOpened") }, mock<CallbackContext>())
+
+        // THEN
+        verify(journal).append(any(), eq("notificationOpened"), any())
+        verify(callbackContext, times(1)).sendPluginResult(any())
+    }
+
+    @Test
+    fun execute_getSdkStateSnapshot_returnsRequestedSections() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(pushMessageManager.isPushEnabled).thenReturn(true)
+        whenever(pushMessageManager.pushToken).thenReturn("testToken")
+
+        plugin.execute("getSdkStateSnapshot",
+                JSONArray().put(JSONObject().put("sections", JSONArray().put("push"))),
+                callbackContext)
+
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
+        }.firstValue.run {
+            assertThat(messageType).isEqualTo(PluginResult.MESSAGE_TYPE_STRING)
+            JSONObject(strMessage).getJSONObject("sections").run {
+                assertThat(length()).isEqualTo(1)
+                assertThat(getJSONObject("push").getString("token")).isEqualTo("testToken")
+            }
+        }
+        verify(sdk, never()).sdkState
+    }
+
+    @Test
+    fun execute_getSDKState_calledTwice_reportsLiveState() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isReady(true)
+        given(sdk.sdkState)
+                .willReturn(JSONObject().put("state", "before"))
+                .willReturn(JSONObject().put("state", "after"))
+
+        // WHEN
+        plugin.execute("getSDKState", JSONArray(), callbackContext)
+        plugin.execute("getSDKState", JSONArray(), callbackContext)
+
+        // THEN
+        argumentCaptor<String>().apply {
+            verify(callbackContext, times(2)).success(capture())
+            assertThat(JSONObject(secondValue).getString("state")).isEqualTo("after")
+        }
+    }
+
+    @Test
+    fun execute_getSdkStateSnapshot_unknownSection_error() {
+        ShadowMarketingCloudSdk.isReady(true)
+
+        plugin.execute("getSdkStateSnapshot",
+                JSONArray().put(JSONObject().put("sections", JSONArray().put("unknown"))),
+                callbackContext)
+
+        verify(callbackContext).error("Unknown SDK state section: unknown")
+    }
+
+    @Test
+    fun execute_getInboxMessages_returnsPage() {
+        ShadowMarketingCloudSdk.isReady(true)
+        val inboxMessageManager = mock<InboxMessageManager>()
+        whenever(sdk.inboxMessageManager).thenReturn(inboxMessageManager)
+        val message = mock<InboxMessage> {
+            on { id() } doReturn "m1"
+        }
+        whenever(inboxMessageManager.unreadMessages).thenReturn(listOf(message))
+
+        plugin.execute("getInboxMessages",
+                JSONArray().put(JSONObject().put("filter", "unread").put("limit", 10)),
+                callbackContext)
+
+        verify(inboxMessageManager).registerInboxResponseListener(any())
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
+        }.firstValue.run {
+            assertThat(messageType).isEqualTo(PluginResult.MESSAGE_TYPE_STRING)
+            JSONObject(strMessage).run {
+                assertThat(getJSONArray("messages").getJSONObject(0).getString("id"))
+                        .isEqualTo("m1")
+                assertThat(isNull("nextCursor")).isTrue()
+            }
+        }
+    }
+
+    @Test
+    fun execute_markInboxMessagesRead_marksBatchAndInvalidatesPages() {
+        ShadowMarketingCloudSdk.isReady(true)
+        val inboxMessageManager = mock<InboxMessageManager>()
+        whenever(sdk.inboxMessageManager).thenReturn(inboxMessageManager)
+        val version = plugin.inboxCache.generation()
+
+        plugin.execute("markInboxMessagesRead", JSONArray().put(JSONArray().put("m1").put("m2")),
+                callbackContext)
+
+        verify(inboxMessageManager).setMessageRead("m1")
+        verify(inboxMessageManager).setMessageRead("m2")
+        verify(callbackContext).success(2)
+        assertThat(plugin.inboxCache.generation()).isEqualTo(version + 1)
+    }
+
+    @Test
+    fun execute_trackPageViews_tracksBatchInOneTask() {
+        ShadowMarketingCloudSdk.isReady(true)
+        val analyticsManager = mock<AnalyticsManager>()
+        whenever(sdk.analyticsManager).thenReturn(analyticsManager)
+
+        plugin.execute("trackPageViews", JSONArray().put(JSONArray()
+                .put(JSONObject().put("url", "https://example.com/1").put("title", "One"))
+                .put(JSONObject().put("title", "No url"))
+                .put(JSONObject().put("url", "https://example.com/2").put("search", "shoes"))),
+                callbackContext)
+
+        verify(testExecutorService, times(1)).execute(any())
+        inOrder(analyticsManager) {
+            verify(analyticsManager).trackPageView("https://example.com/1", "One", null, null)
+            verify(analyticsManager).trackPageView("https://example.com/2", null, null, "shoes")
+        }
+        verifyNoMoreInteractions(analyticsManager)
+        verify(callbackContext).success(2)
+    }
+
+    @Test
+    fun execute_trackPageViews_withoutArray_error() {
+        ShadowMarketingCloudSdk.isReady(true)
+
+        plugin.execute("trackPageViews", JSONArray(), callbackContext)
+
+        verify(callbackContext).error("trackPageViews requires an array of page views")
+    }
+
+    @Test
+    fun execute_enableRegionEvents_sendsRegionEvents() {
+        ShadowMarketingCloudSdk.isReady(true)
+        val regionMessageManager = mock<RegionMessageManager>()
+        whenever(sdk.regionMessageManager).thenReturn(regionMessageManager)
+        val eventsChannel = mock<CallbackContext>()
+        plugin.execute("registerEventsChannel", JSONArray(), eventsChannel)
+        plugin.sendRegionEvent("regionTransition",
+                JSONObject().put("type", "regionTransition").put("transition", "entered"))
+        verifyZeroInteractions(eventsChannel)
+
+        plugin.execute("enableRegionEvents", JSONArray(), callbackContext)
+
+        verify(regionMessageManager).registerRegionTransitionEventListener(
+                plugin.regionEventCoalescer)
+        verify(regionMessageManager).registerGeofenceMessageResponseListener(
+                plugin.regionEventCoalescer)
+        verify(callbackContext).success()
+        argumentCaptor<PluginResult>().apply {
+            verify(eventsChannel).sendPluginResult(capture())
+        }.firstValue.run {
+            assertThat(JSONObject(message).getString("transition")).isEqualTo("entered")
+        }
+    }
+
+    @Test
+    fun execute_disableRegionEvents_unregistersListeners() {
+        ShadowMarketingCloudSdk.isReady(true)
+        val regionMessageManager = mock<RegionMessageManager>()
+        whenever(sdk.regionMessageManager).thenReturn(regionMessageManager)
+        plugin.execute("enableRegionEvents", JSONArray(), callbackContext)
+
+        plugin.execute("disableRegionEvents", JSONArray(), callbackContext)
+
+        verify(regionMessageManager).unregisterRegionTransitionEventListener(
+                plugin.regionEventCoalescer)
+        verify(regionMessageManager).unregisterGeofenceMessageResponseListener(
+                plugin.regionEventCoalescer)
+        assertThat(plugin.pluginStats.getJSONObject("regionEvents").getBoolean("enabled"))
+                .isTrue()
+    }
+
+    @Test
+    fun execute_pipeline_combinesResults() {
+        ShadowMarketingCloudSdk.isReady(true)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        whenever(registrationManager.contactKey).thenReturn("contact")
+
+        plugin.execute("pipeline", JSONArray().put(JSONArray()
+                .put(JSONObject().put("action", "addTag").put("args", JSONArray().put("tag1")))
+                .put(JSONObject().put("action", "getContactKey"))), callbackContext)
+
+        verify(registrationEditor).addTag("tag1")
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
+        }.firstValue.run {
+            JSONArray(strMessage).run {
+                assertThat(length()).isEqualTo(2)
+                assertThat(getJSONObject(0).getBoolean("ok")).isTrue()
+                assertThat(getJSONObject(1).getString("value")).isEqualTo("contact")
+            }
+        }
+    }
+
+    @Test
+    fun execute_pipeline_sdkNotInitialized_onlyFailsStepsNeedingSdk() {
+        plugin.execute("pipeline", JSONArray().put(JSONArray()
+                .put(JSONObject().put("action", "getPluginStats"))), callbackContext)
+        plugin.execute("pipeline", JSONArray().put(JSONArray()
+                .put(JSONObject().put("action", "getTags"))), callbackContext)
+
+        verify(callbackContext).sendPluginResult(any())
+        verify(callbackContext).error("MarketingCloudSdk#init has not been called")
+        verifyZeroInteractions(registrationManager)
+    }
+
     @Test
     fun logSdkState_printsStateToLog() {
         // GIVEN
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import android.content.Context
+import com.nhaarman.mockitokotlin2.*
+import org.apache.cordova.CallbackContext
+import org.apache.cordova.PluginResult
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+class MCEventBatcherTest {
+
+    val plugin = MCCordovaPlugin()
+    val callbackContext = mock<CallbackContext>()
+    val scheduler = mock<ScheduledExecutorService> {
+        on { execute(any()) } doAnswer { (it.arguments[0] as Runnable).run() }
+    }
+
+    @Before
+    fun setup() {
+        MCPluginConfig.set(MCPluginConfig())
+        plugin.eventBatcher = MCEventBatcher(plugin, 2, 100, 1, scheduler)
+        plugin.execute("registerEventsChannel", JSONArray(), callbackContext)
+    }
+
+    private fun sentBatches(times: Int) = argumentCaptor<PluginResult>().apply {
+        verify(callbackContext, times(times)).sendPluginResult(capture())
+    }.allValues.map { JSONObject(it.message) }
+
+    @Test
+    fun event_belowMaxSize_sentOnTick() {
+        // GIVEN
+        plugin.handleUrl(mock<Context>(), "http://www.salesforce.com", "webUrl")
+        verifyZeroInteractions(callbackContext)
+
+        // WHEN
+        argumentCaptor<Runnable>().apply {
+            verify(scheduler).schedule(capture(), eq(100L), eq(TimeUnit.MILLISECONDS))
+        }.firstValue.run()
+
+        // THEN
+        sentBatches(1)[0].run {
+            assertThat(getString("type")).isEqualTo("batch")
+            assertThat(getJSONArray("events").length()).isEqualTo(1)
+            assertThat(getJSONArray("events").getJSONObject(0).getString("url"))
+                    .isEqualTo("http://www.salesforce.com")
+        }
+    }
+
+    @Test
+    fun events_reachMaxSize_sentImmediatelyAsOneBatch() {
+        plugin.handleUrl(mock<Context>(), "http://www.salesforce.com/1", "webUrl")
+        plugin.handleUrl(mock<Context>(), "http://www.salesforce.com/2", "webUrl")
+
+        sentBatches(1)[0].getJSONArray("events").run {
+            assertThat(length()).isEqualTo(2)
+            assertThat(getJSONObject(0).getString("url")).isEqualTo("http://www.salesforce.com/1")
+            assertThat(getJSONObject(1).getString("url")).isEqualTo("http://www.salesforce.com/2")
+        }
+    }
+
+    @Test
+    fun batchInFlight_holdsEventsUntilAcknowledged() {
+        // GIVEN
+        for (i in 1..4) {
+            plugin.handleUrl(mock<Context>(), "http://www.salesforce.com/$i", "webUrl")
+        }
+        val firstBatch = sentBatches(1)[0]
+
+        // WHEN
+        plugin.execute("ackEvents", JSONArray().put(firstBatch.getLong("batchId")), mock())
+
+        // THEN
+        sentBatches(2)[1].getJSONArray("events").run {
+            assertThat(length()).isEqualTo(2)
+            assertThat(getJSONObject(0).getString("url")).isEqualTo("http://www.salesforce.com/3")
+        }
+        plugin.getPluginStats().getJSONObject("eventBatching").run {
+            assertThat(getLong("batches")).isEqualTo(2)
+            assertThat(getLong("acked")).isEqualTo(1)
+            assertThat(getLong("backpressured")).isGreaterThan(0)
+        }
+    }
+
+    @Test
+    fun reload_batchInFlight_resentToNewChannel() {
+        // GIVEN
+        for (i in 1..3) {
+            plugin.handleUrl(mock<Context>(), "http://www.salesforce.com/$i", "webUrl")
+        }
+        sentBatches(1)
+        val reloaded = mock<CallbackContext>()
+
+        // WHEN
+        plugin.execute("registerEventsChannel", JSONArray(), reloaded)
+
+        // THEN
+        argumentCaptor<PluginResult>().apply {
+            verify(reloaded).sendPluginResult(capture())
+        }.firstValue.run {
+            JSONObject(message).getJSONArray("events").run {
+                assertThat(length()).isEqualTo(2)
+                assertThat(getJSONObject(0).getString("url"))
+                        .isEqualTo("http://www.salesforce.com/1")
+                assertThat(getJSONObject(1).getString("url"))
+                        .isEqualTo("http://www.salesforce.com/2")
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONObject
+import org.junit.Test
+
+class MCEventBufferTest {
+
+    private fun event(name: String) = JSONObject().put("name", name)
+
+    private fun MCEventBuffer.add(type: String, name: String) = add(type, nextSequence(), event(name))
+
+    @Test
+    fun drain_multipleTypes_returnsSequenceOrder() {
+        val buffer = MCEventBuffer(4, false)
+        buffer.add("urlAction", "a")
+        buffer.add("notificationOpened", "b")
+        buffer.add("urlAction", "c")
+
+        assertThat(buffer.drain("urlAction", "notificationOpened").map { it.getString("name") })
+                .containsExactly("a", "b", "c")
+        assertThat(buffer.drain("urlAction", "notificationOpened")).isEmpty()
+    }
+
+    @Test
+    fun drain_onlyRequestedTypes() {
+        val buffer = MCEventBuffer(4, false)
+        buffer.add("urlAction", "a")
+        buffer.add("notificationOpened", "b")
+
+        assertThat(buffer.size("urlAction", "notificationOpened")).isEqualTo(2)
+        assertThat(buffer.drain("urlAction")).hasSize(1)
+        assertThat(buffer.drain("notificationOpened")).hasSize(1)
+    }
+
+    @Test
+    fun drain_max_leavesRemainder() {
+        val buffer = MCEventBuffer(4, false)
+        buffer.add("urlAction", "a")
+        buffer.add("urlAction", "b")
+        buffer.add("urlAction", "c")
+
+        assertThat(buffer.drain(2, "urlAction").map { it.getString("name") }).containsExactly("a", "b")
+        assertThat(buffer.size("urlAction")).isEqualTo(1)
+    }
+
+    @Test
+    fun add_full_dropOldest() {
+        val buffer = MCEventBuffer(2, false)
+        buffer.add("urlAction", "a")
+        buffer.add("urlAction", "b")
+        buffer.add("urlAction", "c")
+
+        assertThat(buffer.drain("urlAction").map { it.getString("name") })
+                .containsExactly("b", "c")
+        buffer.stats().getJSONObject("urlAction").run {
+            assertThat(getLong("dropped")).isEqualTo(1)
+            assertThat(getLong("replayed")).isEqualTo(2)
+            assertThat(getInt("buffered")).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun add_full_dropNewest() {
+        val buffer = MCEventBuffer(2, true)
+        buffer.add("urlAction", "a")
+        buffer.add("urlAction", "b")
+        buffer.add("urlAction", "c")
+
+        assertThat(buffer.drain("urlAction").map { it.getString("name") })
+                .containsExactly("a", "b")
+        assertThat(buffer.stats().getJSONObject("urlAction").getLong("dropped")).isEqualTo(1)
+    }
+
+    @Test
+    fun requeue_putsEventsBackAheadInSequenceOrder() {
+        val buffer = MCEventBuffer(4, false)
+        val drained = List(2) {
+            val sequence = buffer.nextSequence()
+            JSONObject().put("type", "urlAction").put("sequence", sequence).put("name", "$it")
+                    .also { event -> buffer.add("urlAction", sequence, event) }
+        }
+        assertThat(buffer.drain("urlAction")).hasSize(2)
+        buffer.add("urlAction", "later")
+
+        val dropped = buffer.requeue(drained.reversed())
+
+        assertThat(dropped).isEmpty()
+        assertThat(buffer.drain("urlAction").map { it.getString("name") })
+                .containsExactly("0", "1", "later")
+    }
+
+    @Test
+    fun requeue_full_dropsRequeuedOldestEvent() {
+        val buffer = MCEventBuffer(1, false)
+        val sequence = buffer.nextSequence()
+        val old = JSONObject().put("type", "urlAction").put("sequence", sequence)
+        buffer.add("urlAction", sequence, old)
+        buffer.drain("urlAction")
+        buffer.add("urlAction", "later")
+
+        val dropped = buffer.requeue(listOf(old))
+
+        assertThat(dropped).containsExactly(old)
+        assertThat(buffer.drain("urlAction").map { it.getString("name") }).containsExactly("later")
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONObject
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+import java.util.concurrent.ExecutorService
+
+@RunWith(RobolectricTestRunner::class)
+class MCEventJournalTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    val executor = mock<ExecutorService> {
+        on { execute(any()) } doAnswer { (it.arguments[0] as Runnable).run() }
+    }
+
+    private fun journal(file: File) = MCEventJournal(file, executor)
+
+    private fun loadEntries(file: File): List<MCEventJournal.Entry> {
+        var loaded: List<MCEventJournal.Entry> = emptyList()
+        journal(file).load(MCEventJournal.LoadCallback { loaded = it })
+        return loaded
+    }
+
+    @Test
+    fun append_survivesNewInstance() {
+        // GIVEN
+        val file = File(folder.root, "events.journal")
+        journal(file).append("notificationOpened:m1", "notificationOpened",
+                JSONObject().put("type", "notificationOpened"))
+
+        // WHEN
+        val entries = loadEntries(file)
+
+        // THEN
+        assertThat(entries).hasSize(1)
+        entries[0].run {
+            assertThat(id).isEqualTo("notificationOpened:m1")
+            assertThat(type).isEqualTo("notificationOpened")
+            assertThat(event.getString("type")).isEqualTo("notificationOpened")
+        }
+    }
+
+    @Test
+    fun append_sameId_writtenOnce() {
+        val file = File(folder.root, "events.journal")
+        val journal = journal(file)
+        journal.append("a", "urlAction", JSONObject())
+        journal.append("a", "urlAction", JSONObject())
+
+        assertThat(file.readLines()).hasSize(1)
+    }
+
+    @Test
+    fun acknowledge_removesEntries() {
+        // GIVEN
+        val file = File(folder.root, "events.journal")
+        val journal = journal(file)
+        journal.append("a", "urlAction", JSONObject())
+        journal.append("b", "urlAction", JSONObject())
+
+        // WHEN
+        journal.acknowledge(listOf("a"))
+
+        // THEN
+        assertThat(loadEntries(file).map { it.id }).containsExactly("b")
+        // Loading compacts the acknowledged record away.
+        assertThat(file.readLines()).hasSize(1)
+    }
+
+    @Test
+    fun acknowledge_all_deletesFile() {
+        val file = File(folder.root, "events.journal")
+        val journal = journal(file)
+        journal.append("a", "urlAction", JSONObject())
+
+        journal.acknowledge(listOf("a"))
+
+        assertThat(file.exists()).isFalse()
+    }
+
+    @Test
+    fun load_tornRecord_skipped() {
+        // GIVEN
+        val file = File(folder.root, "events.journal")
+        journal(file).append("a", "urlAction", JSONObject())
+        file.appendText("{\"op\":\"add\",\"id\":\"b\",\"ty")
+
+        // WHEN
+        val entries = loadEntries(file)
+
+        // THEN
+        assertThat(entries.map { it.id }).containsExactly("a")
+    }
+
+    @Test
+    fun load_tornRecord_doesNotRewrite() {
+        // GIVEN
+        val file = File(folder.root, "events.journal")
+        journal(file).append("a", "urlAction", JSONObject())
+        file.appendText("{\"op\":\"add\",\"id\":\"b\",\"ty")
+        val length = file.length()
+
+        // WHEN
+        loadEntries(file)
+
+        // THEN
+        assertThat(file.length()).isEqualTo(length)
+    }
+
+    @Test
+    fun append_afterTornRecord_startsNewLine() {
+        // GIVEN
+        val file = File(folder.root, "events.journal")
+        journal(file).append("a", "urlAction", JSONObject())
+        file.appendText("{\"op\":\"add\",\"id\":\"b\",\"ty")
+        val journal = journal(file)
+        journal.load(MCEventJournal.LoadCallback { })
+
+        // WHEN
+        journal.append("c", "urlAction", JSONObject())
+
+        // THEN
+        assertThat(loadEntries(file).map { it.id }).containsExactly("a", "c")
+    }
+
+    @Test
+    fun append_pastMaxRecords_dropsOldest() {
+        // GIVEN
+        val file = File(folder.root, "events.journal")
+        val journal = journal(file)
+
+        // WHEN
+        repeat(257) { journal.append("e$it", "notificationOpened", JSONObject()) }
+
+        // THEN
+        loadEntries(file).run {
+            assertThat(this).hasSize(256)
+            assertThat(first().id).isEqualTo("e1")
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.messages.inbox.InboxMessage
+import com.salesforce.marketingcloud.messages.inbox.InboxMessageManager
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONException
+import org.json.JSONObject
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.Date
+
+@RunWith(RobolectricTestRunner::class)
+class MCInboxCacheTest {
+
+    val cache = MCInboxCache()
+
+    private fun message(id: String, sentAt: Long, read: Boolean = false) = mock<InboxMessage> {
+        on { id() } doReturn id
+        on { subject() } doReturn "Subject $id"
+        on { read() } doReturn read
+        on { sendDateUtc() } doReturn Date(sentAt)
+        on { customKeys() } doReturn mapOf("key" to "value")
+    }
+
+    private fun page(manager: InboxMessageManager, filter: String = MCInboxCache.ALL,
+            cursor: String? = null, limit: Int = 2) =
+            JSONObject(cache.page(manager, filter, cursor, limit))
+
+    private fun ids(page: JSONObject) = page.getJSONArray("messages").run {
+        (0 until length()).map { getJSONObject(it).getString("id") }
+    }
+
+    @Test
+    fun page_newestFirstWithCursor() {
+        // GIVEN
+        val manager = mock<InboxMessageManager> {
+            on { messages } doReturn listOf(
+                    message("m1", 1000), message("m3", 3000), message("m2", 2000))
+        }
+
+        // WHEN
+        val first = page(manager)
+        val second = page(manager, cursor = first.getString("nextCursor"))
+
+        // THEN
+        assertThat(ids(first)).containsExactly("m3", "m2")
+        assertThat(first.getInt("total")).isEqualTo(3)
+        assertThat(ids(second)).containsExactly("m1")
+        assertThat(second.isNull("nextCursor")).isTrue()
+    }
+
+    @Test
+    fun page_servedFromCache() {
+        // GIVEN
+        val manager = mock<InboxMessageManager> {
+            on { messages } doReturn listOf(message("m1", 1000))
+        }
+        page(manager)
+
+        // WHEN
+        page(manager)
+
+        // THEN
+        verify(manager, times(1)).messages
+        assertThat(cache.stats().getLong("hits")).isEqualTo(1)
+    }
+
+    @Test
+    fun invalidate_rebuildsWithNewVersion() {
+        // GIVEN
+        val manager = mock<InboxMessageManager> {
+            on { messages } doReturn listOf(message("m1", 1000))
+        }
+        val before = page(manager)
+        whenever(manager.messages).thenReturn(listOf(message("m1", 1000), message("m2", 2000)))
+
+        // WHEN
+        cache.invalidate()
+        val after = page(manager)
+
+        // THEN
+        assertThat(ids(after)).containsExactly("m2", "m1")
+        assertThat(after.getLong("version")).isGreaterThan(before.getLong("version"))
+    }
+
+    @Test
+    fun cursor_stableWhenMessagesChange() {
+        // GIVEN
+        val manager = mock<InboxMessageManager> {
+            on { messages } doReturn listOf(
+                    message("m4", 4000), message("m3", 3000), message("m2", 2000),
+                    message("m1", 1000))
+        }
+        val first = page(manager)
+        // m4 is deleted and a newer m5 arrives before the next page is read.
+        whenever(manager.messages).thenReturn(listOf(
+                message("m5", 5000), message("m3", 3000), message("m2", 2000),
+                message("m1", 1000)))
+        cache.invalidate()
+
+        // WHEN
+        val second = page(manager, cursor = first.getString("nextCursor"))
+
+        // THEN
+        assertThat(ids(first)).containsExactly("m4", "m3")
+        assertThat(ids(second)).containsExactly("m2", "m1")
+    }
+
+    @Test
+    fun filter_readsMatchingList() {
+        // GIVEN
+        val manager = mock<InboxMessageManager> {
+            on { unreadMessages } doReturn listOf(message("m1", 1000))
+        }
+
+        // WHEN
+        val result = page(manager, filter = MCInboxCache.UNREAD)
+
+        // THEN
+        assertThat(ids(result)).containsExactly("m1")
+        verify(manager, never()).messages
+    }
+
+    @Test(expected = JSONException::class)
+    fun filter_unknown_throws() {
+        page(mock(), filter = "archived")
+    }
+
+    @Test(expected = JSONException::class)
+    fun cursor_invalid_throws() {
+        page(mock<InboxMessageManager> {
+            on { messages } doReturn listOf(message("m1", 1000))
+        }, cursor = "not-a-cursor")
+    }
+
+    @Test
+    fun limit_cappedAtMaxPageSize() {
+        // GIVEN
+        val manager = mock<InboxMessageManager> {
+            on { messages } doReturn (1..250).map { message("m$it", it * 1000L) }
+        }
+
+        // WHEN
+        val result = page(manager, limit = 1000)
+
+        // THEN
+        assertThat(result.getJSONArray("messages").length()).isEqualTo(MCInboxCache.MAX_PAGE_SIZE)
+        assertThat(result.getInt("total")).isEqualTo(250)
+    }
+
+    @Test
+    fun toJson_matchesMessage() {
+        // WHEN
+        val json = JSONObject(MCInboxCache.toJson(message("m1", 1000, read = true)))
+
+        // THEN
+        assertThat(json.getString("id")).isEqualTo("m1")
+        assertThat(json.getString("subject")).isEqualTo("Subject m1")
+        assertThat(json.getBoolean("read")).isTrue()
+        assertThat(json.getLong("sendDateUtc")).isEqualTo(1000L)
+        assertThat(json.getJSONObject("customKeys").getString("key")).isEqualTo("value")
+        assertThat(json.has("title")).isFalse()
+    }
+}
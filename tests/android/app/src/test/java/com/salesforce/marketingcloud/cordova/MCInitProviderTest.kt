@@ -26,7 +26,13 @@
 
 package com.salesforce.marketingcloud.cordova
 
+import android.content.pm.ApplicationInfo
+import android.net.Uri
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.verifyZeroInteractions
 import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.After
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.robolectric.RobolectricTestRunner
@@ -37,6 +43,16 @@ import org.robolectric.annotation.Config
 @Config(shadows = [ShadowMarketingCloudSdk::class])
 class MCInitProviderTest {
 
+    @After
+    fun tearDown() {
+        MCSdkInitializer.reset()
+        ShadowMarketingCloudSdk.mostRecentInitInvocation = null
+        RuntimeEnvironment.application.applicationInfo.flags =
+                RuntimeEnvironment.application.applicationInfo.flags and
+                        ApplicationInfo.FLAG_DEBUGGABLE.inv()
+        MCActionMetrics.reset()
+    }
+
     @Test
     fun provider_onCreate_initializesMarketingCloudSdk_withListeners() {
         val initProvider = MCInitProvider()
@@ -47,4 +63,80 @@ class MCInitProviderTest {
             assertThat(listener).isEqualTo(initProvider)
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun readMode_noMetaData_eager() {
+        assertThat(MCSdkInitializer.readMode(RuntimeEnvironment.application))
+                .isEqualTo(MCSdkInitializer.MODE_EAGER)
+    }
+
+    @Test
+    fun lazyMode_initializesOnDemand() {
+        // GIVEN
+        val initProvider = MCInitProvider()
+        MCSdkInitializer.start(RuntimeEnvironment.application, MCSdkInitializer.MODE_LAZY,
+                initProvider)
+        val task = mock<Runnable>()
+        MCSdkInitializer.runWhenStarted(task)
+
+        assertThat(ShadowMarketingCloudSdk.mostRecentInitInvocation).isNull()
+        assertThat(MCSdkInitializer.isPending()).isTrue()
+        verifyZeroInteractions(task)
+
+        // WHEN
+        MCInitProvider.ensureInitialized()
+
+        // THEN
+        assertThat(ShadowMarketingCloudSdk.mostRecentInitInvocation.listener).isEqualTo(initProvider)
+        assertThat(MCSdkInitializer.isPending()).isFalse()
+        verify(task).run()
+    }
+
+    @Test
+    fun eagerMode_notPending_runsTasksImmediately() {
+        MCSdkInitializer.start(RuntimeEnvironment.application, MCSdkInitializer.MODE_EAGER,
+                MCInitProvider())
+        val task = mock<Runnable>()
+
+        MCSdkInitializer.runWhenStarted(task)
+
+        assertThat(ShadowMarketingCloudSdk.mostRecentInitInvocation).isNotNull()
+        assertThat(MCSdkInitializer.isPending()).isFalse()
+        verify(task).run()
+    }
+
+    @Test
+    fun query_metrics_debuggable_rowPerStage() {
+        // GIVEN
+        RuntimeEnvironment.application.applicationInfo.flags =
+                RuntimeEnvironment.application.applicationInfo.flags or
+                        ApplicationInfo.FLAG_DEBUGGABLE
+        val metrics = MCActionRegistry.get("getTags")!!.metrics()
+        metrics.run.record(2_000)
+        metrics.recordSuccess()
+        val initProvider = MCInitProvider()
+        initProvider.attachInfo(RuntimeEnvironment.application, null)
+
+        // WHEN
+        val cursor = initProvider.query(Uri.parse("content://test/metrics"), null, null, null,
+                null)!!
+
+        // THEN
+        assertThat(cursor.count).isEqualTo(3)
+        cursor.moveToLast()
+        assertThat(cursor.getString(cursor.getColumnIndex("action"))).isEqualTo("getTags")
+        assertThat(cursor.getString(cursor.getColumnIndex("stage"))).isEqualTo("run")
+        assertThat(cursor.getLong(cursor.getColumnIndex("count"))).isEqualTo(1)
+        assertThat(cursor.getLong(cursor.getColumnIndex("success"))).isEqualTo(1)
+        assertThat(cursor.getLong(cursor.getColumnIndex("max_us"))).isEqualTo(2)
+    }
+
+    @Test
+    fun query_metrics_notDebuggable_null() {
+        val initProvider = MCInitProvider()
+        initProvider.attachInfo(RuntimeEnvironment.application, null)
+
+        assertThat(initProvider.query(Uri.parse("content://test/metrics"), null, null, null, null))
+                .isNull()
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MCJsonWriterTest {
+
+    val awkward = "quote\" backslash\\ slash/ </script> tab\t newline\n nul\u0000 " +
+            "separator\u2028\u2029 emoji\uD83D\uDE00 accent\u00e9"
+
+    @Test
+    fun writeMap_decodesLikeFromMap() {
+        // GIVEN
+        val map = linkedMapOf("FirstName" to "Jane", "awkward" to awkward, "empty" to "")
+
+        // WHEN
+        val json = MCJsonWriter.writeMap(map)
+
+        // THEN
+        assertThat(JSONObject(json).toString())
+                .isEqualTo(MCBuiltInActions.fromMap(map).toString())
+        assertThat(JSONObject(json).getString("awkward")).isEqualTo(awkward)
+    }
+
+    @Test
+    fun writeMap_skipsNulls() {
+        val map = linkedMapOf<String?, String?>("a" to "1", "b" to null, null to "2")
+
+        assertThat(MCJsonWriter.writeMap(map)).isEqualTo("{\"a\":\"1\"}")
+    }
+
+    @Test
+    fun writeMap_empty() {
+        assertThat(MCJsonWriter.writeMap(null)).isEqualTo("{}")
+        assertThat(MCJsonWriter.writeMap(emptyMap())).isEqualTo("{}")
+    }
+
+    @Test
+    fun writeStrings_decodesLikeFromCollection() {
+        // GIVEN
+        val tags = listOf("Cordova", awkward, null, "")
+
+        // WHEN
+        val json = MCJsonWriter.writeStrings(tags)
+
+        // THEN
+        JSONArray(json).run {
+            assertThat(length()).isEqualTo(4)
+            assertThat(getString(0)).isEqualTo("Cordova")
+            assertThat(getString(1)).isEqualTo(awkward)
+            assertThat(isNull(2)).isTrue()
+            assertThat(getString(3)).isEqualTo("")
+        }
+        assertThat(MCJsonWriter.writeStrings(null)).isEqualTo("[]")
+    }
+
+    @Test
+    fun writeString_escapesLineSeparators() {
+        val out = StringBuilder()
+
+        MCJsonWriter.writeString(out, "a\u2028b\u2029c\u001f")
+
+        assertThat(out.toString()).isEqualTo("\"a\\u2028b\\u2029c\\u001f\"")
+    }
+
+    @Test
+    fun largeResult_notKeptInPool() {
+        // GIVEN
+        val large = mapOf("key" to "x".repeat(MCJsonWriter.MAX_POOLED_CAPACITY * 2))
+
+        // WHEN
+        val first = MCJsonWriter.writeMap(large)
+        val second = MCJsonWriter.writeMap(mapOf("key" to "value"))
+
+        // THEN
+        assertThat(first).hasSize(MCJsonWriter.MAX_POOLED_CAPACITY * 2 + 10)
+        assertThat(second).isEqualTo("{\"key\":\"value\"}")
+    }
+}
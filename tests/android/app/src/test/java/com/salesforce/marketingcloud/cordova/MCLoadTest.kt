@@ -0,0 +1,273 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import org.apache.cordova.CallbackContext
+import org.apache.cordova.PluginResult
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Fires tens of thousands of concurrent [MCCordovaPlugin.execute] calls at a
+ * [FakeMarketingCloudSdk] through the plugin's real executor lanes, then checks that every call
+ * completed, that the SDK ends in the expected state and that writes reached it in order.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCLoadTest {
+
+    val callers = 8
+    val fake = FakeMarketingCloudSdk()
+    val plugin = MCCordovaPlugin()
+    val callerPool = Executors.newFixedThreadPool(callers)
+
+    @Before
+    fun setup() {
+        fake.install()
+        MCPluginConfig.set(MCPluginConfig().apply {
+            readThreads = 4
+            writeThreads = 4
+            readQueueSize = 100_000
+            writeQueueSize = 100_000
+        })
+        plugin.actionExecutor = MCActionExecutor.create(MCPluginConfig.get())
+    }
+
+    @After
+    fun tearDown() {
+        callerPool.shutdownNow()
+        plugin.onDestroy()
+        ShadowMarketingCloudSdk.reset()
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun concurrentAttributeWrites_keepPerKeyOrder() {
+        // GIVEN
+        val keysPerCaller = 4
+        val writesPerKey = 800
+        val calls = callers * keysPerCaller * writesPerKey
+        val callbackContext = CountingCallbackContext(calls)
+
+        // WHEN
+        val startNanos = System.nanoTime()
+        repeat(callers) { caller ->
+            callerPool.execute {
+                for (value in 1..writesPerKey) {
+                    for (key in 0 until keysPerCaller) {
+                        plugin.execute("setAttribute",
+                                JSONArray(listOf("caller$caller-key$key", value.toString())),
+                                callbackContext)
+                    }
+                }
+            }
+        }
+
+        // THEN
+        callbackContext.await()
+        reportThroughput("setAttribute", calls, startNanos)
+        assertThat(callbackContext.errors.get()).isEqualTo(0)
+        assertThat(callbackContext.successes.get()).isEqualTo(calls)
+        assertThat(fake.commitCount.get()).isEqualTo(calls)
+
+        val attributes = fake.attributes()
+        assertThat(attributes).hasSize(callers * keysPerCaller)
+        assertThat(attributes.values).containsOnly(writesPerKey.toString())
+
+        // Each key's values reached the SDK in the order they were set.
+        fake.history().groupBy { it.substringBefore('=') }.values.forEach { writes ->
+            val values = writes.map { it.substringAfter('=').toInt() }
+            assertThat(values).isEqualTo((1..writesPerKey).toList())
+        }
+    }
+
+    @Test
+    fun concurrentTagWritesAndReads_finalStateMatches() {
+        // GIVEN
+        val tagsPerCaller = 50
+        val rounds = 50
+        // Each round adds and removes every tag, and reads the tags once.
+        val calls = callers * rounds * (tagsPerCaller * 2 + 1)
+        val callbackContext = CountingCallbackContext(calls)
+
+        // WHEN
+        val startNanos = System.nanoTime()
+        repeat(callers) { caller ->
+            callerPool.execute {
+                for (round in 1..rounds) {
+                    for (tag in 0 until tagsPerCaller) {
+                        plugin.execute("addTag", JSONArray(listOf("caller$caller-tag$tag")),
+                                callbackContext)
+                    }
+                    plugin.execute("getTags", JSONArray(), callbackContext)
+                    // Every tag is removed again, except the odd ones in the last round.
+                    for (tag in 0 until tagsPerCaller) {
+                        val name = if (round == rounds && tag % 2 == 1) {
+                            "caller$caller-never-added"
+                        } else {
+                            "caller$caller-tag$tag"
+                        }
+                        plugin.execute("removeTag", JSONArray(listOf(name)), callbackContext)
+                    }
+                }
+            }
+        }
+
+        // THEN
+        callbackContext.await()
+        reportThroughput("addTag/removeTag/getTags", calls, startNanos)
+        assertThat(callbackContext.errors.get()).isEqualTo(0)
+        assertThat(callbackContext.successes.get()).isEqualTo(calls)
+
+        val expected = (0 until callers).flatMap { caller ->
+            (1 until tagsPerCaller step 2).map { "caller$caller-tag$it" }
+        }
+        assertThat(fake.tags()).isEqualTo(expected.toSet())
+    }
+
+    @Test
+    fun contactKeyChanges_orderedWithAllWrites() {
+        // GIVEN
+        val writes = 10_000
+        val callbackContext = CountingCallbackContext(writes)
+
+        // WHEN
+        // A single caller, as the WebView makes its calls, so every write has a defined order.
+        val submitted = ArrayList<String>()
+        callerPool.submit(Runnable {
+            for (i in 0 until writes) {
+                if (i % 500 == 0) {
+                    submitted.add("setContactKey:contact$i")
+                    plugin.execute("setContactKey", JSONArray(listOf("contact$i")),
+                            callbackContext)
+                } else {
+                    val key = "key${i % 16}"
+                    submitted.add("setAttribute:$key=$i")
+                    plugin.execute("setAttribute", JSONArray(listOf(key, i.toString())),
+                            callbackContext)
+                }
+            }
+        }).get()
+
+        // THEN
+        callbackContext.await()
+        assertThat(callbackContext.errors.get()).isEqualTo(0)
+        assertThat(fake.contactKey()).isEqualTo("contact9500")
+
+        // Writes between two contact key changes may be reordered across keys, never across a
+        // contact key change.
+        val history = fake.history()
+        assertThat(history).hasSize(writes)
+        assertThat(segments(history)).isEqualTo(segments(submitted))
+    }
+
+    @Test
+    fun overload_everyCallCompletesOnce() {
+        // GIVEN
+        fake.latencyMs = 1
+        MCPluginConfig.get().writeQueueSize = 64
+        plugin.actionExecutor = MCActionExecutor.create(MCPluginConfig.get())
+        val callsPerCaller = 1_250
+        val calls = callers * callsPerCaller
+        val callbackContext = CountingCallbackContext(calls)
+
+        // WHEN
+        repeat(callers) { caller ->
+            callerPool.execute {
+                for (i in 0 until callsPerCaller) {
+                    plugin.execute("setAttribute",
+                            JSONArray(listOf("caller$caller-key${i % 4}", i.toString())),
+                            callbackContext)
+                }
+            }
+        }
+
+        // THEN
+        callbackContext.await()
+        assertThat(callbackContext.successes.get() + callbackContext.errors.get())
+                .isEqualTo(calls)
+        assertThat(callbackContext.errors.get()).isGreaterThan(0)
+        assertThat(fake.commitCount.get()).isEqualTo(callbackContext.successes.get())
+        assertThat(callbackContext.errorMessages.all { it.contains("overloaded") }).isTrue()
+    }
+
+    /** Splits changes into contact key changes and the sets of changes between them. */
+    private fun segments(changes: List<String>): List<Set<String>> {
+        val segments = mutableListOf(mutableSetOf<String>())
+        for (change in changes) {
+            if (change.startsWith("setContactKey")) {
+                segments.add(mutableSetOf(change))
+                segments.add(mutableSetOf())
+            } else {
+                segments.last().add(change)
+            }
+        }
+        return segments
+    }
+
+    private fun reportThroughput(name: String, calls: Int, startNanos: Long) {
+        val seconds = (System.nanoTime() - startNanos) / 1e9
+        println("$name: $calls calls in ${"%.2f".format(seconds)}s, " +
+                "${(calls / seconds).toInt()} calls/s")
+        // Far below what the lanes sustain, so only a stall or lost wake-up fails it.
+        assertThat(calls / seconds).isGreaterThan(500.0)
+    }
+
+    /** Counts results from many calls; a shared mock would record every one of them. */
+    private class CountingCallbackContext(calls: Int) : CallbackContext("load", null) {
+        private val latch = CountDownLatch(calls)
+        val successes = AtomicInteger()
+        val errors = AtomicInteger()
+        val errorMessages: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+        override fun sendPluginResult(pluginResult: PluginResult) {
+            if (pluginResult.status == PluginResult.Status.OK.ordinal) {
+                successes.incrementAndGet()
+            } else {
+                errors.incrementAndGet()
+                errorMessages.add(pluginResult.strMessage)
+            }
+            latch.countDown()
+        }
+
+        fun await() {
+            assertThat(latch.await(60, TimeUnit.SECONDS)).isTrue()
+            // Give a duplicate completion the chance to show up in the counts.
+            Thread.sleep(50)
+        }
+    }
+}
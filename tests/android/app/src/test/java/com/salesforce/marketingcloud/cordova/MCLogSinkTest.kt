@@ -0,0 +1,317 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.MCLogListener
+import org.apache.cordova.CallbackContext
+import org.apache.cordova.PluginResult
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCLogSinkTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    // Runs wake-ups immediately; delayed drains run when the test calls drain().
+    val scheduler = mock<ScheduledExecutorService> {
+        on { execute(any()) } doAnswer { (it.arguments[0] as Runnable).run() }
+    }
+    val callbackContext = mock<CallbackContext>()
+
+    private fun sink(capacity: Int = 8, maxFileBytes: Long = 1024 * 1024, fileCount: Int = 3,
+                     scheduler: ScheduledExecutorService = this.scheduler) =
+            MCLogSink(File(folder.root, "logs"), capacity, maxFileBytes, fileCount, 1000, scheduler)
+
+    private fun drain(scheduler: ScheduledExecutorService = this.scheduler) =
+            argumentCaptor<Runnable>().apply {
+                verify(scheduler, atLeastOnce()).schedule(capture(), eq(1000L),
+                        eq(TimeUnit.MILLISECONDS))
+            }.lastValue.run()
+
+    private fun logLines() = File(folder.root, "logs/sdk.log").readLines()
+
+    @After
+    fun tearDown() {
+        MCLogSink.reset()
+        ShadowMarketingCloudSdk.reset()
+    }
+
+    @Test
+    fun enable_attachesToSdkAtLowestLevel() {
+        // GIVEN
+        val sink = sink()
+
+        // WHEN
+        sink.enable(MCLogListener.INFO, MCLogSink.OFF, MCLogListener.DEBUG, callbackContext)
+
+        // THEN
+        assertThat(ShadowMarketingCloudSdk.getLogListener()).isSameAs(sink)
+        assertThat(ShadowMarketingCloudSdk.getLogLevel()).isEqualTo(MCLogListener.DEBUG)
+        assertThat(sink.isEnabled).isTrue()
+    }
+
+    @Test
+    fun out_writesRecordsAtOrAboveFileLevel_afterDrain() {
+        // GIVEN
+        val sink = sink()
+        sink.enable(MCLogListener.INFO, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        // WHEN
+        sink.out(MCLogListener.DEBUG, "Tag", "debug message", null)
+        sink.out(MCLogListener.WARN, "Tag", "warn message", null)
+        assertThat(File(folder.root, "logs/sdk.log").exists()).isFalse()
+        drain()
+
+        // THEN
+        assertThat(logLines()).hasSize(1)
+        assertThat(logLines()[0]).endsWith(" W/Tag: warn message")
+        assertThat(sink.stats().getLong("written")).isEqualTo(1)
+    }
+
+    @Test
+    fun out_halfFullBuffer_drainsWithoutWaiting() {
+        // GIVEN
+        val sink = sink(capacity = 8)
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        // WHEN
+        repeat(4) { sink.out(MCLogListener.INFO, "Tag", "message $it", null) }
+
+        // THEN
+        assertThat(logLines()).hasSize(4)
+    }
+
+    @Test
+    fun out_fasterThanDrained_dropsOldest() {
+        // GIVEN a scheduler that never runs the wake-ups
+        val idle = mock<ScheduledExecutorService>()
+        val sink = sink(capacity = 8, scheduler = idle)
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        // WHEN
+        repeat(20) { sink.out(MCLogListener.INFO, "Tag", "message $it", null) }
+        drain(idle)
+
+        // THEN
+        assertThat(logLines()).hasSize(8)
+        assertThat(logLines()[0]).endsWith("message 12")
+        assertThat(sink.stats().getLong("dropped")).isEqualTo(12)
+    }
+
+    @Test
+    fun out_includesStackTrace() {
+        val sink = sink()
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        sink.out(MCLogListener.ERROR, "Tag", "failed", IllegalStateException("boom"))
+        drain()
+
+        assertThat(logLines()[0]).endsWith(" E/Tag: failed")
+        assertThat(logLines()[1]).contains("IllegalStateException: boom")
+    }
+
+    @Test
+    fun out_pastMaxFileBytes_rotatesAndKeepsFileCount() {
+        // GIVEN
+        val sink = sink(capacity = 64, maxFileBytes = 100, fileCount = 2)
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        // WHEN
+        repeat(9) { sink.out(MCLogListener.INFO, "Tag", "a message of some length $it", null) }
+        drain()
+
+        // THEN
+        val dir = File(folder.root, "logs")
+        assertThat(dir.list()).containsOnly("sdk.log", "sdk.log.1")
+        assertThat(File(dir, "sdk.log.1").length()).isGreaterThanOrEqualTo(100)
+    }
+
+    @Test
+    fun stream_sendsBatchAtOrAboveStreamLevel() {
+        // GIVEN
+        val sink = sink()
+        sink.enable(MCLogSink.OFF, MCLogSink.OFF, MCLogListener.WARN, callbackContext)
+
+        // WHEN
+        sink.out(MCLogListener.INFO, "Tag", "info", null)
+        sink.out(MCLogListener.WARN, "Tag", "warn", null)
+        sink.out(MCLogListener.ERROR, "Tag", "error", null)
+        drain()
+
+        // THEN
+        argumentCaptor<PluginResult>().apply {
+            verify(callbackContext).sendPluginResult(capture())
+        }.firstValue.run {
+            assertThat(keepCallback).isTrue()
+            JSONArray(message).run {
+                assertThat(length()).isEqualTo(2)
+                assertThat(getJSONObject(0).getString("level")).isEqualTo("W")
+                assertThat(getJSONObject(0).getString("message")).isEqualTo("warn")
+                assertThat(getJSONObject(1).getString("tag")).isEqualTo("Tag")
+            }
+        }
+        assertThat(File(folder.root, "logs/sdk.log").exists()).isFalse()
+    }
+
+    @Test
+    fun disable_detachesAndWritesBufferedRecords() {
+        // GIVEN
+        val sink = sink()
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+        sink.out(MCLogListener.INFO, "Tag", "buffered", null)
+
+        // WHEN
+        sink.disable()
+        sink.out(MCLogListener.ERROR, "Tag", "after disable", null)
+        drain()
+
+        // THEN
+        assertThat(ShadowMarketingCloudSdk.getLogListener()).isNull()
+        assertThat(logLines()).hasSize(1)
+        assertThat(logLines()[0]).endsWith("buffered")
+    }
+
+    @Test
+    fun sendFiles_writesBufferedRecordsAndListsOldestFirst() {
+        // GIVEN
+        val sink = sink(capacity = 64, maxFileBytes = 100, fileCount = 3)
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+        repeat(5) { sink.out(MCLogListener.INFO, "Tag", "a message of some length $it", null) }
+
+        // WHEN
+        sink.sendFiles(callbackContext)
+
+        // THEN
+        argumentCaptor<JSONArray>().apply {
+            verify(callbackContext).success(capture())
+        }.firstValue.run {
+            assertThat(length()).isEqualTo(3)
+            assertThat(getString(0)).endsWith("sdk.log.2")
+            assertThat(getString(2)).endsWith("sdk.log")
+        }
+    }
+
+    @Test
+    fun out_pastBufferCapacity_reusesSlotsInOrder() {
+        // GIVEN
+        val sink = sink(capacity = 8)
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        // WHEN
+        repeat(12) { sink.out(MCLogListener.INFO, "Tag", "message $it", null) }
+
+        // THEN
+        assertThat(logLines().map { it.substringAfter(": ") })
+                .containsExactly(*Array(12) { "message $it" })
+        assertThat(sink.stats().getLong("dropped")).isEqualTo(0)
+    }
+
+    @Test
+    fun disable_afterVerboseLogging_restoresVerboseListener() {
+        // GIVEN
+        val verbose = MCLogListener.AndroidLogListener()
+        MCLogSink.setAppLogListener(verbose, MCLogListener.VERBOSE)
+        val sink = sink()
+        sink.enable(MCLogListener.WARN, MCLogSink.OFF, MCLogSink.OFF, null)
+
+        // WHEN
+        sink.disable()
+
+        // THEN
+        assertThat(ShadowMarketingCloudSdk.getLogListener()).isSameAs(verbose)
+        assertThat(ShadowMarketingCloudSdk.getLogLevel()).isEqualTo(MCLogListener.VERBOSE)
+    }
+
+    @Test
+    fun enable_newStream_endsPreviousStream() {
+        // GIVEN
+        val sink = sink()
+        sink.enable(MCLogSink.OFF, MCLogSink.OFF, MCLogListener.WARN, callbackContext)
+        val next = mock<CallbackContext>()
+
+        // WHEN
+        sink.enable(MCLogSink.OFF, MCLogSink.OFF, MCLogListener.WARN, next)
+
+        // THEN
+        argumentCaptor<JSONArray>().apply {
+            verify(callbackContext).success(capture())
+        }.firstValue.run {
+            assertThat(length()).isEqualTo(0)
+        }
+        verifyZeroInteractions(next)
+    }
+
+    @Test
+    fun disable_endsStream() {
+        // GIVEN
+        val sink = sink()
+        sink.enable(MCLogSink.OFF, MCLogSink.OFF, MCLogListener.WARN, callbackContext)
+
+        // WHEN
+        sink.disable()
+
+        // THEN
+        verify(callbackContext).success(any<JSONArray>())
+    }
+
+    @Test
+    fun release_closesFileAndStopsThread() {
+        // GIVEN
+        val sink = sink()
+        sink.enable(MCLogListener.VERBOSE, MCLogSink.OFF, MCLogSink.OFF, null)
+        sink.out(MCLogListener.INFO, "Tag", "buffered", null)
+
+        // WHEN
+        MCLogSink.release(sink)
+
+        // THEN
+        assertThat(logLines()).hasSize(1)
+        assertThat(sink.isEnabled).isFalse()
+        verify(scheduler).shutdown()
+    }
+
+    @Test
+    fun parseLevel() {
+        assertThat(MCLogSink.parseLevel("Debug", MCLogSink.OFF)).isEqualTo(MCLogListener.DEBUG)
+        assertThat(MCLogSink.parseLevel("off", MCLogListener.INFO)).isEqualTo(MCLogSink.OFF)
+        assertThat(MCLogSink.parseLevel("loud", MCLogListener.INFO)).isEqualTo(MCLogListener.INFO)
+        assertThat(MCLogSink.parseLevel(null, MCLogListener.INFO)).isEqualTo(MCLogListener.INFO)
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import com.salesforce.marketingcloud.registration.RegistrationManager
+import org.apache.cordova.CallbackContext
+import org.apache.cordova.PluginResult
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCPipelineTest {
+
+    val plugin = MCCordovaPlugin()
+    val directExecutorService = mock<ExecutorService> {
+        on { execute(any()) } doAnswer { (it.arguments[0] as? Runnable)?.run() }
+    }
+    val registrationEditor = mock<RegistrationManager.Editor>()
+    val registrationManager = mock<RegistrationManager> {
+        on { edit() } doReturn registrationEditor
+    }
+    val sdk = mock<MarketingCloudSdk> {
+        on { registrationManager } doReturn registrationManager
+    }
+    val callbackContext = mock<CallbackContext>()
+
+    @Before
+    fun setup() {
+        plugin.actionExecutor = MCActionExecutor(directExecutorService, directExecutorService)
+        whenever(registrationEditor.setAttribute(any(), any())).thenReturn(registrationEditor)
+        whenever(registrationEditor.addTag(any())).thenReturn(registrationEditor)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @After
+    fun tearDown() {
+        ShadowMarketingCloudSdk.reset()
+    }
+
+    private fun step(action: String, vararg args: Any) =
+            JSONObject().put("action", action).put("args", JSONArray(args.toList()))
+
+    private fun run(vararg steps: JSONObject) {
+        val parsed = MCPipeline.parse(JSONArray(steps.toList()), callbackContext)
+        MCPipeline.run(plugin, sdk, parsed!!, callbackContext)
+    }
+
+    private fun results(): JSONArray {
+        val result = argumentCaptor<PluginResult>().apply {
+            verify(callbackContext, timeout(5_000)).sendPluginResult(capture())
+        }.firstValue
+        assertThat(result.status).isEqualTo(PluginResult.Status.OK.ordinal)
+        return JSONArray(result.strMessage)
+    }
+
+    @Test
+    fun run_resultsInStepOrder() {
+        // GIVEN
+        whenever(registrationManager.contactKey).thenReturn("contact")
+        whenever(registrationManager.tags).thenReturn(setOf("tag1"))
+
+        // WHEN
+        run(step("getContactKey"), step("getTags"))
+
+        // THEN
+        results().run {
+            assertThat(length()).isEqualTo(2)
+            assertThat(getJSONObject(0).getBoolean("ok")).isTrue()
+            assertThat(getJSONObject(0).getString("value")).isEqualTo("contact")
+            assertThat(getJSONObject(1).getJSONArray("value").getString(0)).isEqualTo("tag1")
+        }
+    }
+
+    @Test
+    fun run_stepsShareTheResolvedSdk() {
+        // GIVEN
+        // Steps never resolve the SDK themselves.
+        ShadowMarketingCloudSdk.setInstance(null)
+        whenever(registrationManager.contactKey).thenReturn("contact")
+
+        // WHEN
+        run(step("getContactKey"), step("setAttribute", "key1", "val1"), step("getContactKey"))
+
+        // THEN
+        results().run {
+            for (i in 0 until length()) {
+                assertThat(getJSONObject(i).getBoolean("ok")).isTrue()
+            }
+        }
+        verify(registrationEditor).setAttribute("key1", "val1")
+    }
+
+    @Test
+    fun run_readAfterWrite_seesWrite() {
+        // GIVEN
+        whenever(registrationEditor.commit()).then {
+            whenever(registrationManager.attributes).thenReturn(mapOf("key1" to "val1"))
+            true
+        }
+
+        // WHEN
+        run(step("setAttribute", "key1", "val1"), step("getAttributes"))
+
+        // THEN
+        results().run {
+            assertThat(getJSONObject(1).getJSONObject("value").getString("key1"))
+                    .isEqualTo("val1")
+        }
+    }
+
+    @Test
+    fun run_writes_runInOrder() {
+        // WHEN
+        run(step("addTag", "tag1"), step("setAttribute", "key1", "val1"), step("addTag", "tag2"))
+
+        // THEN
+        assertThat(results().length()).isEqualTo(3)
+        inOrder(registrationEditor) {
+            verify(registrationEditor).addTag("tag1")
+            verify(registrationEditor).setAttribute("key1", "val1")
+            verify(registrationEditor).addTag("tag2")
+        }
+    }
+
+    @Test
+    fun run_consecutiveReads_runInParallel() {
+        // GIVEN
+        val readLane = Executors.newFixedThreadPool(2)
+        plugin.actionExecutor = MCActionExecutor(readLane, directExecutorService)
+        // Each read waits for the other, so they only complete if they run at the same time.
+        val bothReading = CountDownLatch(2)
+        whenever(registrationManager.attributes).then {
+            bothReading.countDown()
+            bothReading.await(5, TimeUnit.SECONDS)
+            mapOf("key1" to "val1")
+        }
+        whenever(registrationManager.tags).then {
+            bothReading.countDown()
+            bothReading.await(5, TimeUnit.SECONDS)
+            setOf("tag1")
+        }
+
+        try {
+            // WHEN
+            run(step("getAttributes"), step("getTags"))
+
+            // THEN
+            results()
+            assertThat(bothReading.count).isEqualTo(0)
+        } finally {
+            readLane.shutdownNow()
+        }
+    }
+
+    @Test
+    fun run_failedStep_reportedInPlace() {
+        // GIVEN
+        whenever(registrationManager.contactKey).thenReturn("contact")
+
+        // WHEN
+        // batchEdit without operations fails but does not stop the pipeline.
+        run(step("batchEdit"), step("getContactKey"))
+
+        // THEN
+        results().run {
+            assertThat(getJSONObject(0).getBoolean("ok")).isFalse()
+            assertThat(getJSONObject(0).getString("error"))
+                    .isEqualTo("batchEdit requires an array of operations")
+            assertThat(getJSONObject(1).getString("value")).isEqualTo("contact")
+        }
+        verify(registrationEditor, never()).commit()
+    }
+
+    @Test
+    fun run_rejectedWrite_reportedInPlace() {
+        // GIVEN
+        plugin.actionExecutor = MCActionExecutor(directExecutorService, directExecutorService, 0)
+
+        // WHEN
+        run(step("addTag", "tag1"))
+
+        // THEN
+        results().getJSONObject(0).run {
+            assertThat(getBoolean("ok")).isFalse()
+            assertThat(getString("error")).contains("'addTag' was rejected")
+        }
+        verify(registrationEditor, never()).addTag(any())
+    }
+
+    @Test
+    fun run_noSteps_emptyResult() {
+        // WHEN
+        run()
+
+        // THEN
+        assertThat(results().length()).isEqualTo(0)
+    }
+
+    @Test
+    fun parse_unsupportedAction_error() {
+        // WHEN
+        val steps = MCPipeline.parse(JSONArray().put(step("getTags"))
+                .put(step("registerEventsChannel")), callbackContext)
+
+        // THEN
+        assertThat(steps).isNull()
+        verify(callbackContext).error("Action 'registerEventsChannel' cannot run in a pipeline.")
+    }
+
+    @Test
+    fun parse_unknownAction_error() {
+        // WHEN
+        val steps = MCPipeline.parse(JSONArray().put(step("unknown")), callbackContext)
+
+        // THEN
+        assertThat(steps).isNull()
+        verify(callbackContext).error("Action 'unknown' cannot run in a pipeline.")
+    }
+
+    @Test
+    fun requiresSdk_onlyWhenAStepNeedsIt() {
+        // GIVEN
+        val withoutSdk = MCPipeline.parse(JSONArray().put(step("getPluginStats")), callbackContext)
+        val withSdk = MCPipeline.parse(JSONArray().put(step("getPluginStats"))
+                .put(step("getTags")), callbackContext)
+
+        // THEN
+        assertThat(MCPipeline.requiresSdk(withoutSdk!!)).isFalse()
+        assertThat(MCPipeline.requiresSdk(withSdk!!)).isTrue()
+    }
+}
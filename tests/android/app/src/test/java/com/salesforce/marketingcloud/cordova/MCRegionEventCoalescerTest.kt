@@ -0,0 +1,251 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import android.os.SystemClock
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.location.LatLon
+import com.salesforce.marketingcloud.messages.Region
+import com.salesforce.marketingcloud.messages.geofence.GeofenceMessageResponse
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONObject
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+class MCRegionEventCoalescerTest {
+
+    val plugin = mock<MCCordovaPlugin>()
+    val scheduler = mock<ScheduledExecutorService>()
+    val coalescer = MCRegionEventCoalescer(plugin, 5000, 30000, scheduler)
+
+    private fun region(id: String) = mock<Region> {
+        on { id() } doReturn id
+        on { name() } doReturn "Region $id"
+        on { radius() } doReturn 100
+        on { center() } doReturn mock<LatLon> {
+            on { latitude() } doReturn 37.79
+            on { longitude() } doReturn -122.39
+        }
+    }
+
+    private fun advance(ms: Long) {
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + ms)
+    }
+
+    /** Runs the flushes scheduled so far, oldest first, and returns their delays. */
+    private fun runScheduled(times: Int): List<Long> {
+        val tasks = argumentCaptor<Runnable>()
+        val delays = argumentCaptor<Long>()
+        verify(scheduler, times(times))
+                .schedule(tasks.capture(), delays.capture(), eq(TimeUnit.MILLISECONDS))
+        tasks.lastValue.run()
+        return delays.allValues
+    }
+
+    private fun sentEvents(type: String, times: Int) = argumentCaptor<JSONObject>().apply {
+        verify(plugin, times(times)).sendRegionEvent(eq(type), capture())
+    }.allValues
+
+    @Test
+    fun transition_sentAfterDebounce() {
+        // GIVEN
+        coalescer.onTransitionEvent(1, region("r1"))
+        verify(plugin, never()).sendRegionEvent(any(), any())
+
+        // WHEN
+        advance(5000)
+        val delays = runScheduled(1)
+
+        // THEN
+        assertThat(delays[0]).isEqualTo(5000L)
+        sentEvents(MCCordovaPlugin.EVENT_REGION_TRANSITION, 1)[0].run {
+            assertThat(getString("type")).isEqualTo("regionTransition")
+            assertThat(getString("transition")).isEqualTo("entered")
+            assertThat(getInt("reports")).isEqualTo(1)
+            getJSONObject("region").run {
+                assertThat(getString("id")).isEqualTo("r1")
+                assertThat(getInt("radius")).isEqualTo(100)
+                assertThat(getDouble("latitude")).isEqualTo(37.79)
+            }
+        }
+    }
+
+    @Test
+    fun repeatedReports_sentAsOneEvent() {
+        // GIVEN
+        val region = region("r1")
+        coalescer.onTransitionEvent(1, region)
+        advance(1000)
+        coalescer.onTransitionEvent(1, region)
+        coalescer.onTransitionEvent(1, region)
+
+        // WHEN
+        advance(4000)
+        runScheduled(1)
+
+        // THEN
+        assertThat(sentEvents(MCCordovaPlugin.EVENT_REGION_TRANSITION, 1)[0].getInt("reports"))
+                .isEqualTo(3)
+        assertThat(coalescer.stats().getLong("replaced")).isEqualTo(2)
+    }
+
+    @Test
+    fun flapBackToSentState_dropped() {
+        // GIVEN
+        val region = region("r1")
+        coalescer.onTransitionEvent(1, region)
+        advance(5000)
+        runScheduled(1)
+        advance(60000)
+
+        // WHEN
+        coalescer.onTransitionEvent(2, region)
+        advance(1000)
+        coalescer.onTransitionEvent(1, region)
+        advance(5000)
+        runScheduled(2)
+
+        // THEN
+        sentEvents(MCCordovaPlugin.EVENT_REGION_TRANSITION, 1)
+        coalescer.stats().run {
+            assertThat(getLong("suppressed")).isEqualTo(1)
+            assertThat(getLong("pending")).isEqualTo(0)
+        }
+    }
+
+    @Test
+    fun transitionSoonAfterSent_rateLimited() {
+        // GIVEN
+        val region = region("r1")
+        coalescer.onTransitionEvent(1, region)
+        advance(5000)
+        runScheduled(1)
+
+        // WHEN
+        advance(1000)
+        coalescer.onTransitionEvent(2, region)
+
+        // THEN
+        val delays = argumentCaptor<Long>().apply {
+            verify(scheduler, times(2)).schedule(any(), capture(), eq(TimeUnit.MILLISECONDS))
+        }.allValues
+        assertThat(delays[1]).isEqualTo(29000L)
+        assertThat(coalescer.stats().getLong("rateLimited")).isEqualTo(1)
+    }
+
+    @Test
+    fun stateChangeWhileWaiting_restartsDebounce() {
+        // GIVEN
+        val region = region("r1")
+        coalescer.onTransitionEvent(1, region)
+        advance(3000)
+        coalescer.onTransitionEvent(2, region)
+
+        // WHEN
+        advance(2000)
+        runScheduled(1)
+
+        // THEN
+        verify(plugin, never()).sendRegionEvent(any(), any())
+        val delays = argumentCaptor<Long>().apply {
+            verify(scheduler, times(2)).schedule(any(), capture(), eq(TimeUnit.MILLISECONDS))
+        }.allValues
+        assertThat(delays[1]).isEqualTo(3000L)
+
+        advance(3000)
+        runScheduled(2)
+        assertThat(sentEvents(MCCordovaPlugin.EVENT_REGION_TRANSITION, 1)[0]
+                .getString("transition")).isEqualTo("exited")
+    }
+
+    @Test
+    fun rescheduleRejected_clearsScheduled() {
+        // GIVEN
+        val region = region("r1")
+        coalescer.onTransitionEvent(1, region)
+        advance(3000)
+        coalescer.onTransitionEvent(2, region)
+        advance(2000)
+        whenever(scheduler.schedule(any<Runnable>(), any(), any()))
+                .thenThrow(RejectedExecutionException())
+
+        // WHEN
+        runScheduled(1)
+
+        // THEN
+        reset(scheduler)
+        coalescer.onTransitionEvent(1, region)
+        verify(scheduler).schedule(any<Runnable>(), eq(5000L), eq(TimeUnit.MILLISECONDS))
+    }
+
+    @Test
+    fun regions_coalescedIndependently() {
+        // WHEN
+        coalescer.onTransitionEvent(1, region("r1"))
+        coalescer.onTransitionEvent(1, region("r2"))
+
+        // THEN
+        verify(scheduler, times(2)).schedule(any(), eq(5000L), eq(TimeUnit.MILLISECONDS))
+        assertThat(coalescer.stats().getLong("pending")).isEqualTo(2)
+    }
+
+    @Test
+    fun geofenceResponses_latestSent() {
+        // GIVEN
+        coalescer.onGeofenceMessageResponse(mock<GeofenceMessageResponse> {
+            on { fences() } doReturn listOf(region("r1"))
+        })
+        coalescer.onGeofenceMessageResponse(mock<GeofenceMessageResponse> {
+            on { fences() } doReturn listOf(region("r2"), region("r3"))
+        })
+
+        // WHEN
+        advance(5000)
+        runScheduled(1)
+
+        // THEN
+        sentEvents(MCCordovaPlugin.EVENT_GEOFENCE_MESSAGE_RESPONSE, 1)[0].run {
+            assertThat(getJSONArray("fences").length()).isEqualTo(2)
+            assertThat(getJSONArray("fences").getJSONObject(0).getString("id")).isEqualTo("r2")
+            assertThat(getInt("reports")).isEqualTo(2)
+        }
+    }
+
+    @Test
+    fun unknownTransition_ignored() {
+        // WHEN
+        coalescer.onTransitionEvent(99, region("r1"))
+
+        // THEN
+        verifyZeroInteractions(scheduler)
+        assertThat(coalescer.stats().getLong("received")).isEqualTo(0)
+    }
+}
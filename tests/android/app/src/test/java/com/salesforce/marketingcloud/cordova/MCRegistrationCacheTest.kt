@@ -0,0 +1,81 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.Test
+
+class MCRegistrationCacheTest {
+
+    val cache = MCRegistrationCache()
+
+    @Test
+    fun put_currentGeneration_storesValue() {
+        cache.put(MCRegistrationCache.CONTACT_KEY, cache.generation(MCRegistrationCache.CONTACT_KEY),
+                "contactKey")
+
+        assertThat(cache.contains(MCRegistrationCache.CONTACT_KEY)).isTrue()
+        assertThat(cache.get<String>(MCRegistrationCache.CONTACT_KEY)).isEqualTo("contactKey")
+    }
+
+    @Test
+    fun put_null_isCached() {
+        cache.put(MCRegistrationCache.SYSTEM_TOKEN, cache.generation(MCRegistrationCache.SYSTEM_TOKEN),
+                null)
+
+        assertThat(cache.contains(MCRegistrationCache.SYSTEM_TOKEN)).isTrue()
+        assertThat(cache.get<String>(MCRegistrationCache.SYSTEM_TOKEN)).isNull()
+        assertThat(cache.lookup(MCRegistrationCache.SYSTEM_TOKEN)).isNull()
+    }
+
+    @Test
+    fun lookup_empty_miss() {
+        assertThat(cache.lookup(MCRegistrationCache.CONTACT_KEY)).isSameAs(MCRegistrationCache.MISS)
+    }
+
+    @Test
+    fun put_afterInvalidation_discardsStaleValue() {
+        val generation = cache.generation(MCRegistrationCache.TAGS)
+        cache.invalidate(MCRegistrationCache.TAGS)
+
+        cache.put(MCRegistrationCache.TAGS, generation, "stale")
+
+        assertThat(cache.contains(MCRegistrationCache.TAGS)).isFalse()
+    }
+
+    @Test
+    fun invalidate_onlyAffectsEntry() {
+        cache.put(MCRegistrationCache.TAGS, cache.generation(MCRegistrationCache.TAGS), "tags")
+        cache.put(MCRegistrationCache.ATTRIBUTES, cache.generation(MCRegistrationCache.ATTRIBUTES),
+                "attributes")
+
+        cache.invalidate(MCRegistrationCache.ATTRIBUTES)
+
+        assertThat(cache.contains(MCRegistrationCache.ATTRIBUTES)).isFalse()
+        assertThat(cache.contains(MCRegistrationCache.TAGS)).isTrue()
+    }
+}
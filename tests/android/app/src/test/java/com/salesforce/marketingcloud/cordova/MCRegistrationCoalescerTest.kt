@@ -0,0 +1,227 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import com.salesforce.marketingcloud.registration.RegistrationManager
+import org.apache.cordova.CallbackContext
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+class MCRegistrationCoalescerTest {
+
+    val scheduler = mock<ScheduledExecutorService>()
+    val sdk = mock<MarketingCloudSdk>()
+    val registrationManager = mock<RegistrationManager>()
+    val registrationEditor = mock<RegistrationManager.Editor>()
+    val cache = MCRegistrationCache()
+    val coalescer = MCRegistrationCoalescer(500, cache, scheduler)
+
+    @Before
+    fun setup() {
+        whenever(registrationEditor.addTag(any())).thenReturn(registrationEditor)
+        whenever(registrationEditor.removeTag(any())).thenReturn(registrationEditor)
+        whenever(registrationEditor.setAttribute(any(), any())).thenReturn(registrationEditor)
+        whenever(registrationEditor.clearAttribute(any())).thenReturn(registrationEditor)
+        whenever(registrationEditor.commit()).thenReturn(true)
+        whenever(registrationManager.edit()).thenReturn(registrationEditor)
+        whenever(sdk.registrationManager).thenReturn(registrationManager)
+    }
+
+    @Test
+    fun edits_withinWindow_committedOnce() {
+        // GIVEN
+        val callbacks = List(4) { mock<CallbackContext>() }
+        coalescer.setAttribute(sdk, "lastScreen", "home", callbacks[0])
+        coalescer.setAttribute(sdk, "lastScreen", "settings", callbacks[1])
+        coalescer.addTag(sdk, "tag1", callbacks[2])
+        coalescer.clearAttribute(sdk, "other", callbacks[3])
+
+        // WHEN
+        argumentCaptor<Runnable>().apply {
+            verify(scheduler, times(1)).schedule(capture(), eq(500L), eq(TimeUnit.MILLISECONDS))
+        }.firstValue.run()
+
+        // THEN
+        verify(registrationManager, times(1)).edit()
+        verify(registrationEditor).setAttribute("lastScreen", "settings")
+        verify(registrationEditor, never()).setAttribute("lastScreen", "home")
+        verify(registrationEditor).addTag("tag1")
+        verify(registrationEditor).clearAttribute("other")
+        verify(registrationEditor, times(1)).commit()
+        callbacks.forEach { verify(it).success(1) }
+        assertThat(coalescer.stats().getLong("commitsSaved")).isEqualTo(3)
+    }
+
+    @Test
+    fun addThenRemoveExistingTag_committedAsRemove() {
+        // GIVEN
+        whenever(registrationManager.tags).thenReturn(setOf("tag1"))
+        val callbacks = List(2) { mock<CallbackContext>() }
+        coalescer.addTag(sdk, "tag1", callbacks[0])
+        coalescer.removeTag(sdk, "tag1", callbacks[1])
+
+        // WHEN
+        coalescer.flush()
+
+        // THEN
+        verify(registrationEditor).removeTag("tag1")
+        verify(registrationEditor, never()).addTag(any())
+        callbacks.forEach { verify(it).success(1) }
+    }
+
+    @Test
+    fun removeThenAddAbsentTag_committedAsAdd() {
+        // GIVEN
+        whenever(registrationManager.tags).thenReturn(emptySet())
+        coalescer.removeTag(sdk, "tag1", mock())
+        coalescer.addTag(sdk, "tag1", mock())
+
+        // WHEN
+        coalescer.flush()
+
+        // THEN
+        verify(registrationEditor).addTag("tag1")
+        verify(registrationEditor, never()).removeTag(any())
+    }
+
+    @Test
+    fun addRemoveAddTag_committedAsAdd() {
+        // GIVEN
+        coalescer.addTag(sdk, "tag1", mock())
+        coalescer.removeTag(sdk, "tag1", mock())
+        coalescer.addTag(sdk, "tag1", mock())
+
+        // WHEN
+        coalescer.flush()
+
+        // THEN
+        verify(registrationEditor).addTag("tag1")
+        verify(registrationEditor, never()).removeTag(any())
+    }
+
+    @Test
+    fun flush_commitThrows_errorsCallbacks() {
+        // GIVEN
+        val callbacks = List(2) { mock<CallbackContext>() }
+        whenever(registrationEditor.commit()).thenThrow(IllegalStateException("commit failed"))
+        coalescer.addTag(sdk, "tag1", callbacks[0])
+        coalescer.setAttribute(sdk, "key", "value", callbacks[1])
+
+        // WHEN
+        try {
+            coalescer.flush()
+        } catch (e: IllegalStateException) {
+            // Propagated to the flush thread.
+        }
+
+        // THEN
+        callbacks.forEach {
+            verify(it).error(any<String>())
+            verify(it, never()).success(any<Int>())
+        }
+    }
+
+    @Test
+    fun shutdown_flushesAndStopsScheduler() {
+        // GIVEN
+        val callback = mock<CallbackContext>()
+        coalescer.addTag(sdk, "tag1", callback)
+
+        // WHEN
+        coalescer.shutdown()
+
+        // THEN
+        argumentCaptor<Runnable>().apply {
+            verify(scheduler).execute(capture())
+        }.firstValue.run()
+        verify(scheduler).shutdown()
+        verify(registrationEditor).addTag("tag1")
+        verify(callback).success(1)
+    }
+
+    @Test
+    fun edit_afterShutdown_committedImmediately() {
+        // GIVEN
+        coalescer.shutdown()
+        val callback = mock<CallbackContext>()
+
+        // WHEN
+        coalescer.setAttribute(sdk, "key", "value", callback)
+
+        // THEN
+        verify(scheduler, never()).schedule(any<Runnable>(), any(), any())
+        verify(registrationEditor).setAttribute("key", "value")
+        verify(callback).success(1)
+    }
+
+    @Test
+    fun flush_afterCommit_invalidatesCachedTags() {
+        // GIVEN
+        coalescer.addTag(sdk, "tag1", mock())
+        // A read before the commit caches the tags without tag1.
+        cache.put(MCRegistrationCache.TAGS, cache.generation(MCRegistrationCache.TAGS), "stale")
+        cache.put(MCRegistrationCache.ATTRIBUTES, cache.generation(MCRegistrationCache.ATTRIBUTES),
+                "attributes")
+
+        // WHEN
+        coalescer.flush()
+
+        // THEN
+        assertThat(cache.contains(MCRegistrationCache.TAGS)).isFalse()
+        assertThat(cache.contains(MCRegistrationCache.ATTRIBUTES)).isTrue()
+    }
+
+    @Test
+    fun flush_nothingPending_doesNotCommit() {
+        coalescer.flush()
+
+        verify(registrationManager, never()).edit()
+        assertThat(coalescer.stats().getLong("commits")).isEqualTo(0)
+    }
+
+    @Test
+    fun flushAsync_pendingEdits_flushesOnScheduler() {
+        // GIVEN
+        val callback = mock<CallbackContext>()
+        coalescer.addTag(sdk, "tag1", callback)
+
+        // WHEN
+        coalescer.flushAsync()
+
+        // THEN
+        argumentCaptor<Runnable>().apply {
+            verify(scheduler).execute(capture())
+        }.firstValue.run()
+        verify(registrationEditor).addTag("tag1")
+        verify(callback).success(1)
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONObject
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MCRegistrationHistoryTest {
+
+    val history = MCRegistrationHistory(8)
+
+    @Test
+    fun attributesSince_zero_resetsWithEveryAttribute() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "1", "b" to "2"), 0)
+
+        // WHEN
+        val delta = JSONObject(history.attributesSince(0))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isTrue()
+        assertThat(delta.getLong("version")).isEqualTo(1)
+        assertThat(delta.getJSONObject("changed").toString()).isEqualTo("{\"a\":\"1\",\"b\":\"2\"}")
+        assertThat(delta.getJSONArray("removed").length()).isEqualTo(0)
+    }
+
+    @Test
+    fun attributesSince_returnsOnlyChanges() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "1", "b" to "2", "c" to "3"), 0)
+        val since = history.version()
+        history.observeAttributes(mapOf("a" to "1", "b" to "changed", "d" to "4"), 1)
+
+        // WHEN
+        val delta = JSONObject(history.attributesSince(since))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isFalse()
+        assertThat(delta.getLong("version")).isEqualTo(since + 1)
+        assertThat(delta.getJSONObject("changed").toString())
+                .isEqualTo("{\"b\":\"changed\",\"d\":\"4\"}")
+        assertThat(delta.getJSONArray("removed").toString()).isEqualTo("[\"c\"]")
+    }
+
+    @Test
+    fun attributesSince_latestChangeOfAKeyWins() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "1"), 0)
+        val since = history.version()
+        history.observeAttributes(emptyMap(), 1)
+        history.observeAttributes(mapOf("a" to "3"), 2)
+
+        // WHEN
+        val delta = JSONObject(history.attributesSince(since))
+
+        // THEN
+        assertThat(delta.getJSONObject("changed").toString()).isEqualTo("{\"a\":\"3\"}")
+        assertThat(delta.getJSONArray("removed").length()).isEqualTo(0)
+    }
+
+    @Test
+    fun attributesSince_currentVersion_isEmpty() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "1"), 0)
+        history.observeAttributes(mapOf("a" to "1"), 1)
+
+        // WHEN
+        val delta = JSONObject(history.attributesSince(history.version()))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isFalse()
+        assertThat(delta.getJSONObject("changed").length()).isEqualTo(0)
+        assertThat(delta.getJSONArray("removed").length()).isEqualTo(0)
+    }
+
+    @Test
+    fun attributesSince_futureVersion_resets() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "1"), 0)
+
+        // WHEN
+        val delta = JSONObject(history.attributesSince(history.version() + 5))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isTrue()
+        assertThat(delta.getJSONObject("changed").toString()).isEqualTo("{\"a\":\"1\"}")
+    }
+
+    @Test
+    fun attributesSince_beyondWindow_resets() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "0"), 0)
+        val since = history.version()
+        for (i in 1..9) {
+            history.observeAttributes(mapOf("a" to i.toString()), i.toLong())
+        }
+        val recent = history.version() - 1
+
+        // WHEN
+        val old = JSONObject(history.attributesSince(since))
+        val fresh = JSONObject(history.attributesSince(recent))
+
+        // THEN
+        assertThat(old.getBoolean("reset")).isTrue()
+        assertThat(old.getJSONObject("changed").toString()).isEqualTo("{\"a\":\"9\"}")
+        assertThat(fresh.getBoolean("reset")).isFalse()
+        assertThat(fresh.getJSONObject("changed").toString()).isEqualTo("{\"a\":\"9\"}")
+    }
+
+    @Test
+    fun observeAttributes_staleGeneration_isIgnored() {
+        // GIVEN
+        history.observeAttributes(mapOf("a" to "new"), 2)
+        val version = history.version()
+
+        // WHEN
+        history.observeAttributes(mapOf("a" to "old"), 1)
+
+        // THEN
+        assertThat(history.version()).isEqualTo(version)
+        assertThat(history.hasAttributes(2)).isTrue()
+        assertThat(history.hasAttributes(3)).isFalse()
+        assertThat(JSONObject(history.attributesSince(0)).getJSONObject("changed").toString())
+                .isEqualTo("{\"a\":\"new\"}")
+    }
+
+    @Test
+    fun tagsSince_returnsAddedAndRemoved() {
+        // GIVEN
+        history.observeTags(listOf("a", "b"), 0)
+        val since = history.version()
+        history.observeTags(listOf("b", "c"), 1)
+
+        // WHEN
+        val delta = JSONObject(history.tagsSince(since))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isFalse()
+        assertThat(delta.getJSONArray("added").toString()).isEqualTo("[\"c\"]")
+        assertThat(delta.getJSONArray("removed").toString()).isEqualTo("[\"a\"]")
+    }
+
+    @Test
+    fun tagsSince_zero_resetsWithEveryTag() {
+        // GIVEN
+        history.observeTags(listOf("a", "b"), 0)
+
+        // WHEN
+        val delta = JSONObject(history.tagsSince(0))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isTrue()
+        assertThat(delta.getJSONArray("added").toString()).isEqualTo("[\"a\",\"b\"]")
+    }
+
+    @Test
+    fun tagsSince_beforeTagsWereObserved_resets() {
+        // GIVEN attributes have moved the shared version on before tags were first read
+        history.observeAttributes(mapOf("a" to "1"), 0)
+        val since = history.version()
+        history.observeTags(listOf("t"), 0)
+
+        // WHEN
+        val delta = JSONObject(history.tagsSince(since))
+
+        // THEN
+        assertThat(delta.getBoolean("reset")).isTrue()
+        assertThat(delta.getJSONArray("added").toString()).isEqualTo("[\"t\"]")
+    }
+}
@@ -28,6 +28,7 @@ package com.salesforce.marketingcloud.cordova
 
 import com.google.firebase.FirebaseApp
 import com.google.firebase.FirebaseOptions
+import com.salesforce.marketingcloud.MCLogListener
 import org.assertj.core.api.Java6Assertions.assertThat
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -108,6 +109,183 @@ class MCSdkConfigTest {
         assertThat(config.marketingCloudServerUrl()).isEqualTo(testTse)
     }
 
+    @Test
+    fun parseConfig_registrationFlushWindow_enablesCoalescing() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.registration_flush_window_ms" value="250" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(MCPluginConfig.get().isRegistrationCoalescingEnabled).isTrue()
+        assertThat(MCPluginConfig.get().registrationFlushWindowMs).isEqualTo(250)
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun collectConfig_keepsOnlyMarketingCloudPreferences() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.APP_ID" value="$testAppId" />
+      <preference name="Orientation" value="portrait" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        val snapshot = MCSdkConfig.collectConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(snapshot.complete).isTrue()
+        assertThat(snapshot.preferences)
+                .containsOnlyKeys("com.salesforce.marketingcloud.app_id")
+    }
+
+    @Test
+    fun applyConfig_fromSnapshot_producesConfig() {
+        // GIVEN
+        val snapshot = MCConfigSnapshot(linkedMapOf(
+                "com.salesforce.marketingcloud.app_id" to testAppId,
+                "com.salesforce.marketingcloud.access_token" to testAccessToken,
+                "com.salesforce.marketingcloud.sender_id" to testSenderId,
+                "com.salesforce.marketingcloud.analytics" to "true"), 0, true)
+
+        // WHEN
+        val config = MCSdkConfig.applyConfig(snapshot).build(RuntimeEnvironment.application)
+
+        // THEN
+        assertThat(config.applicationId()).isEqualTo(testAppId)
+        assertThat(config.accessToken()).isEqualTo(testAccessToken)
+        assertThat(config.senderId()).isEqualTo(testSenderId)
+        assertThat(config.analyticsEnabled()).isTrue()
+    }
+
+    @Test
+    fun parseConfig_eventBuffer() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.event_buffer_capacity" value="4" />
+      <preference name="com.salesforce.marketingcloud.event_buffer_drop_policy" value="drop_newest" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(MCPluginConfig.get().eventBufferCapacity).isEqualTo(4)
+        assertThat(MCPluginConfig.get().eventBufferDropNewest).isTrue()
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun parseConfig_logSink() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.log_sink_level" value="warn" />
+      <preference name="com.salesforce.marketingcloud.log_file_max_bytes" value="4096" />
+      <preference name="com.salesforce.marketingcloud.log_file_count" value="0" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(MCPluginConfig.get().logSinkLevel).isEqualTo(MCLogListener.WARN)
+        assertThat(MCPluginConfig.get().logFileMaxBytes).isEqualTo(4096L)
+        assertThat(MCPluginConfig.get().logFileCount).isEqualTo(3)
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun parseConfig_logFlushIntervalNotNumeric_keepsDefault() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.log_flush_interval_ms" value="1s" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(MCPluginConfig.get().logFlushIntervalMs)
+            .isEqualTo(MCPluginConfig().logFlushIntervalMs)
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun parseConfig_sdkStateMaxAgeNotNumeric_keepsDefault() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.sdk_state_max_age_ms" value="1.5" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(MCPluginConfig.get().sdkStateMaxAgeMs)
+            .isEqualTo(MCPluginConfig().sdkStateMaxAgeMs)
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun parseConfig_regionEvents() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.region_event_debounce_ms" value="2000" />
+      <preference name="com.salesforce.marketingcloud.region_event_min_interval_ms" value="-1" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        assertThat(MCPluginConfig.get().regionEventDebounceMs).isEqualTo(2000L)
+        assertThat(MCPluginConfig.get().regionEventMinIntervalMs).isEqualTo(0L)
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
+
+    @Test
+    fun parseConfig_regionEventsNotNumeric_keepDefaults() {
+        // GIVEN
+        val configParser = """
+      <preference name="com.salesforce.marketingcloud.app_id" value="$testAppId" />
+      <preference name="com.salesforce.marketingcloud.sender_id" value="$testSenderId" />
+      <preference name="com.salesforce.marketingcloud.region_event_debounce_ms" value="five" />
+      <preference name="com.salesforce.marketingcloud.region_event_min_interval_ms" value="" />
+    """.trimIndent().toXmlParser()
+
+        // WHEN
+        MCSdkConfig.parseConfig(RuntimeEnvironment.application, configParser)
+
+        // THEN
+        val defaults = MCPluginConfig()
+        assertThat(MCPluginConfig.get().regionEventDebounceMs)
+            .isEqualTo(defaults.regionEventDebounceMs)
+        assertThat(MCPluginConfig.get().regionEventMinIntervalMs)
+            .isEqualTo(defaults.regionEventMinIntervalMs)
+
+        MCPluginConfig.set(MCPluginConfig())
+    }
 
     private fun String.toXmlParser(): XmlPullParser {
         val factory = XmlPullParserFactory.newInstance()
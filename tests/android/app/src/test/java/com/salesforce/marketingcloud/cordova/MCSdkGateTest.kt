@@ -0,0 +1,169 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import android.os.Handler
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import org.apache.cordova.CallbackContext
+import org.apache.cordova.CordovaInterface
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.*
+import java.util.concurrent.ExecutorService
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCSdkGateTest {
+
+    val plugin = MCCordovaPlugin()
+    val sdk = mock<MarketingCloudSdk>()
+    val handler = mock<Handler>()
+    val testExecutorService = mock<ExecutorService> {
+        on { execute(any()) } doAnswer { (it.arguments[0] as? Runnable)?.run() }
+    }
+    val actionHandler = mock<MCActionRegistry.ActionHandler>()
+    val action = UUID.randomUUID().toString()
+
+    @Before
+    fun setup() {
+        plugin.cordova = mock<CordovaInterface>()
+        plugin.actionExecutor = MCActionExecutor(testExecutorService, testExecutorService)
+        MCActionRegistry.register(action, MCActionRegistry.WRITE or MCActionRegistry.REQUIRES_SDK,
+                actionHandler)
+        ShadowMarketingCloudSdk.setInstance(sdk)
+    }
+
+    @After
+    fun tearDown() {
+        ShadowMarketingCloudSdk.reset()
+    }
+
+    @Test
+    fun hold_sdkReady_doesNotHold() {
+        ShadowMarketingCloudSdk.isReady(true)
+        val gate = MCSdkGate(plugin, 0, handler)
+
+        assertThat(gate.hold(MCActionRegistry.get(action)!!, JSONArray(), mock())).isFalse()
+    }
+
+    @Test
+    fun hold_initNotCalled_fails() {
+        val gate = MCSdkGate(plugin, 0, handler)
+        val callbackContext = mock<CallbackContext>()
+
+        assertThat(gate.hold(MCActionRegistry.get(action)!!, JSONArray(), callbackContext)).isTrue()
+
+        verify(callbackContext).error("MarketingCloudSdk#init has not been called")
+    }
+
+    @Test
+    fun hold_sdkInitializing_drainsInArrivalOrderWithSingleListener() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isInitializing(true)
+        val gate = MCSdkGate(plugin, 0, handler)
+        val entry = MCActionRegistry.get(action)!!
+        val calls = List(3) { JSONArray().put(it) }
+        calls.forEach { assertThat(gate.hold(entry, it, mock())).isTrue() }
+        val listener = ShadowMarketingCloudSdk.getRecentSdkRequest()
+        assertThat(listener).isSameAs(gate)
+        verifyZeroInteractions(actionHandler)
+
+        // WHEN
+        listener.ready(sdk)
+
+        // THEN
+        inOrder(actionHandler) {
+            calls.forEach { verify(actionHandler).execute(eq(plugin), eq(sdk), eq(it), any()) }
+        }
+        verify(testExecutorService, times(1)).execute(any())
+        gate.stats().run {
+            assertThat(getString("state")).isEqualTo("open")
+            assertThat(getInt("drained")).isEqualTo(3)
+            assertThat(getInt("maxPending")).isEqualTo(3)
+        }
+        ShadowMarketingCloudSdk.isReady(true)
+        assertThat(gate.hold(entry, JSONArray(), mock())).isFalse()
+    }
+
+    @Test
+    fun heldPipeline_drainedOnceAheadOfLaterWrites() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isInitializing(true)
+        val gate = MCSdkGate(plugin, 0, handler)
+        plugin.sdkGate = gate
+        val step = JSONObject().put("action", action).put("args", JSONArray().put("pipeline"))
+        plugin.execute("pipeline", JSONArray().put(JSONArray().put(step)), mock())
+        plugin.execute(action, JSONArray().put("later"), mock())
+
+        // WHEN
+        ShadowMarketingCloudSdk.getRecentSdkRequest().ready(sdk)
+
+        // THEN
+        inOrder(actionHandler) {
+            verify(actionHandler).execute(eq(plugin), eq(sdk),
+                    argThat { getString(0) == "pipeline" }, any())
+            verify(actionHandler).execute(eq(plugin), eq(sdk),
+                    argThat { getString(0) == "later" }, any())
+        }
+        gate.stats().run {
+            assertThat(getInt("held")).isEqualTo(2)
+            assertThat(getInt("drained")).isEqualTo(2)
+        }
+    }
+
+    @Test
+    fun hold_maxWaitExceeded_failsHeldAndLaterCalls() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isInitializing(true)
+        val gate = MCSdkGate(plugin, 1, handler)
+        val entry = MCActionRegistry.get(action)!!
+        val heldCallback = mock<CallbackContext>()
+        gate.hold(entry, JSONArray(), heldCallback)
+        Thread.sleep(5)
+
+        // WHEN
+        argumentCaptor<Runnable>().apply {
+            verify(handler).postDelayed(capture(), eq(1L))
+        }.firstValue.run()
+
+        // THEN
+        verify(heldCallback).error(any<String>())
+        val laterCallback = mock<CallbackContext>()
+        assertThat(gate.hold(entry, JSONArray(), laterCallback)).isTrue()
+        verify(laterCallback).error(any<String>())
+        assertThat(gate.stats().getInt("timedOut")).isEqualTo(1)
+        verifyZeroInteractions(actionHandler)
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova
+
+import android.os.SystemClock
+import com.nhaarman.mockitokotlin2.*
+import com.salesforce.marketingcloud.MarketingCloudSdk
+import com.salesforce.marketingcloud.messages.RegionMessageManager
+import com.salesforce.marketingcloud.messages.push.PushMessageManager
+import com.salesforce.marketingcloud.registration.RegistrationManager
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.json.JSONException
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(shadows = [ShadowMarketingCloudSdk::class])
+class MCSdkStateSnapshotTest {
+
+    val plugin = MCCordovaPlugin()
+    val registrationManager = mock<RegistrationManager> {
+        on { contactKey } doReturn "contact"
+        on { attributes } doReturn mapOf("FirstName" to "Jane")
+        on { tags } doReturn setOf("Cordova")
+    }
+    val pushMessageManager = mock<PushMessageManager> {
+        on { isPushEnabled } doReturn true
+        on { pushToken } doReturn "token"
+    }
+    val regionMessageManager = mock<RegionMessageManager>()
+    val sdk = mock<MarketingCloudSdk> {
+        on { registrationManager } doReturn registrationManager
+        on { pushMessageManager } doReturn pushMessageManager
+        on { regionMessageManager } doReturn regionMessageManager
+        on { sdkState } doReturn JSONObject().put("initConfig", JSONObject().put("appId", "id"))
+    }
+    val snapshot = MCSdkStateSnapshot()
+
+    private fun take(vararg sections: String, maxAgeMs: Long = 60_000) =
+            JSONObject(snapshot.snapshot(plugin, sdk, sections.toList(), maxAgeMs))
+
+    @After
+    fun tearDown() {
+        ShadowMarketingCloudSdk.reset()
+        MCSdkInitializer.reset()
+    }
+
+    @Test
+    fun snapshot_returnsOnlyRequestedSections() {
+        // WHEN
+        val result = take(MCSdkStateSnapshot.REGISTRATION, MCSdkStateSnapshot.PUSH)
+
+        // THEN
+        result.getJSONObject("sections").run {
+            assertThat(length()).isEqualTo(2)
+            getJSONObject("registration").run {
+                assertThat(getString("contactKey")).isEqualTo("contact")
+                assertThat(getJSONObject("attributes").getString("FirstName")).isEqualTo("Jane")
+                assertThat(getJSONArray("tags").getString(0)).isEqualTo("Cordova")
+            }
+            assertThat(getJSONObject("push").getString("token")).isEqualTo("token")
+        }
+        result.getJSONObject("stats").getJSONObject("registration").run {
+            assertThat(getBoolean("cached")).isFalse()
+            assertThat(getInt("size"))
+                    .isEqualTo(result.getJSONObject("sections").getJSONObject("registration")
+                            .toString().length)
+            assertThat(has("buildUs")).isTrue()
+        }
+        verify(sdk, never()).sdkState
+        verifyZeroInteractions(regionMessageManager)
+    }
+
+    @Test
+    fun snapshot_unchangedSection_servedFromCache() {
+        // GIVEN
+        take(MCSdkStateSnapshot.REGISTRATION)
+
+        // WHEN
+        val result = take(MCSdkStateSnapshot.REGISTRATION)
+
+        // THEN
+        assertThat(result.getJSONObject("stats").getJSONObject("registration")
+                .getBoolean("cached")).isTrue()
+        verify(registrationManager, times(1)).attributes
+    }
+
+    @Test
+    fun snapshot_afterWrite_rebuildsOnlyChangedSection() {
+        // GIVEN
+        take(MCSdkStateSnapshot.REGISTRATION, MCSdkStateSnapshot.PUSH)
+        whenever(registrationManager.attributes).thenReturn(mapOf("FirstName" to "Joan"))
+
+        // WHEN
+        plugin.registrationCache.invalidate(MCRegistrationCache.ATTRIBUTES)
+        val result = take(MCSdkStateSnapshot.REGISTRATION, MCSdkStateSnapshot.PUSH)
+
+        // THEN
+        assertThat(result.getJSONObject("sections").getJSONObject("registration")
+                .getJSONObject("attributes").getString("FirstName")).isEqualTo("Joan")
+        result.getJSONObject("stats").run {
+            assertThat(getJSONObject("registration").getBoolean("cached")).isFalse()
+            assertThat(getJSONObject("push").getBoolean("cached")).isTrue()
+        }
+        verify(pushMessageManager, times(1)).pushToken
+    }
+
+    @Test
+    fun snapshot_olderThanMaxAge_rebuilds() {
+        // GIVEN
+        take(MCSdkStateSnapshot.SDK)
+
+        // WHEN
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + 2000)
+        val stale = take(MCSdkStateSnapshot.SDK, maxAgeMs = 1000)
+        val fresh = take(MCSdkStateSnapshot.SDK, maxAgeMs = 1000)
+        val uncached = take(MCSdkStateSnapshot.SDK, maxAgeMs = 0)
+
+        // THEN
+        assertThat(stale.getJSONObject("stats").getJSONObject("sdk").getBoolean("cached"))
+                .isFalse()
+        assertThat(fresh.getJSONObject("stats").getJSONObject("sdk").getBoolean("cached"))
+                .isTrue()
+        assertThat(uncached.getJSONObject("stats").getJSONObject("sdk").getBoolean("cached"))
+                .isFalse()
+        assertThat(fresh.getJSONObject("sections").getJSONObject("sdk").getJSONObject("initConfig")
+                .getString("appId")).isEqualTo("id")
+        verify(sdk, times(3)).sdkState
+    }
+
+    @Test
+    fun invalidate_rebuildsLocation() {
+        // GIVEN
+        whenever(regionMessageManager.isGeofenceMessagingEnabled).thenReturn(false)
+        take(MCSdkStateSnapshot.LOCATION)
+        whenever(regionMessageManager.isGeofenceMessagingEnabled).thenReturn(true)
+
+        // WHEN
+        snapshot.invalidate(MCSdkStateSnapshot.LOCATION)
+        val result = take(MCSdkStateSnapshot.LOCATION)
+
+        // THEN
+        assertThat(result.getJSONObject("sections").getJSONObject("location")
+                .getBoolean("geofenceEnabled")).isTrue()
+    }
+
+    @Test
+    fun snapshot_initialization_followsSdkStatus() {
+        // GIVEN
+        ShadowMarketingCloudSdk.isInitializing(true)
+        take(MCSdkStateSnapshot.INITIALIZATION)
+
+        // WHEN
+        ShadowMarketingCloudSdk.isInitializing(false)
+        ShadowMarketingCloudSdk.isReady(true)
+        val result = take(MCSdkStateSnapshot.INITIALIZATION)
+
+        // THEN
+        result.getJSONObject("sections").getJSONObject("initialization").run {
+            assertThat(getBoolean("ready")).isTrue()
+            assertThat(getBoolean("initializing")).isFalse()
+        }
+    }
+
+    @Test(expected = JSONException::class)
+    fun snapshot_unknownSection_throws() {
+        take(MCSdkStateSnapshot.PUSH, "inbox")
+    }
+
+    @Test
+    fun section_returnsCachedText() {
+        val first = snapshot.section(plugin, sdk, MCSdkStateSnapshot.SDK, 60_000)
+        val second = snapshot.section(plugin, sdk, MCSdkStateSnapshot.SDK, 60_000)
+
+        assertThat(second).isSameAs(first)
+        assertThat(JSONObject(first).getJSONObject("initConfig").getString("appId"))
+                .isEqualTo("id")
+        verify(sdk, times(1)).sdkState
+    }
+}
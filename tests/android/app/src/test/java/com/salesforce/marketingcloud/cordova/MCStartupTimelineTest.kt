@@ -0,0 +1,84 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MCStartupTimelineTest {
+
+    @After
+    fun tearDown() {
+        MCStartupTimeline.reset()
+    }
+
+    @Test
+    fun toJson_listsPhasesInOrder() {
+        // GIVEN
+        MCStartupTimeline.begin(MCStartupTimeline.INIT_PROVIDER)
+        MCStartupTimeline.end(MCStartupTimeline.INIT_PROVIDER)
+        MCStartupTimeline.mark(MCStartupTimeline.INIT_COMPLETE)
+        MCStartupTimeline.begin(MCStartupTimeline.PLUGIN_INITIALIZE)
+
+        // WHEN
+        val phases = MCStartupTimeline.toJson().getJSONArray("phases")
+
+        // THEN
+        assertThat(phases.length()).isEqualTo(3)
+        phases.getJSONObject(0).run {
+            assertThat(getString("name")).isEqualTo("initProvider")
+            assertThat(getDouble("durationMs")).isGreaterThanOrEqualTo(0.0)
+        }
+        phases.getJSONObject(1).run {
+            assertThat(getString("name")).isEqualTo("initComplete")
+            assertThat(has("durationMs")).isFalse()
+        }
+        phases.getJSONObject(2).run {
+            assertThat(getString("name")).isEqualTo("pluginInitialize")
+            assertThat(isNull("durationMs")).isTrue()
+        }
+    }
+
+    @Test
+    fun markFirstAction_keepsFirstOnly() {
+        MCStartupTimeline.markFirstAction()
+        val first = MCStartupTimeline.toJson().getJSONArray("phases").getJSONObject(0)
+                .getDouble("startMs")
+        Thread.sleep(5)
+
+        MCStartupTimeline.markFirstAction()
+
+        MCStartupTimeline.toJson().getJSONArray("phases").run {
+            assertThat(length()).isEqualTo(1)
+            assertThat(getJSONObject(0).getDouble("startMs")).isEqualTo(first)
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.salesforce.marketingcloud.cordova
+
+import org.assertj.core.api.Java6Assertions.assertThat
+import org.junit.After
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+class MCStripedLaneTest {
+
+    val pool = Executors.newFixedThreadPool(4)
+    val lane = MCStripedLane(pool, MCStripedLane.DEFAULT_STRIPES, Int.MAX_VALUE)
+    val order: MutableList<String> = Collections.synchronizedList(mutableListOf<String>())
+
+    @After
+    fun tearDown() {
+        pool.shutdownNow()
+    }
+
+    @Test
+    fun execute_sameKey_runsInSubmissionOrder() {
+        val done = CountDownLatch(100)
+        for (i in 0 until 100) {
+            lane.execute(arrayOf("attribute:key"), Runnable {
+                order.add(i.toString())
+                done.countDown()
+            })
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(order).isEqualTo((0 until 100).map { it.toString() })
+    }
+
+    @Test
+    fun execute_differentKeys_runConcurrently() {
+        // GIVEN
+        val otherRan = CountDownLatch(1)
+        val blockedRan = CountDownLatch(1)
+        lane.execute(arrayOf("attribute:a"), Runnable {
+            // Only completes if the write to another key is not queued behind this one.
+            if (otherRan.await(5, TimeUnit.SECONDS)) {
+                blockedRan.countDown()
+            }
+        })
+
+        // WHEN
+        lane.execute(arrayOf("attribute:b"), Runnable { otherRan.countDown() })
+
+        // THEN
+        assertThat(blockedRan.await(5, TimeUnit.SECONDS)).isTrue()
+    }
+
+    @Test
+    fun execute_multipleKeys_orderedWithEachKey() {
+        // GIVEN
+        val release = CountDownLatch(1)
+        val done = CountDownLatch(3)
+        lane.execute(arrayOf("attribute:a"), Runnable {
+            release.await(5, TimeUnit.SECONDS)
+            order.add("a")
+            done.countDown()
+        })
+        lane.execute(arrayOf("attribute:a", "tag:b"), Runnable {
+            order.add("ab")
+            done.countDown()
+        })
+        lane.execute(arrayOf("tag:b"), Runnable {
+            order.add("b")
+            done.countDown()
+        })
+
+        // WHEN
+        release.countDown()
+
+        // THEN
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(order).containsExactly("a", "ab", "b")
+    }
+
+    @Test
+    fun execute_allKeys_orderedWithEveryWrite() {
+        // GIVEN
+        val release = CountDownLatch(1)
+        val done = CountDownLatch(4)
+        lane.execute(arrayOf("tag:b"), Runnable {
+            release.await(5, TimeUnit.SECONDS)
+            order.add("b")
+            done.countDown()
+        })
+        lane.execute(arrayOf(MCActionRegistry.ALL_KEYS), Runnable {
+            order.add("contactKey")
+            done.countDown()
+        })
+        lane.execute(arrayOf("attribute:a"), Runnable {
+            order.add("a")
+            done.countDown()
+        })
+        lane.execute(arrayOf("attribute:c"), Runnable {
+            order.add("c")
+            done.countDown()
+        })
+
+        // WHEN
+        release.countDown()
+
+        // THEN
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(order.subList(0, 2)).containsExactly("b", "contactKey")
+        assertThat(order.subList(2, 4)).containsOnly("a", "c")
+    }
+
+    @Test(expected = RejectedExecutionException::class)
+    fun execute_tooManyPending_rejects() {
+        val release = CountDownLatch(1)
+        val boundedLane = MCStripedLane(pool, MCStripedLane.DEFAULT_STRIPES, 1)
+        try {
+            boundedLane.execute(arrayOf("attribute:a"), Runnable {
+                release.await(5, TimeUnit.SECONDS)
+            })
+            boundedLane.execute(arrayOf("attribute:b"), Runnable {})
+        } finally {
+            release.countDown()
+        }
+    }
+
+    @Test
+    fun execute_taskCompletes_releasesPendingSlot() {
+        val directLane = MCStripedLane(Executor { it.run() },
+                MCStripedLane.DEFAULT_STRIPES, 1)
+
+        directLane.execute(arrayOf("attribute:a"), Runnable {})
+        directLane.execute(arrayOf("attribute:a", "tag:b"), Runnable {})
+
+        assertThat(directLane.pending()).isEqualTo(0)
+        assertThat(directLane.completed()).isEqualTo(2)
+    }
+
+    @Test
+    fun execute_poolRejects_stripeNotWedged() {
+        // GIVEN
+        var reject = true
+        val rejectingLane = MCStripedLane(Executor {
+            if (reject) throw RejectedExecutionException() else it.run()
+        }, MCStripedLane.DEFAULT_STRIPES, Int.MAX_VALUE)
+        var rejected = false
+        try {
+            rejectingLane.execute(arrayOf("attribute:a"), Runnable { order.add("rejected") })
+        } catch (e: RejectedExecutionException) {
+            rejected = true
+        }
+
+        // WHEN
+        reject = false
+        rejectingLane.execute(arrayOf("attribute:a"), Runnable { order.add("accepted") })
+
+        // THEN
+        assertThat(rejected).isTrue()
+        assertThat(order).containsExactly("accepted")
+        assertThat(rejectingLane.pending()).isEqualTo(0)
+    }
+
+    @Test
+    fun execute_poolRejectsOneOfSeveralStripes_taskSkippedOnTheOthers() {
+        // GIVEN
+        val accepted = mutableListOf<Runnable>()
+        var inline = false
+        val rejectingLane = MCStripedLane(Executor {
+            when {
+                inline -> it.run()
+                accepted.isEmpty() -> accepted.add(it)
+                else -> throw RejectedExecutionException()
+            }
+        }, MCStripedLane.DEFAULT_STRIPES, Int.MAX_VALUE)
+        var rejected = false
+        try {
+            rejectingLane.execute(arrayOf(MCActionRegistry.ALL_KEYS),
+                    Runnable { order.add("rejected") })
+        } catch (e: RejectedExecutionException) {
+            rejected = true
+        }
+
+        // WHEN
+        inline = true
+        accepted.forEach { it.run() }
+        rejectingLane.execute(arrayOf(MCActionRegistry.ALL_KEYS), Runnable { order.add("accepted") })
+
+        // THEN
+        assertThat(rejected).isTrue()
+        assertThat(order).containsExactly("accepted")
+        assertThat(rejectingLane.pending()).isEqualTo(0)
+        assertThat(rejectingLane.completed()).isEqualTo(1)
+    }
+}
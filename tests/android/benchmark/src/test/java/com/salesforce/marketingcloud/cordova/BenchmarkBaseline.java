@@ -0,0 +1,149 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a run with a baseline recorded earlier on the same machine, both in JMH's JSON result
+ * format.  Results are matched by benchmark name and parameters.  A result regresses when its time
+ * per operation, or its allocation per operation, grew by more than the tolerance.
+ */
+final class BenchmarkBaseline {
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    // Allocation is counted to the byte, but inlining decisions move it by a few bytes.
+    private static final double ALLOCATION_SLACK_BYTES = 16;
+
+    private BenchmarkBaseline() {}
+
+    /**
+     * Prints every result next to its baseline.
+     *
+     * @return a description of each regression.
+     */
+    static List<String> compare(File baselineFile, File resultsFile, double tolerance,
+        PrintStream out) throws IOException, JSONException {
+        Map<String, Result> baseline = read(baselineFile);
+        Map<String, Result> results = read(resultsFile);
+        List<String> regressions = new ArrayList<>();
+
+        out.println(String.format("%-80s %14s %14s %12s %12s", "Benchmark", "Baseline",
+            "Current", "Base B/op", "Cur B/op"));
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result current = entry.getValue();
+            Result base = baseline.get(entry.getKey());
+            if (base == null) {
+                out.println(String.format("%-80s %14s %14.3f %12s %12.1f", entry.getKey(), "-",
+                    current.score, "-", current.allocation));
+                continue;
+            }
+            out.println(String.format("%-80s %14.3f %14.3f %12.1f %12.1f", entry.getKey(),
+                base.score, current.score, base.allocation, current.allocation));
+
+            if (current.score > base.score * (1 + tolerance)) {
+                regressions.add(String.format("%s: %.3f %s, baseline %.3f %s", entry.getKey(),
+                    current.score, current.unit, base.score, base.unit));
+            }
+            if (!Double.isNaN(current.allocation) && !Double.isNaN(base.allocation)
+                && current.allocation
+                > base.allocation * (1 + tolerance) + ALLOCATION_SLACK_BYTES) {
+                regressions.add(String.format("%s: %.1f B/op allocated, baseline %.1f B/op",
+                    entry.getKey(), current.allocation, base.allocation));
+            }
+        }
+        return regressions;
+    }
+
+    private static Map<String, Result> read(File file) throws IOException, JSONException {
+        JSONArray runs = new JSONArray(
+            new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")));
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            JSONObject primary = run.getJSONObject("primaryMetric");
+            results.put(key(run), new Result(primary.getDouble("score"),
+                primary.optString("scoreUnit"), allocation(run)));
+        }
+        return results;
+    }
+
+    private static String key(JSONObject run) throws JSONException {
+        String benchmark = run.getString("benchmark");
+        JSONObject params = run.optJSONObject("params");
+        if (params == null) {
+            return benchmark;
+        }
+        // Sorted so the key does not depend on the order JMH wrote the parameters in.
+        Map<String, String> sorted = new TreeMap<>();
+        Iterator<String> names = params.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            sorted.put(name, params.getString(name));
+        }
+        return benchmark + sorted;
+    }
+
+    private static double allocation(JSONObject run) throws JSONException {
+        JSONObject secondary = run.optJSONObject("secondaryMetrics");
+        if (secondary != null) {
+            Iterator<String> names = secondary.keys();
+            while (names.hasNext()) {
+                // JMH prefixes profiler metrics with a separator character.
+                String name = names.next();
+                if (name.endsWith(ALLOCATION_METRIC)) {
+                    return secondary.getJSONObject(name).getDouble("score");
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static final class Result {
+        final double score;
+        final String unit;
+        final double allocation;
+
+        Result(double score, String unit, double allocation) {
+            this.score = score;
+            this.unit = unit;
+            this.allocation = allocation;
+        }
+    }
+}
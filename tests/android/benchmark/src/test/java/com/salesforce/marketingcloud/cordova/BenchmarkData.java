@@ -0,0 +1,136 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds the attributes, tags, push payloads and config.xml files the benchmarks run over.  Data
+ * is generated from a fixed seed so every run measures the same input.
+ */
+final class BenchmarkData {
+    private static final String[] PROFILE_ATTRIBUTES = {"FirstName", "LastName", "EmailAddress",
+        "MobileNumber", "City", "PostalCode", "LoyaltyTier", "PreferredStore"};
+    // Quotes, slashes and non-ASCII text take the slow path of the JSON string escaper.
+    private static final String[] VALUE_FRAGMENTS = {"Jane", "Doe", "jane.doe@example.com",
+        "+1 (555) 010-0199", "S\u00e3o Paulo", "94105", "Gold \"VIP\"", "Store #42 / Downtown"};
+
+    private BenchmarkData() {}
+
+    static Map<String, String> attributes(int count) {
+        Random random = new Random(count);
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = i < PROFILE_ATTRIBUTES.length
+                ? PROFILE_ATTRIBUTES[i] : "custom_attribute_" + i;
+            attributes.put(key, value(random, 8 + random.nextInt(32)));
+        }
+        return attributes;
+    }
+
+    static Set<String> tags(int count) {
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add("Cordova");
+        for (int i = 1; i < count; i++) {
+            tags.add("segment-" + i + (i % 3 == 0 ? "-opted-in" : ""));
+        }
+        return tags;
+    }
+
+    /** A push payload with the SDK's own keys and {@code customKeys} app-defined ones. */
+    static Map<String, String> payload(int customKeys, int valueLength) {
+        Random random = new Random(customKeys * 31 + valueLength);
+        Map<String, String> payload = new LinkedHashMap<>();
+        payload.put("_sid", "SFMC");
+        payload.put("_m", "MTAyOjExNDow");
+        payload.put("_r", "c5b1d4a0-5b9e-4e52-8f0c-2b1f9ddc6c41");
+        payload.put("title", "Your order has shipped");
+        payload.put("alert", value(random, valueLength));
+        payload.put("sound", "default");
+        payload.put("_od", "https://www.example.com/orders/42?utm_source=push");
+        for (int i = 0; i < customKeys; i++) {
+            payload.put("custom_key_" + i, value(random, valueLength));
+        }
+        return payload;
+    }
+
+    /**
+     * A Cordova config.xml with the Marketing Cloud preferences plus {@code otherPreferences}
+     * preferences and {@code otherElements} elements of other plugins.
+     */
+    static String configXml(int otherPreferences, int otherElements) {
+        StringBuilder xml = new StringBuilder()
+            .append("<?xml version='1.0' encoding='utf-8'?>\n")
+            .append("<widget id=\"com.example.app\" version=\"1.0.0\" ")
+            .append("xmlns=\"http://www.w3.org/ns/widgets\">\n")
+            .append("  <name>Example</name>\n")
+            .append("  <content src=\"index.html\" />\n")
+            .append("  <access origin=\"*\" />\n");
+        for (int i = 0; i < otherElements; i++) {
+            xml.append("  <allow-intent href=\"https://example.com/path/").append(i)
+                .append("/*\" />\n")
+                .append("  <feature name=\"ExamplePlugin").append(i).append("\">\n")
+                .append("    <param name=\"android-package\" value=\"com.example.Plugin")
+                .append(i).append("\" />\n")
+                .append("  </feature>\n");
+        }
+        for (int i = 0; i < otherPreferences; i++) {
+            xml.append("  <preference name=\"ExamplePreference").append(i)
+                .append("\" value=\"value").append(i).append("\" />\n");
+        }
+        xml.append("  <platform name=\"android\">\n")
+            .append(preference("app_id", "1a2b3c4d-1234-5678-9abc-def012345678"))
+            .append(preference("access_token", "abcdefghi123456789abcdef"))
+            .append(preference("sender_id", "123456789876"))
+            .append(preference("notification_small_icon", "ic_notification"))
+            .append(preference("tenant_specific_endpoint", "https://example.com/"))
+            .append(preference("analytics", "true"))
+            .append(preference("pi_analytics", "true"))
+            .append(preference("delay_registration_until_contact_key_is_set", "false"))
+            .append(preference("registration_flush_window_ms", "0"))
+            .append("  </platform>\n")
+            .append("</widget>\n");
+        return xml.toString();
+    }
+
+    private static String preference(String name, String value) {
+        return "    <preference name=\"com.salesforce.marketingcloud." + name + "\" value=\""
+            + value + "\" />\n";
+    }
+
+    private static String value(Random random, int length) {
+        StringBuilder value = new StringBuilder(length + 32);
+        while (value.length() < length) {
+            value.append(VALUE_FRAGMENTS[random.nextInt(VALUE_FRAGMENTS.length)]).append(' ');
+        }
+        value.setLength(length);
+        return value.toString();
+    }
+}
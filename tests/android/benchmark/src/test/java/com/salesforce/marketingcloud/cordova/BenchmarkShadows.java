@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.content.Intent;
+import android.util.Log;
+
+import com.salesforce.marketingcloud.MCLogListener;
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+import com.salesforce.marketingcloud.notifications.NotificationManager;
+import com.salesforce.marketingcloud.notifications.NotificationMessage;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Robolectric shadows that keep the SDK and logging out of the measured paths.
+ */
+public final class BenchmarkShadows {
+    private BenchmarkShadows() {}
+
+    /** Reports the stand-in SDK as ready and hands it to every caller. */
+    @Implements(MarketingCloudSdk.class)
+    public static class ShadowMarketingCloudSdk {
+        static volatile MarketingCloudSdk instance;
+
+        @Implementation
+        public static MarketingCloudSdk getInstance() {
+            return instance;
+        }
+
+        @Implementation
+        public static boolean isReady() {
+            return instance != null;
+        }
+
+        @Implementation
+        public static boolean isInitializing() {
+            return false;
+        }
+
+        @Implementation
+        public static void requestSdk(MarketingCloudSdk.WhenReadyListener listener) {
+            listener.ready(instance);
+        }
+
+        @Implementation
+        public static void setLogLevel(int level) {}
+
+        @Implementation
+        public static void setLogListener(MCLogListener listener) {}
+    }
+
+    /** Returns {@link #message} for every intent. */
+    @Implements(NotificationManager.class)
+    public static class ShadowNotificationManager {
+        static volatile NotificationMessage message;
+
+        @Implementation
+        public static NotificationMessage extractMessage(Intent intent) {
+            return message;
+        }
+    }
+
+    /**
+     * Discards log lines.  Robolectric's own shadow keeps every line in memory, which would
+     * fill the heap during a measurement and charge the plugin for it.
+     */
+    @Implements(Log.class)
+    public static class ShadowSilentLog {
+        // Written so the JIT cannot drop the lines it is handed.
+        static long charsLogged;
+
+        @Implementation
+        public static int println(int priority, String tag, String msg) {
+            charsLogged += msg.length();
+            return msg.length();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the JMH benchmarks in this module and, if one has been recorded on this machine, compares
+ * them with the local baseline in {@code baseline/results.json}.
+ *
+ * <p>The plugin needs the Android framework, so the benchmarks run inside this test's Robolectric
+ * sandbox rather than in forked JVMs.  Numbers are only comparable between runs on the same
+ * machine and JDK.  See the module's README for the Gradle properties this test reads.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {BenchmarkShadows.ShadowMarketingCloudSdk.class,
+    BenchmarkShadows.ShadowNotificationManager.class, BenchmarkShadows.ShadowSilentLog.class})
+public class BenchmarkSuite {
+    private static final double DEFAULT_TOLERANCE = 0.25;
+
+    @Before
+    public void setup() {
+        MCPluginConfig.set(new MCPluginConfig());
+        StandInSdk.install(BenchmarkData.attributes(64), BenchmarkData.tags(64));
+    }
+
+    @After
+    public void tearDown() {
+        StandInSdk.uninstall();
+    }
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        File results = new File(System.getProperty("benchmark.results", "build/jmh.json"));
+        File baseline = new File(System.getProperty("benchmark.baseline", "baseline/results.json"));
+        results.getParentFile().mkdirs();
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(System.getProperty("benchmark.include", ".*"))
+            // Forked JVMs would not have the Robolectric sandbox.
+            .forks(0)
+            .threads(1)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(results.getPath());
+        if (Boolean.getBoolean("benchmark.quick")) {
+            options.warmupIterations(1).warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(2).measurementTime(TimeValue.milliseconds(500));
+        } else {
+            options.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+                .measurementIterations(10).measurementTime(TimeValue.seconds(1));
+        }
+        new Runner(options.build()).run();
+
+        if (Boolean.getBoolean("benchmark.record")) {
+            baseline.getParentFile().mkdirs();
+            Files.copy(results.toPath(), baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Recorded baseline " + baseline);
+            return;
+        }
+        if (!baseline.exists()) {
+            System.out.println("No baseline at " + baseline + "; run with -Pbenchmark.record=true "
+                + "on the reference machine to record one.");
+            return;
+        }
+
+        double tolerance = Double.parseDouble(
+            System.getProperty("benchmark.tolerance", String.valueOf(DEFAULT_TOLERANCE)));
+        List<String> regressions =
+            BenchmarkBaseline.compare(baseline, results, tolerance, System.out);
+        for (String regression : regressions) {
+            System.out.println("REGRESSION " + regression);
+        }
+        if (Boolean.getBoolean("benchmark.failOnRegression")) {
+            assertTrue(regressions.size() + " benchmarks regressed by more than "
+                + Math.round(tolerance * 100) + "%", regressions.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost {@link MCCordovaPlugin#execute} adds around a handler: registry lookup, SDK gate,
+ * lane selection and metrics.  Lanes run tasks on the calling thread so thread hand-off, which
+ * depends on the device, is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+    private final JSONArray noArgs = new JSONArray();
+    private final SinkCallbackContext callbackContext = new SinkCallbackContext();
+    private JSONArray setAttributeArgs;
+    private MCCordovaPlugin plugin;
+
+    @Setup
+    public void setup() throws JSONException {
+        setAttributeArgs = new JSONArray().put("LoyaltyTier").put("Gold");
+        plugin = new MCCordovaPlugin();
+        plugin.actionExecutor =
+            new MCActionExecutor(new DirectExecutorService(), new DirectExecutorService());
+    }
+
+    @TearDown
+    public void tearDown() {
+        plugin.onDestroy();
+    }
+
+    /** A cached read that runs on the calling thread. */
+    @Benchmark
+    public PluginResult isPushEnabled() throws JSONException {
+        plugin.execute("isPushEnabled", noArgs, callbackContext);
+        return callbackContext.lastResult;
+    }
+
+    /** A cached read that goes through the read lane. */
+    @Benchmark
+    public PluginResult getTags() throws JSONException {
+        plugin.execute("getTags", noArgs, callbackContext);
+        return callbackContext.lastResult;
+    }
+
+    /** A write that goes through the striped write lane and commits an edit. */
+    @Benchmark
+    public PluginResult setAttribute() throws JSONException {
+        plugin.execute("setAttribute", setAttributeArgs, callbackContext);
+        return callbackContext.lastResult;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import android.content.Intent;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a push open into a {@code notificationOpened} event and sending it to a listening
+ * WebView.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class NotificationBenchmark {
+    @Param({"0", "32", "256"})
+    public int customKeys;
+
+    @Param({"64", "2048"})
+    public int valueLength;
+
+    private final Intent intent = new Intent();
+    private final SinkCallbackContext eventsChannel = new SinkCallbackContext();
+    private MCCordovaPlugin plugin;
+
+    @Setup
+    public void setup() {
+        BenchmarkShadows.ShadowNotificationManager.message = StandInSdk.notificationMessage(
+            BenchmarkData.payload(customKeys, valueLength), "https://www.example.com/orders/42");
+        plugin = new MCCordovaPlugin();
+        // Opens are converted on the write lane; run it here to measure the conversion itself.
+        plugin.actionExecutor =
+            new MCActionExecutor(new DirectExecutorService(), new DirectExecutorService());
+        plugin.registerEventsChannel(eventsChannel);
+        plugin.subscribe(
+            new JSONArray().put(MCCordovaPlugin.EVENT_NOTIFICATION_OPENED), eventsChannel);
+    }
+
+    @Benchmark
+    public PluginResult handleNotificationMessage() {
+        plugin.onNewIntent(intent);
+        return eventsChannel.lastResult;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2018 Salesforce, Inc
+ * <p>
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.marketingcloud.cordova;
+
+import com.salesforce.marketingcloud.MarketingCloudSdk;
+import com.salesforce.marketingcloud.messages.push.PushMessageManager;
+import com.salesforce.marketingcloud.notifications.NotificationMessage;
+import com.salesforce.marketingcloud.registration.RegistrationManager;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A stand-in for the Marketing Cloud SDK that answers from fixed in-memory data, so benchmarks
+ * measure the plugin rather than the SDK.  Calls are served by stub-only mocks, which add a
+ * constant cost of a few hundred nanoseconds to each SDK call.
+ */
+final class StandInSdk {
+    private StandInSdk() {}
+
+    /** Makes a stand-in holding {@code attributes} and {@code tags} the ready SDK instance. */
+    static MarketingCloudSdk install(Map<String, String> attributes, Set<String> tags) {
+        RegistrationManager.Editor editor = mock(RegistrationManager.Editor.class,
+            withSettings().stubOnly().defaultAnswer(RETURNS_SELF));
+        when(editor.commit()).thenReturn(true);
+
+        RegistrationManager registrationManager =
+            mock(RegistrationManager.class, withSettings().stubOnly());
+        when(registrationManager.getAttributes()).thenReturn(attributes);
+        when(registrationManager.getTags()).thenReturn(tags);
+        when(registrationManager.getContactKey()).thenReturn("benchmark-contact");
+        when(registrationManager.edit()).thenReturn(editor);
+
+        PushMessageManager pushMessageManager =
+            mock(PushMessageManager.class, withSettings().stubOnly());
+        when(pushMessageManager.isPushEnabled()).thenReturn(true);
+        when(pushMessageManager.getPushToken()).thenReturn("benchmark-token");
+
+        MarketingCloudSdk sdk = mock(MarketingCloudSdk.class, withSettings().stubOnly());
+        when(sdk.getRegistrationManager()).thenReturn(registrationManager);
+        when(sdk.getPushMessageManager()).thenReturn(pushMessageManager);
+
+        BenchmarkShadows.ShadowMarketingCloudSdk.instance = sdk;
+        return sdk;
+    }
+
+    static void uninstall() {
+        BenchmarkShadows.ShadowMarketingCloudSdk.instance = null;
+        BenchmarkShadows.ShadowNotificationManager.message = null;
+    }
+
+    /**
+     * Returns a push open carrying {@code payload}.  Each call to {@code id()} returns a new id
+     * so the plugin does not drop repeated opens as duplicates.
+     */
+    static NotificationMessage notificationMessage(Map<String, String> payload, String url) {
+        final AtomicLong ids = new AtomicLong();
+        NotificationMessage message = mock(NotificationMessage.class, withSettings().stubOnly());
+        when(message.payload()).thenReturn(payload);
+        when(message.url()).thenReturn(url);
+        when(message.type()).thenReturn(NotificationMessage.Type.OPEN_DIRECT);
+        when(message.id()).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                return "benchmark-" + ids.incrementAndGet();
+            }
+        });
+        return message;
+    }
+}
@@ -31,24 +31,45 @@
 
 var exec = require('cordova/exec');
 var argsCheck = require('cordova/argscheck');
+var platformId = require('cordova').platformId;
 
 var PLUGIN_NAME = 'MCCordovaPlugin';
 
 var onNotificationOpened;
 var onUrlAction;
+var onRegionEvent;
+
+function dispatchEvent(event) {
+    switch (event.type) {
+        case 'notificationOpened':
+            if (onNotificationOpened !== undefined) {
+                onNotificationOpened(event);
+            }
+            break;
+        case 'urlAction':
+            if (onUrlAction !== undefined) {
+                onUrlAction(event);
+            }
+            break;
+        case 'regionTransition':
+        case 'geofenceMessageResponse':
+            if (onRegionEvent !== undefined) {
+                onRegionEvent(event);
+            }
+    }
+}
 
 function registerEvents() {
     var onEventsCallback = function(event) {
-        switch (event.type) {
-            case 'notificationOpened':
-                if (onNotificationOpened !== undefined) {
-                    onNotificationOpened(event);
-                }
-                break;
-            case 'urlAction':
-                if (onUrlAction !== undefined) {
-                    onUrlAction(event);
-                }
+        if (event.type !== 'batch') {
+            dispatchEvent(event);
+            return;
+        }
+        // Batched delivery (Android): acknowledge once handled so the next batch is sent.
+        try {
+            event.events.forEach(dispatchEvent);
+        } finally {
+            _exec(undefined, undefined, 'ackEvents', [event.batchId]);
         }
     };
 
@@ -62,6 +83,56 @@ function _exec(successCallback, errorCallback, methodName, args) {
     exec(successCallback, errorCallback, PLUGIN_NAME, methodName, args);
 }
 
+// Android sends large reads as JSON text instead of building a JSON tree natively.
+function _decodeJson(successCallback) {
+    return function(result) {
+        successCallback(typeof result === 'string' ? JSON.parse(result) : result);
+    };
+}
+
+// Actions whose results are decoded by _decodeJson, including inside a pipeline.
+var JSON_TEXT_ACTIONS = [
+    'getAttributesSince', 'getTagsSince', 'getSdkStateSnapshot', 'getInboxMessages'
+];
+
+// Page views waiting to be sent to the native SDK in one trackPageViews call.
+var pageViewBuffer = {
+    views: [],
+    timer: undefined,
+    maxSize: 20,
+    maxDelayMs: 5000,
+    listening: false
+};
+
+function flushPageViews() {
+    if (pageViewBuffer.timer !== undefined) {
+        clearTimeout(pageViewBuffer.timer);
+        pageViewBuffer.timer = undefined;
+    }
+    if (pageViewBuffer.views.length === 0) {
+        return;
+    }
+    var views = pageViewBuffer.views;
+    pageViewBuffer.views = [];
+    _exec(undefined, undefined, 'trackPageViews', [views]);
+}
+
+// Views still buffered when the app is hidden or the page unloads would be lost.  Only
+// installed once the app tracks a page view, so other apps are not woken on every pause.
+function listenForPageHide() {
+    if (pageViewBuffer.listening) {
+        return;
+    }
+    pageViewBuffer.listening = true;
+    window.addEventListener('pagehide', flushPageViews);
+    document.addEventListener('pause', flushPageViews);
+    document.addEventListener('visibilitychange', function() {
+        if (document.visibilityState === 'hidden') {
+            flushPageViews();
+        }
+    });
+}
+
 /**
  * @exports MCCordovaPlugin
  */
@@ -205,6 +276,50 @@ var MCCordovaPlugin = {
         argsCheck.checkArgs('fF', PLUGIN_NAME + '.getTags', arguments);
         _exec(successCallback, errorCallback, 'getTags');
     },
+    /**
+     * Returns the attributes that changed since a version returned by an
+     * earlier call.  Pass 0 on the first call to receive every attribute.
+     * Android only.
+     * @param  {number} version - The version from the previous result.
+     * @param  {function(delta)} successCallback
+     * @param  {number} successCallback.delta.version - Pass this value to the
+     *     next call.
+     * @param  {boolean} successCallback.delta.reset - Whether `changed` holds
+     *     every attribute instead of only the changes, because `version` is
+     *     older than the history the plugin keeps or was never returned by
+     *     this process.
+     * @param  {Object.<string, string>} successCallback.delta.changed - The
+     *     attributes that were set or changed.
+     * @param  {string[]} successCallback.delta.removed - The keys of the
+     *     attributes that were cleared.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getAttributesSince: function(version, successCallback, errorCallback) {
+        argsCheck.checkArgs('nfF', PLUGIN_NAME + '.getAttributesSince', arguments);
+        _exec(_decodeJson(successCallback), errorCallback, 'getAttributesSince', [version]);
+    },
+    /**
+     * Returns the tags that were added or removed since a version returned by
+     * an earlier call.  Pass 0 on the first call to receive every tag.
+     * Android only.
+     * @param  {number} version - The version from the previous result.
+     * @param  {function(delta)} successCallback
+     * @param  {number} successCallback.delta.version - Pass this value to the
+     *     next call.
+     * @param  {boolean} successCallback.delta.reset - Whether `added` holds
+     *     every tag instead of only the changes.
+     * @param  {string[]} successCallback.delta.added - The tags that were
+     *     added.
+     * @param  {string[]} successCallback.delta.removed - The tags that were
+     *     removed.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getTagsSince: function(version, successCallback, errorCallback) {
+        argsCheck.checkArgs('nfF', PLUGIN_NAME + '.getTagsSince', arguments);
+        _exec(_decodeJson(successCallback), errorCallback, 'getTagsSince', [version]);
+    },
     /**
      * Sets the contact key for the device's user.
      * @param  {string} contactKey - The value to be set as the contact key of
@@ -232,6 +347,27 @@ var MCCordovaPlugin = {
         argsCheck.checkArgs('fF', PLUGIN_NAME + '.getContactKey', arguments);
         _exec(successCallback, errorCallback, 'getContactKey');
     },
+    /**
+     * Applies a list of registration changes in a single native call.  The
+     * changes are applied in order and persisted with one commit.  Android
+     * only.
+     *
+     * Supported operations:
+     * `{op: 'setAttribute', key, value}`, `{op: 'clearAttribute', key}`,
+     * `{op: 'addTag', tag}`, `{op: 'removeTag', tag}` and
+     * `{op: 'setContactKey', contactKey}`.
+     *
+     * @param  {Object[]} operations - The ordered registration changes.
+     * @param  {function(results)} [successCallback]
+     * @param  {boolean[]} successCallback.results - Whether each operation, in
+     *     the order given, was saved in the registration.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    batchEdit: function(operations, successCallback, errorCallback) {
+        argsCheck.checkArgs('aFF', `${PLUGIN_NAME}.batchEdit`, arguments);
+        _exec(successCallback, errorCallback, 'batchEdit', [operations]);
+    },
     /**
      * Enables verbose logging within the native Marketing Cloud SDK.
      * @param  {function} [successCallback]
@@ -254,6 +390,58 @@ var MCCordovaPlugin = {
         argsCheck.checkArgs('FF', `${PLUGIN_NAME}.disableVerboseLogging`, arguments);
         _exec(successCallback, errorCallback, 'disableVerboseLogging');
     },
+    /**
+     * Captures native SDK logs without slowing the SDK's threads.  Records
+     * are buffered in memory and written in the background to rotated files
+     * in the app's private storage, optionally echoed to logcat and streamed
+     * to `onRecords`.  Each destination takes a minimum level of `verbose`,
+     * `debug`, `info`, `warn`, `error` or `off`.  Replaces any listener set
+     * by enableVerboseLogging.  Android only.
+     *
+     * @param  {Object} [options]
+     * @param  {string} [options.level=debug] - Minimum level written to the
+     *     log files.
+     * @param  {string} [options.logcat=off] - Minimum level echoed to logcat.
+     * @param  {string} [options.stream=off] - Minimum level sent to
+     *     `onRecords`.
+     * @param  {function(records)} [onRecords] - Called with batches of
+     *     records while streaming, and a last time with an empty batch once
+     *     the sink is disabled or enabled again.  Without it, called once
+     *     the sink is enabled.
+     * @param  {Object[]} onRecords.records - Each with time (milliseconds
+     *     since the epoch), level (V, D, I, W or E), tag and message.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    enableLogSink: function(options, onRecords, errorCallback) {
+        argsCheck.checkArgs('OFF', `${PLUGIN_NAME}.enableLogSink`, arguments);
+        _exec(onRecords, errorCallback, 'enableLogSink', [options || {}]);
+    },
+    /**
+     * Stops capturing native SDK logs and puts back any listener set by
+     * enableVerboseLogging.  Records already captured are still written.
+     * Android only.
+     * @param  {function} [successCallback]
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    disableLogSink: function(successCallback, errorCallback) {
+        argsCheck.checkArgs('FF', `${PLUGIN_NAME}.disableLogSink`, arguments);
+        _exec(successCallback, errorCallback, 'disableLogSink');
+    },
+    /**
+     * Writes any buffered SDK log records and returns the log files, for
+     * example to attach them to a support request.  Android only.
+     * @param  {function(paths)} successCallback
+     * @param  {string[]} successCallback.paths - Absolute paths of the log
+     *     files, oldest first.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getLogFiles: function(successCallback, errorCallback) {
+        argsCheck.checkArgs('fF', `${PLUGIN_NAME}.getLogFiles`, arguments);
+        _exec(successCallback, errorCallback, 'getLogFiles');
+    },
     /**
      * @param {function(event)} notificationOpenedListener
      * @param {MCCordovaPlugin~notificationOpenedCallback}
@@ -278,6 +466,50 @@ var MCCordovaPlugin = {
         argsCheck.checkArgs('FF', `${PLUGIN_NAME}.disableGeofence`, arguments);
         _exec(successCallback, errorCallback, 'disableGeofence');
     },
+    /**
+     * Sends region entries and exits, and the geofences the SDK starts
+     * monitoring, to `regionEventListener`.  Reports are coalesced natively:
+     * a transition waits `region_event_debounce_ms` and is dropped if the
+     * region flaps back meanwhile, and each region sends at most one event
+     * every `region_event_min_interval_ms`.  Events only arrive while geofence
+     * messaging is enabled.  Android only.
+     *
+     * @param {function(event)} regionEventListener
+     * @param {MCCordovaPlugin~regionEventCallback} regionEventListener.event
+     * @param  {function} [successCallback]
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    setOnRegionEventListener: function(regionEventListener, successCallback, errorCallback) {
+        argsCheck.checkArgs('fFF', `${PLUGIN_NAME}.setOnRegionEventListener`, arguments);
+        onRegionEvent = regionEventListener;
+        _exec(successCallback, errorCallback, 'enableRegionEvents');
+    },
+    /**
+     * Stops sending region events.  Android only.
+     * @param  {function} [successCallback]
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    disableRegionEvents: function(successCallback, errorCallback) {
+        argsCheck.checkArgs('FF', `${PLUGIN_NAME}.disableRegionEvents`, arguments);
+        onRegionEvent = undefined;
+        _exec(successCallback, errorCallback, 'disableRegionEvents');
+    },
+
+    /**
+     * @callback module:MCCordovaPlugin~regionEventCallback
+     * @param {string} type - 'regionTransition' or 'geofenceMessageResponse'.
+     * @param {string} [transition] - For a regionTransition: 'entered',
+     *     'exited' or 'dwelling'.
+     * @param {Object} [region] - For a regionTransition: the region's id,
+     *     name, latitude, longitude, radius in meters and regionType.
+     * @param {Object[]} [fences] - For a geofenceMessageResponse: the regions
+     *     now monitored, in the same form as `region`.
+     * @param {number} timeStamp - Time since epoch of the latest report.
+     * @param {number} reports - Native reports coalesced into this event.
+     */
+
     /**
      * Asks for location permission
      * @param  {function} [successCallback]
@@ -305,6 +537,146 @@ var MCCordovaPlugin = {
         argsCheck.checkArgs('fF', `${PLUGIN_NAME}.getSDKState`, arguments);
         _exec(successCallback, errorCallback, 'getSDKState');
     },
+    /**
+     * Returns selected sections of the SDK's state as structured data.
+     * Sections are cached between calls and rebuilt when they are older than
+     * `maxAgeMs` or when the plugin knows they changed, for example after
+     * setAttribute or disableGeofence.  Android only.
+     *
+     * Sections: `registration` (contactKey, attributes, tags), `push`
+     * (enabled, token), `location` (geofenceEnabled, proximityEnabled),
+     * `initialization` (ready, initializing, status) and `sdk` (the full
+     * state returned by getSDKState).
+     *
+     * @param  {Object} [options]
+     * @param  {string[]} [options.sections] - The sections to return.
+     *     Defaults to all of them.
+     * @param  {number} [options.maxAgeMs] - How old a cached section may be.
+     *     0 rebuilds every section.  Defaults to the
+     *     `sdk_state_max_age_ms` preference, or 1000.
+     * @param  {function(snapshot)} successCallback
+     * @param  {Object} successCallback.snapshot.sections - Each requested
+     *     section by name.
+     * @param  {Object} successCallback.snapshot.stats - For each section,
+     *     whether it was served from the cache, its size in characters, how
+     *     long it took to build in microseconds and its age in milliseconds.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getSdkStateSnapshot: function(options, successCallback, errorCallback) {
+        argsCheck.checkArgs('OfF', `${PLUGIN_NAME}.getSdkStateSnapshot`, arguments);
+        _exec(_decodeJson(successCallback), errorCallback, 'getSdkStateSnapshot',
+            [options || {}]);
+    },
+    /**
+     * Returns one page of inbox messages, newest first.  Pages are served
+     * from a native cache that is refreshed when the inbox changes.  Pass the
+     * `nextCursor` of a page to read the page after it.  Android only.
+     *
+     * @example
+     * function readAll(cursor) {
+     *     MCCordovaPlugin.getInboxMessages({filter: 'unread', cursor: cursor},
+     *         function(page) {
+     *             render(page.messages);
+     *             if (page.nextCursor) {
+     *                 readAll(page.nextCursor);
+     *             }
+     *         });
+     * }
+     *
+     * @param  {Object} [options]
+     * @param  {string} [options.filter] - 'all' (default), 'read', 'unread'
+     *     or 'deleted'.
+     * @param  {string} [options.cursor] - The nextCursor of the previous
+     *     page.  Omit it for the first page.
+     * @param  {number} [options.limit] - Messages per page, at most 200.
+     *     Defaults to the `inbox_page_size` preference, or 50.
+     * @param  {function(page)} successCallback
+     * @param  {Object[]} successCallback.page.messages - The messages, with
+     *     id, subject, title, alert, url, read, deleted, sendDateUtc,
+     *     startDateUtc and endDateUtc in milliseconds since epoch, custom and
+     *     customKeys.
+     * @param  {?string} successCallback.page.nextCursor - null on the last
+     *     page.
+     * @param  {number} successCallback.page.total - Messages matching the
+     *     filter.
+     * @param  {number} successCallback.page.version - Changes whenever the
+     *     inbox changes.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getInboxMessages: function(options, successCallback, errorCallback) {
+        argsCheck.checkArgs('OfF', `${PLUGIN_NAME}.getInboxMessages`, arguments);
+        _exec(_decodeJson(successCallback), errorCallback, 'getInboxMessages',
+            [options || {}]);
+    },
+    /**
+     * Marks inbox messages read in one call.  Android only.
+     * @param  {string[]} messageIds
+     * @param  {function(count)} [successCallback]
+     * @param  {number} successCallback.count - Messages marked read.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    markInboxMessagesRead: function(messageIds, successCallback, errorCallback) {
+        argsCheck.checkArgs('aFF', `${PLUGIN_NAME}.markInboxMessagesRead`, arguments);
+        _exec(successCallback, errorCallback, 'markInboxMessagesRead', [messageIds]);
+    },
+    /**
+     * Deletes inbox messages in one call.  Android only.
+     * @param  {string[]} messageIds
+     * @param  {function(count)} [successCallback]
+     * @param  {number} successCallback.count - Messages deleted.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    deleteInboxMessages: function(messageIds, successCallback, errorCallback) {
+        argsCheck.checkArgs('aFF', `${PLUGIN_NAME}.deleteInboxMessages`, arguments);
+        _exec(successCallback, errorCallback, 'deleteInboxMessages', [messageIds]);
+    },
+    /**
+     * Runs several actions in one call and returns their results in order.
+     * Steps that need the SDK share one SDK instance.  Consecutive reads run
+     * in parallel and consecutive writes run in order, and a step sees the
+     * effect of every write listed before it.  Actions that keep their
+     * callback open, such as enableLogSink, cannot be part of a pipeline.
+     * Android only.
+     *
+     * @example
+     * MCCordovaPlugin.pipeline([
+     *     {action: 'setAttribute', args: ['FirstName', 'Jane']},
+     *     {action: 'getAttributes'},
+     *     {action: 'getContactKey'}
+     * ], function(results) {
+     *     var attributes = results[1].value;
+     * });
+     *
+     * @param  {Object[]} steps
+     * @param  {string} steps[].action - The name of the native action, for
+     *     example 'getTags' or 'addTag'.
+     * @param  {Array} [steps[].args] - The action's arguments.
+     * @param  {function(results)} [successCallback]
+     * @param  {Object[]} successCallback.results - One entry per step, either
+     *     `{ok: true, value}` or `{ok: false, error}`.
+     * @param  {function} [errorCallback] - Called instead when a step names
+     *     an action that cannot run in a pipeline.
+     * @since 6.4.0
+     */
+    pipeline: function(steps, successCallback, errorCallback) {
+        argsCheck.checkArgs('aFF', `${PLUGIN_NAME}.pipeline`, arguments);
+        _exec(function(results) {
+            results = typeof results === 'string' ? JSON.parse(results) : results;
+            results.forEach(function(result, i) {
+                if (result.ok && typeof result.value === 'string' &&
+                    JSON_TEXT_ACTIONS.indexOf(steps[i].action) !== -1) {
+                    result.value = JSON.parse(result.value);
+                }
+            });
+            if (successCallback) {
+                successCallback(results);
+            }
+        }, errorCallback, 'pipeline', [steps]);
+    },
 
     /**
      * @callback module:MCCordovaPlugin~notificationOpenedCallback
@@ -349,6 +721,131 @@ var MCCordovaPlugin = {
     logSdkState: function(successCallback, errorCallback) {
         argsCheck.checkArgs('FF', `${PLUGIN_NAME}.logSdkState`, arguments);
         _exec(successCallback, errorCallback, 'logSdkState');
+    },
+
+    /**
+     * Records a page view for Marketing Cloud analytics.  Views are buffered
+     * and sent to the native SDK in one call once `maxSize` are waiting,
+     * `maxDelayMs` after the first of them, or when the app is hidden.  See
+     * configurePageViewBuffer.  Android only; other platforms ignore the
+     * view.
+     *
+     * @param  {string} url - The url of the page.
+     * @param  {string} [title] - The title of the page.
+     * @param  {string} [item] - An item displayed on the page.
+     * @param  {string} [search] - A search term used on the page.
+     * @since 6.4.0
+     */
+    trackPageView: function(url, title, item, search) {
+        argsCheck.checkArgs('sSSS', `${PLUGIN_NAME}.trackPageView`, arguments);
+        if (platformId !== 'android') {
+            // There is no native trackPageViews action to send the buffer to.
+            return;
+        }
+        listenForPageHide();
+        pageViewBuffer.views.push({url: url, title: title, item: item, search: search});
+        if (pageViewBuffer.views.length >= pageViewBuffer.maxSize) {
+            flushPageViews();
+        } else if (pageViewBuffer.timer === undefined) {
+            pageViewBuffer.timer = setTimeout(flushPageViews, pageViewBuffer.maxDelayMs);
+        }
+    },
+    /**
+     * Sends page views to the native SDK in one call, bypassing the buffer
+     * used by trackPageView.  Views without a url are skipped.  Android only.
+     *
+     * @param  {Object[]} views
+     * @param  {string} views[].url
+     * @param  {string} [views[].title]
+     * @param  {string} [views[].item]
+     * @param  {string} [views[].search]
+     * @param  {function(count)} [successCallback]
+     * @param  {number} successCallback.count - Page views tracked.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    trackPageViews: function(views, successCallback, errorCallback) {
+        argsCheck.checkArgs('aFF', `${PLUGIN_NAME}.trackPageViews`, arguments);
+        _exec(successCallback, errorCallback, 'trackPageViews', [views]);
+    },
+    /**
+     * Sends the page views buffered by trackPageView now.  Android only.
+     * @since 6.4.0
+     */
+    flushPageViews: function() {
+        flushPageViews();
+    },
+    /**
+     * Changes when buffered page views are sent.  Android only.
+     * @param  {Object} options
+     * @param  {number} [options.maxSize] - Views that trigger a send.
+     *     Defaults to 20; 1 sends every view on its own.
+     * @param  {number} [options.maxDelayMs] - Longest time a view waits.
+     *     Defaults to 5000.
+     * @since 6.4.0
+     */
+    configurePageViewBuffer: function(options) {
+        argsCheck.checkArgs('o', `${PLUGIN_NAME}.configurePageViewBuffer`, arguments);
+        if (options.maxSize !== undefined) {
+            pageViewBuffer.maxSize = Math.max(1, options.maxSize);
+        }
+        if (options.maxDelayMs !== undefined) {
+            pageViewBuffer.maxDelayMs = Math.max(0, options.maxDelayMs);
+        }
+        if (pageViewBuffer.views.length >= pageViewBuffer.maxSize) {
+            flushPageViews();
+        }
+    },
+
+    /**
+     * Returns runtime statistics collected by the native plugin, such as how
+     * many registration commits were saved by coalescing edits.  Android
+     * only.
+     *
+     * @param  {function(stats)} successCallback
+     * @param  {Object} successCallback.stats - Statistics grouped by feature.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getPluginStats: function(successCallback, errorCallback) {
+        argsCheck.checkArgs('fF', `${PLUGIN_NAME}.getPluginStats`, arguments);
+        _exec(successCallback, errorCallback, 'getPluginStats');
+    },
+
+    /**
+     * Returns when each step of the native plugin's startup happened, such as
+     * parsing its configuration, initializing the SDK and serving the first
+     * call.  Android only.
+     *
+     * @param  {function(timeline)} successCallback
+     * @param  {string} successCallback.timeline.origin - What times are relative
+     *     to: 'processStart' or 'firstPhase'.
+     * @param  {Object[]} successCallback.timeline.phases - Each phase's name,
+     *     startMs and, for sections, durationMs.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getStartupTimeline: function(successCallback, errorCallback) {
+        argsCheck.checkArgs('fF', `${PLUGIN_NAME}.getStartupTimeline`, arguments);
+        _exec(successCallback, errorCallback, 'getStartupTimeline');
+    },
+
+    /**
+     * Returns latency histograms and success/error counts for each native
+     * action called since the app started.  Android only.
+     *
+     * @param  {function(metrics)} successCallback
+     * @param  {number} successCallback.metrics.elapsedMs - How long the
+     *     metrics have been collected.
+     * @param  {Object} successCallback.metrics.actions - Per action name, its
+     *     success and error counts and the gateWait, queueWait and run
+     *     histograms, each with count, meanUs, p50Us, p90Us, p99Us and maxUs.
+     * @param  {function} [errorCallback]
+     * @since 6.4.0
+     */
+    getBridgeMetrics: function(successCallback, errorCallback) {
+        argsCheck.checkArgs('fF', `${PLUGIN_NAME}.getBridgeMetrics`, arguments);
+        _exec(successCallback, errorCallback, 'getBridgeMetrics');
     }
 
 };